@@ -39,6 +39,7 @@ import org.sola.clients.beans.cadastre.CadastreObjectBean;
 import org.sola.clients.beans.controls.SolaList;
 import org.sola.clients.beans.controls.SolaObservableList;
 import org.sola.clients.beans.converters.TypeConverters;
+import org.sola.clients.beans.savequeue.SaveQueue;
 import org.sola.clients.beans.referencedata.StatusConstants;
 import org.sola.clients.beans.referencedata.TypeActionBean;
 import org.sola.clients.beans.source.SourceBean;
@@ -519,10 +520,22 @@ public class BaUnitBean extends BaUnitSummaryBean {
     }
 
     public boolean saveBaUnit(String serviceId) {
+        if (SaveQueue.getInstance().isWriteBehind() && !isNew()) {
+            SaveQueue.getInstance().enqueue(this, serviceId);
+        } else {
+            SaveQueue.getInstance().awaitSaved(getId());
+            saveBaUnitToServer(serviceId);
+        }
+        return true;
+    }
+
+    /**
+     * Saves BA unit on the server, ignoring write-behind mode of the {@link SaveQueue}.
+     */
+    public void saveBaUnitToServer(String serviceId) {
         BaUnitTO baUnit = TypeConverters.BeanToTrasferObject(this, BaUnitTO.class);
         baUnit = WSManager.getInstance().getAdministrative().saveBaUnit(serviceId, baUnit);
         TypeConverters.TransferObjectToBean(baUnit, BaUnitBean.class, this);
-        return true;
     }
     
     /** 
@@ -40,6 +40,7 @@ import org.jdesktop.observablecollections.ObservableList;
 import org.sola.clients.beans.application.validation.ApplicationCheck;
 import org.sola.clients.beans.applicationlog.ApplicationLogBean;
 import org.sola.clients.beans.cache.CacheManager;
+import org.sola.clients.beans.savequeue.SaveQueue;
 import org.sola.clients.beans.controls.SolaList;
 import org.sola.clients.beans.controls.SolaObservableList;
 import org.sola.clients.beans.converters.TypeConverters;
@@ -655,6 +656,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Calculates payment fee for selected services, based on application data.
      */
     public boolean calculateFee() {
+        awaitQueuedSaves();
         ApplicationTO app = TypeConverters.BeanToTrasferObject(this, ApplicationTO.class);
         app = WSManager.getInstance().getCaseManagementService().calculateFee(app);
         TypeConverters.TransferObjectToBean(app, ApplicationBean.class, this);
@@ -666,6 +668,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Validates application against business rules
      */
     public ObservableList<ValidationResultBean> validate() {
+        awaitQueuedSaves();
         ObservableList<ValidationResultBean> validationResults =
                 ObservableCollections.observableList(
                 TypeConverters.TransferObjectListToBeanList(WSManager.getInstance().getCaseManagementService().applicationActionValidate(
@@ -681,6 +684,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Approves application
      */
     public List<ValidationResultBean> approve() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionApprove(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -692,6 +696,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Rejects application
      */
     public List<ValidationResultBean> reject() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionCancel(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -703,6 +708,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Withdraws application
      */
     public List<ValidationResultBean> withdraw() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionWithdraw(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -714,6 +720,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Requisitions application
      */
     public List<ValidationResultBean> requisition() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionRequisition(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -725,6 +732,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Archives application
      */
     public List<ValidationResultBean> archive() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionArchive(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -736,6 +744,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Despatches application
      */
     public List<ValidationResultBean> despatch() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionDespatch(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -747,6 +756,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Lapses application
      */
     public List<ValidationResultBean> lapse() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionLapse(
                 this.getId(), this.getRowVersion()),
@@ -759,6 +769,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * Lapses application
      */
     public List<ValidationResultBean> resubmit() {
+        awaitQueuedSaves();
         List<ValidationResultBean> result = TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().applicationActionResubmit(
                 this.getId(), this.getRowVersion()),
@@ -773,6 +784,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * @param userId ID of the user.
      */
     public boolean assignUser(String userId) {
+        awaitQueuedSaves();
         if (userId == null) {
             WSManager.getInstance().getCaseManagementService().applicationActionUnassign(
                     this.getId(), this.getRowVersion());
@@ -794,6 +806,7 @@ public class ApplicationBean extends ApplicationSummaryBean {
         ApplicationTO app = TypeConverters.BeanToTrasferObject(this, ApplicationTO.class);
         app = WSManager.getInstance().getCaseManagementService().createApplication(app);
         TypeConverters.TransferObjectToBean(app, ApplicationBean.class, this);
+        CacheManager.getApplicationSearchIndex().put(getApplicationSearchResult());
         propertySupport.firePropertyChange(APPLICATION_PROPERTY, null, this);
         return true;
     }
@@ -804,17 +817,67 @@ public class ApplicationBean extends ApplicationSummaryBean {
      * @throws Exception
      */
     public boolean saveApplication() {
+        if (SaveQueue.getInstance().isWriteBehind()) {
+            SaveQueue.getInstance().enqueue(this, null);
+        } else {
+            awaitQueuedSaves();
+            saveApplicationToServer();
+        }
+        CacheManager.getApplicationSearchIndex().put(getApplicationSearchResult());
+        propertySupport.firePropertyChange(APPLICATION_PROPERTY, null, this);
+        return true;
+    }
+
+    /**
+     * Saves application on the server, ignoring write-behind mode of the {@link SaveQueue}.
+     */
+    public void saveApplicationToServer() {
         ApplicationTO app = TypeConverters.BeanToTrasferObject(this, ApplicationTO.class);
         app = WSManager.getInstance().getCaseManagementService().saveApplication(app);
         TypeConverters.TransferObjectToBean(app, ApplicationBean.class, this);
-        propertySupport.firePropertyChange(APPLICATION_PROPERTY, null, this);
-        return true;
+    }
+
+    /**
+     * Returns new {@link ApplicationSearchResultBean} with the values of this application,
+     * as it would be returned by the application search.
+     */
+    public ApplicationSearchResultBean getApplicationSearchResult() {
+        ApplicationSearchResultBean result = new ApplicationSearchResultBean();
+        result.setId(getId());
+        result.setRowVersion(getRowVersion());
+        result.setNr(getNr());
+        result.setLodgingDatetime(getLodgingDatetime());
+        result.setExpectedCompletionDate(getExpectedCompletionDate());
+        result.setAssignedDatetime(getAssignedDatetime());
+        result.setFeePaid(isFeePaid());
+        result.setAgentId(getAgentId());
+        result.setContactPersonId(getContactPersonId());
+        result.setAssigneeId(getAssigneeId());
+        if (getStatus() != null) {
+            result.setStatus(getStatus().getDisplayValue());
+        }
+        if (getAgent() != null) {
+            result.setAgent(getAgent().getFullName());
+        }
+        if (getContactPerson() != null) {
+            result.setContactPerson(getContactPerson().getFullName());
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the saves of the application, queued by the {@link SaveQueue}, so the
+     * server calls are made with the row versions of the saved application.
+     */
+    private void awaitQueuedSaves() {
+        SaveQueue.getInstance().awaitSaved(getId());
     }
 
     /**
      * Reloads application from the database.
      */
     public void reload() {
+        awaitQueuedSaves();
         ApplicationTO app = WSManager.getInstance().getCaseManagementService().getApplication(this.getId());
         TypeConverters.TransferObjectToBean(app, ApplicationBean.class, this);
     }
@@ -0,0 +1,309 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.application;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.ws.WebServiceException;
+import org.sola.services.boundary.wsclients.WSManager;
+import org.sola.webservices.transferobjects.casemanagement.ApplicationTO;
+
+/**
+ * Runs an action on several applications. Applications are processed by a bounded
+ * number of threads, failures caused by the transport problems are retried. Before
+ * the retry application is read again, because the failed attempt could be committed
+ * on the server. The result of each application is reported to the {@link Listener} and returned at
+ * the end, so the caller can refresh application lists once for the whole selection.
+ */
+public abstract class ApplicationBulkAction {
+
+    /** Default number of applications processed at the same time. */
+    public static final int DEFAULT_CONCURRENCY = 4;
+    /** Default number of retries of the transient failure. */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    /** Default delay before the first retry in milliseconds, doubled for each next retry. */
+    public static final long DEFAULT_RETRY_DELAY = 500;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    /**
+     * Result of the action for one application.
+     */
+    public static class Result {
+
+        private ApplicationSearchResultBean application;
+        private Throwable error;
+        private int attempts;
+
+        Result(ApplicationSearchResultBean application, Throwable error, int attempts) {
+            this.application = application;
+            this.error = error;
+            this.attempts = attempts;
+        }
+
+        public ApplicationSearchResultBean getApplication() {
+            return application;
+        }
+
+        /** Returns the failure of the last attempt or null if action succeeded. */
+        public Throwable getError() {
+            return error;
+        }
+
+        /** Returns number of attempts made. */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Listener of the bulk action progress. Methods are called from the worker threads.
+     */
+    public interface Listener {
+
+        /**
+         * Called when application is processed.
+         *
+         * @param result Result of the application.
+         * @param completed Number of processed applications.
+         * @param total Total number of applications.
+         */
+        void applicationProcessed(Result result, int completed, int total);
+    }
+
+    /**
+     * Performs the action on the application.
+     *
+     * @param application Application to process.
+     * @param rowVersion Row version of the application to send to the server.
+     */
+    protected abstract void perform(ApplicationSearchResultBean application, int rowVersion);
+
+    /**
+     * Returns true if the action has already taken effect on the given server state of
+     * the application.
+     */
+    protected abstract boolean isDone(ApplicationTO application);
+
+    /**
+     * Reads the current state of the application from the server.
+     */
+    protected ApplicationTO readApplication(ApplicationSearchResultBean application) {
+        return WSManager.getInstance().getCaseManagementService().getApplication(application.getId());
+    }
+
+    /**
+     * Returns true if the failure is caused by the transport problem, such as time
+     * out or lost connection, and the action can be repeated.
+     */
+    protected boolean isTransient(Throwable error) {
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause.getClass().equals(WebServiceException.class)) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Runs the action on the given applications and waits for completion. If the
+     * calling thread is interrupted, applications not started yet are skipped.
+     *
+     * @param applications Applications to process.
+     * @param listener Listener of the progress, can be null.
+     * @return Results in the order of the applications list.
+     */
+    public List<Result> run(List<ApplicationSearchResultBean> applications, final Listener listener) {
+        final List<Result> results = Collections.synchronizedList(new ArrayList<Result>());
+        if (applications == null || applications.isEmpty()) {
+            return results;
+        }
+        final int total = applications.size();
+        final AtomicInteger completed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(concurrency, total)), new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ApplicationBulkAction-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        try {
+            for (final ApplicationSearchResultBean application : applications) {
+                futures.add(executor.submit(new Callable<Result>() {
+
+                    @Override
+                    public Result call() {
+                        Result result = performWithRetry(application);
+                        if (listener != null) {
+                            listener.applicationProcessed(result, completed.incrementAndGet(), total);
+                        }
+                        return result;
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    results.add(new Result(applications.get(i), ex.getCause(), 0));
+                }
+            }
+        } catch (InterruptedException ex) {
+            for (Future<Result> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private Result performWithRetry(ApplicationSearchResultBean application) {
+        int attempts = 0;
+        int rowVersion = application.getRowVersion();
+        long delay = retryDelay;
+        while (true) {
+            attempts++;
+            try {
+                if (attempts > 1) {
+                    ApplicationTO current = readApplication(application);
+                    if (current != null) {
+                        if (isDone(current)) {
+                            return new Result(application, null, attempts);
+                        }
+                        rowVersion = current.getRowVersion();
+                    }
+                }
+                perform(application, rowVersion);
+                return new Result(application, null, attempts);
+            } catch (Throwable e) {
+                if (attempts > maxRetries || !isTransient(e)) {
+                    return new Result(application, e, attempts);
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return new Result(application, ex, attempts);
+            }
+            delay *= 2;
+        }
+    }
+
+    /**
+     * Creates action assigning applications to the user.
+     *
+     * @param userId ID of the user.
+     */
+    public static ApplicationBulkAction assign(final String userId) {
+        return new ApplicationBulkAction() {
+
+            @Override
+            protected void perform(ApplicationSearchResultBean application, int rowVersion) {
+                WSManager.getInstance().getCaseManagementService().applicationActionAssign(
+                        application.getId(), userId, rowVersion);
+            }
+
+            @Override
+            protected boolean isDone(ApplicationTO application) {
+                return userId.equals(application.getAssigneeId());
+            }
+        };
+    }
+
+    /**
+     * Creates action unassigning applications.
+     */
+    public static ApplicationBulkAction unassign() {
+        return new ApplicationBulkAction() {
+
+            @Override
+            protected void perform(ApplicationSearchResultBean application, int rowVersion) {
+                WSManager.getInstance().getCaseManagementService().applicationActionUnassign(
+                        application.getId(), rowVersion);
+            }
+
+            @Override
+            protected boolean isDone(ApplicationTO application) {
+                return application.getAssigneeId() == null;
+            }
+        };
+    }
+}
@@ -27,9 +27,11 @@
  */
 package org.sola.clients.beans.application;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.jdesktop.observablecollections.ObservableList;
 import org.sola.clients.beans.AbstractBindingBean;
+import org.sola.clients.beans.cache.CacheManager;
 import org.sola.clients.beans.controls.SolaObservableList;
 import org.sola.clients.beans.converters.TypeConverters;
 import org.sola.services.boundary.wsclients.WSManager;
@@ -43,6 +45,7 @@ import org.sola.webservices.transferobjects.search.ApplicationSearchResultTO;
 public class ApplicationSearchResultsListBean extends AbstractBindingBean {
 
     public static final String SELECTED_APPLICATION_PROPERTY = "selectedApplication";
+    private static final int LOCAL_SEARCH_MAX_RESULTS = 100;
     private SolaObservableList<ApplicationSearchResultBean> applicationSearchResultsList;
     private ApplicationSearchResultBean selectedApplication;
 
@@ -59,6 +62,7 @@ public class ApplicationSearchResultsListBean extends AbstractBindingBean {
 
         TypeConverters.TransferObjectListToBeanList(unassignedApplicationsTO,
                 ApplicationSearchResultBean.class, (List) getApplicationSearchResultsList());
+        CacheManager.getApplicationSearchIndex().putAll(applicationSearchResultsList);
     }
 
     /** Fills application search result list with assigned applications. */
@@ -69,6 +73,91 @@ public class ApplicationSearchResultsListBean extends AbstractBindingBean {
 
         TypeConverters.TransferObjectListToBeanList(assignedApplicationsTO,
                 ApplicationSearchResultBean.class, (List) getApplicationSearchResultsList());
+        CacheManager.getApplicationSearchIndex().putAll(applicationSearchResultsList);
+    }
+
+    /**
+     * Returns the list of unassigned applications from the server without changing
+     * this list. Use {@link #mergeApplications(List)} to show them.
+     */
+    public static List<ApplicationSearchResultBean> loadUnassigned() {
+        List<ApplicationSearchResultBean> result = new ArrayList<ApplicationSearchResultBean>();
+        TypeConverters.TransferObjectListToBeanList(
+                WSManager.getInstance().getSearchService().getUnassignedApplications(),
+                ApplicationSearchResultBean.class, (List) result);
+        CacheManager.getApplicationSearchIndex().putAll(result);
+        return result;
+    }
+
+    /**
+     * Returns the list of assigned applications from the server without changing
+     * this list. Use {@link #mergeApplications(List)} to show them.
+     */
+    public static List<ApplicationSearchResultBean> loadAssigned() {
+        List<ApplicationSearchResultBean> result = new ArrayList<ApplicationSearchResultBean>();
+        TypeConverters.TransferObjectListToBeanList(
+                WSManager.getInstance().getSearchService().getAssignedApplications(),
+                ApplicationSearchResultBean.class, (List) result);
+        CacheManager.getApplicationSearchIndex().putAll(result);
+        return result;
+    }
+
+    /**
+     * Updates the list with the new applications, matching them by ID. Applications with the
+     * same row version are left in place, changed ones are replaced, missing ones are removed
+     * and new ones are inserted, so the list ends up in the order of the new applications.
+     * Bound tables receive events only for the rows that changed and keep their selection.
+     *
+     * @param applications The new list of applications.
+     * @return true if the list was changed.
+     */
+    public boolean mergeApplications(List<ApplicationSearchResultBean> applications) {
+        boolean changed = false;
+        if (applications == null) {
+            applications = new ArrayList<ApplicationSearchResultBean>();
+        }
+
+        for (int i = 0; i < applications.size(); i++) {
+            ApplicationSearchResultBean app = applications.get(i);
+            int index = indexOf(app.getId(), i);
+            if (index < 0) {
+                applicationSearchResultsList.add(i, app);
+                changed = true;
+                continue;
+            }
+            if (index > i) {
+                applicationSearchResultsList.add(i, applicationSearchResultsList.remove(index));
+                changed = true;
+            }
+            ApplicationSearchResultBean current = applicationSearchResultsList.get(i);
+            if (current.getRowVersion() != app.getRowVersion()) {
+                applicationSearchResultsList.set(i, app);
+                if (current == selectedApplication) {
+                    setSelectedApplication(app);
+                }
+                changed = true;
+            }
+        }
+
+        while (applicationSearchResultsList.size() > applications.size()) {
+            ApplicationSearchResultBean removed =
+                    applicationSearchResultsList.remove(applicationSearchResultsList.size() - 1);
+            if (removed == selectedApplication) {
+                setSelectedApplication(null);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** Returns index of the application in the list, starting the search from the given index. */
+    private int indexOf(String id, int fromIndex) {
+        for (int i = fromIndex; i < applicationSearchResultsList.size(); i++) {
+            if (applicationSearchResultsList.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /** Runs application search with a given search criteria. */
@@ -81,6 +170,26 @@ public class ApplicationSearchResultsListBean extends AbstractBindingBean {
                 WSManager.getInstance().getSearchService().searchApplications(paramsTO);
         TypeConverters.TransferObjectListToBeanList(searchApplicationsTO,
                 ApplicationSearchResultBean.class, (List) getApplicationSearchResultsList());
+        CacheManager.getApplicationSearchIndex().putAll(applicationSearchResultsList);
+    }
+
+    /**
+     * Fills application search result list with the applications loaded earlier, which
+     * contain every word of the search string in their number, contact person or agent. The
+     * server is not called, the list is left unchanged if nothing is found locally.
+     *
+     * @param searchString The search string.
+     * @return true if applications were found locally.
+     */
+    public boolean searchApplicationsLocally(String searchString) {
+        List<ApplicationSearchResultBean> result = CacheManager.getApplicationSearchIndex().search(
+                searchString, LOCAL_SEARCH_MAX_RESULTS);
+        if (result.isEmpty()) {
+            return false;
+        }
+        applicationSearchResultsList.clear();
+        applicationSearchResultsList.addAll(result);
+        return true;
     }
 
     public ObservableList<ApplicationSearchResultBean> getApplicationSearchResultsList() {
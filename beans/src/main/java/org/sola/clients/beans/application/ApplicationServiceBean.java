@@ -36,6 +36,7 @@ import org.sola.clients.beans.referencedata.RequestTypeBean;
 import org.sola.clients.beans.referencedata.ServiceActionTypeBean;
 import org.sola.clients.beans.referencedata.ServiceStatusTypeBean;
 import org.sola.clients.beans.referencedata.StatusConstants;
+import org.sola.clients.beans.savequeue.SaveQueue;
 import org.sola.clients.beans.validation.ValidationResultBean;
 import org.sola.services.boundary.wsclients.WSManager;
 import org.sola.webservices.transferobjects.casemanagement.ServiceTO;
@@ -199,6 +200,7 @@ public class ApplicationServiceBean extends ApplicationServiceSummaryBean {
 
     /** Cancels service */
     public List<ValidationResultBean> cancel() {
+        SaveQueue.getInstance().awaitSaved(getApplicationId());
         return TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().serviceActionCancel(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -207,6 +209,7 @@ public class ApplicationServiceBean extends ApplicationServiceSummaryBean {
 
     /** Set service as completed */
     public List<ValidationResultBean> complete() {
+        SaveQueue.getInstance().awaitSaved(getApplicationId());
         return TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().serviceActionComplete(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -214,6 +217,7 @@ public class ApplicationServiceBean extends ApplicationServiceSummaryBean {
 
     /** Revert service back to the pending state */
     public List<ValidationResultBean> revert() {
+        SaveQueue.getInstance().awaitSaved(getApplicationId());
         return TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getCaseManagementService().serviceActionRevert(this.getId(), this.getRowVersion()),
                 ValidationResultBean.class, null);
@@ -47,6 +47,12 @@ import org.sola.webservices.transferobjects.AbstractTO;
 public final class CacheManager {
 
     private static Cache cache = new Cache();
+    private static final int SEARCH_INDEX_SIZE = 5000;
+    private static final long SEARCH_INDEX_MAX_AGE = 10 * 60 * 1000;
+    private static final PartySearchIndex partySearchIndex =
+            new PartySearchIndex(SEARCH_INDEX_SIZE, SEARCH_INDEX_MAX_AGE);
+    private static final ApplicationSearchIndex applicationSearchIndex =
+            new ApplicationSearchIndex(SEARCH_INDEX_SIZE, SEARCH_INDEX_MAX_AGE);
     private static final String LIST_POSTFIX = "_LIST";
     private static final String MAP_POSTFIX = "_MAP";
     /** Cache key of the {@link RequestTypeBean} collection.*/
@@ -448,6 +454,22 @@ public final class CacheManager {
         return result;
     }
 
+    /**
+     * Returns local search index of the parties loaded from the server during the
+     * user's session.
+     */
+    public static PartySearchIndex getPartySearchIndex() {
+        return partySearchIndex;
+    }
+
+    /**
+     * Returns local search index of the applications loaded from the server during the
+     * user's session.
+     */
+    public static ApplicationSearchIndex getApplicationSearchIndex() {
+        return applicationSearchIndex;
+    }
+
     /** Adds object into the cache. */
     public static void add(String key, Object object){
         cache.put(key, object);
@@ -0,0 +1,296 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sola.clients.beans.AbstractIdBean;
+
+/**
+ * In-memory n-gram index over the beans recently loaded from the server. It is used to answer
+ * type-ahead lookups without calling the web services. Every word of the indexed text is split
+ * into all substrings of up to 3 characters, each pointing to the IDs of the beans containing
+ * it. A lookup intersects the ID sets of the n-grams of the search words and checks the
+ * remaining candidates, so it takes well under a millisecond for a few thousand beans.
+ * <p>The index holds up to <code>maxSize</code> beans, the bean loaded the earliest is removed
+ * first. Beans loaded more than <code>maxAge</code> milliseconds ago are not returned any more,
+ * so the beans changed or removed by other users drop out of the index. All methods are
+ * synchronized, the index can be updated from the background tasks.</p>
+ */
+public abstract class LocalSearchIndex<T extends AbstractIdBean> {
+
+    private static final int GRAM_LENGTH = 3;
+    private int maxSize;
+    private long maxAge;
+    private LinkedHashMap<String, T> beans;
+    private HashMap<String, Long> beanTimes;
+    private HashMap<String, Set<String>> beanGrams;
+    private HashMap<String, String> beanTexts;
+    private HashMap<String, Set<String>> postings;
+
+    /**
+     * Class constructor.
+     *
+     * @param maxSize Maximum number of beans to keep in the index.
+     */
+    public LocalSearchIndex(int maxSize) {
+        this(maxSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param maxSize Maximum number of beans to keep in the index.
+     * @param maxAge Time in milliseconds the loaded beans are kept in the index.
+     */
+    public LocalSearchIndex(int maxSize, long maxAge) {
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        beans = new LinkedHashMap<String, T>();
+        beanTimes = new HashMap<String, Long>();
+        beanGrams = new HashMap<String, Set<String>>();
+        beanTexts = new HashMap<String, String>();
+        postings = new HashMap<String, Set<String>>();
+    }
+
+    /**
+     * Returns the text to index for the given bean.
+     *
+     * @param bean The bean to index.
+     */
+    protected abstract String getSearchText(T bean);
+
+    /**
+     * Adds the bean to the index or replaces the bean with the same ID. Beans with older row
+     * version than the indexed one are ignored.
+     */
+    public synchronized void put(T bean) {
+        if (bean == null || bean.getId() == null) {
+            return;
+        }
+        T indexed = beans.get(bean.getId());
+        if (indexed != null && indexed.getRowVersion() > bean.getRowVersion()) {
+            return;
+        }
+        removeBean(bean.getId());
+
+        String text = normalize(getSearchText(bean));
+        Set<String> grams = new HashSet<String>();
+        for (String word : splitWords(text)) {
+            addGrams(word, grams);
+        }
+        for (String gram : grams) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null) {
+                ids = new HashSet<String>();
+                postings.put(gram, ids);
+            }
+            ids.add(bean.getId());
+        }
+        beans.put(bean.getId(), bean);
+        beanTimes.put(bean.getId(), currentTime());
+        beanGrams.put(bean.getId(), grams);
+        beanTexts.put(bean.getId(), text);
+
+        if (beans.size() > maxSize) {
+            Iterator<String> it = beans.keySet().iterator();
+            removeBean(it.next());
+        }
+    }
+
+    /** Adds the list of beans to the index. */
+    public synchronized void putAll(Collection<? extends T> beanList) {
+        if (beanList == null) {
+            return;
+        }
+        for (T bean : beanList) {
+            put(bean);
+        }
+    }
+
+    /** Removes the bean with the given ID from the index. */
+    public synchronized void remove(String id) {
+        removeBean(id);
+    }
+
+    /** Returns the bean by ID or <code>null</code> if it is not indexed. */
+    public synchronized T get(String id) {
+        removeExpired();
+        return id == null ? null : beans.get(id);
+    }
+
+    /**
+     * Returns the beans containing every word of the search string, ignoring case. An empty
+     * list is returned if nothing is found, in which case the server should be queried.
+     *
+     * @param searchString The search string.
+     * @param maxResults Maximum number of beans to return.
+     */
+    public synchronized List<T> search(String searchString, int maxResults) {
+        removeExpired();
+        List<T> result = new ArrayList<T>();
+        String[] words = splitWords(normalize(searchString));
+        if (words.length == 0) {
+            return result;
+        }
+
+        Set<String> candidates = null;
+        for (String word : words) {
+            List<String> grams = new ArrayList<String>();
+            if (word.length() <= GRAM_LENGTH) {
+                grams.add(word);
+            } else {
+                for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+                    grams.add(word.substring(i, i + GRAM_LENGTH));
+                }
+            }
+            for (String gram : grams) {
+                Set<String> ids = postings.get(gram);
+                if (ids == null) {
+                    return result;
+                }
+                if (candidates == null) {
+                    candidates = new HashSet<String>(ids);
+                } else {
+                    candidates.retainAll(ids);
+                }
+                if (candidates.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+
+        // N-grams don't keep the order of characters, check the full words.
+        for (String id : candidates) {
+            String text = beanTexts.get(id);
+            boolean matches = true;
+            for (String word : words) {
+                if (!text.contains(word)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                result.add(beans.get(id));
+                if (result.size() >= maxResults) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of indexed beans. */
+    public synchronized int size() {
+        removeExpired();
+        return beans.size();
+    }
+
+    /** Removes all beans from the index. */
+    public synchronized void clear() {
+        beans.clear();
+        beanTimes.clear();
+        beanGrams.clear();
+        beanTexts.clear();
+        postings.clear();
+    }
+
+    /** Returns the list of indexed beans. */
+    public synchronized List<T> getBeans() {
+        removeExpired();
+        return Collections.unmodifiableList(new ArrayList<T>(beans.values()));
+    }
+
+    private void removeBean(String id) {
+        if (id == null || beans.remove(id) == null) {
+            return;
+        }
+        beanTexts.remove(id);
+        beanTimes.remove(id);
+        Set<String> grams = beanGrams.remove(id);
+        if (grams != null) {
+            for (String gram : grams) {
+                Set<String> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the beans loaded more than the maximum age ago. The beans are kept in the order
+     * they were loaded, so only the oldest ones are checked.
+     */
+    private void removeExpired() {
+        long now = currentTime();
+        Iterator<String> it = beans.keySet().iterator();
+        while (it.hasNext()) {
+            String id = it.next();
+            if (now - beanTimes.get(id) <= maxAge) {
+                break;
+            }
+            removeBean(id);
+            it = beans.keySet().iterator();
+        }
+    }
+
+    private static long currentTime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private void addGrams(String word, Set<String> grams) {
+        for (int start = 0; start < word.length(); start++) {
+            for (int length = 1; length <= GRAM_LENGTH && start + length <= word.length(); length++) {
+                grams.add(word.substring(start, start + length));
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase();
+    }
+
+    private static String[] splitWords(String text) {
+        if (text.length() == 0) {
+            return new String[0];
+        }
+        return text.split("\\s+");
+    }
+}
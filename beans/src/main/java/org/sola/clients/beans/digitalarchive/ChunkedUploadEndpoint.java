@@ -0,0 +1,76 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Server side of the chunked document upload, used by {@link ChunkedUploader}.
+ */
+public interface ChunkedUploadEndpoint {
+
+    /**
+     * Starts new upload and returns its ID.
+     *
+     * @param fileName The name of the uploaded file.
+     * @param fileSize Size of the file in bytes.
+     * @param chunkSize Size of the chunks in bytes. The last chunk can be smaller.
+     */
+    String beginUpload(String fileName, long fileSize, int chunkSize) throws IOException;
+
+    /**
+     * Returns indexes of the chunks, received by the server. Returns null if the
+     * upload is unknown to the server, e.g. expired.
+     */
+    Set<Integer> getReceivedChunks(String uploadId) throws IOException;
+
+    /**
+     * Sends the chunk to the server. The server verifies the checksum and rejects
+     * the chunk if it doesn't match.
+     *
+     * @param uploadId ID of the upload.
+     * @param index Index of the chunk, starting from 0.
+     * @param data Buffer with the chunk data.
+     * @param length Length of the chunk data in the buffer.
+     * @param checksum SHA-1 checksum of the chunk data as hex string.
+     */
+    void uploadChunk(String uploadId, int index, byte[] data, int length, String checksum)
+            throws IOException;
+
+    /**
+     * Completes the upload, creating new document from the received chunks.
+     *
+     * @param uploadId ID of the upload.
+     * @param checksum SHA-1 checksum of the whole file as hex string.
+     * @param description Description of the document.
+     * @param extension Extension of the document file.
+     */
+    DocumentBean completeUpload(String uploadId, String checksum, String description,
+            String extension) throws IOException;
+}
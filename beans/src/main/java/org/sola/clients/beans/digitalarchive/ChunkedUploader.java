@@ -0,0 +1,299 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import org.sola.common.FileUtility;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Uploads documents in fixed size chunks. The file is streamed from the disk, so
+ * only one chunk is kept in memory. Each chunk is sent with its SHA-1 checksum and
+ * repeated if sending fails. The upload state is stored on the local disk, so an
+ * interrupted upload of the same file continues from the chunks the server has
+ * already received.
+ * <p>Chunked upload is switched on by setting <code>SOLA_CHUNKED_UPLOAD_URL</code>
+ * system property to the base URL of the upload endpoint. Chunk size in bytes can
+ * be set by <code>SOLA_CHUNKED_UPLOAD_CHUNK_SIZE</code>.</p>
+ */
+public class ChunkedUploader {
+
+    /** System property with the base URL of the upload endpoint. */
+    public static final String UPLOAD_URL_PROPERTY = "SOLA_CHUNKED_UPLOAD_URL";
+    /** System property with the chunk size in bytes. */
+    public static final String CHUNK_SIZE_PROPERTY = "SOLA_CHUNKED_UPLOAD_CHUNK_SIZE";
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 1000;
+    private static final String STATE_EXTENSION = ".upload";
+    private static final String UPLOAD_ID = "uploadId";
+    private static final String CHUNK_SIZE = "chunkSize";
+    private static final String CHECKSUM = "checksum";
+    private ChunkedUploadEndpoint endpoint;
+    private File stateDirectory;
+    private int chunkSize;
+    private long retryDelay = RETRY_DELAY;
+
+    /** Listener of the upload progress. */
+    public interface ProgressListener {
+
+        void progressChanged(long uploadedBytes, long totalBytes);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param endpoint Endpoint to send the chunks to.
+     * @param stateDirectory Directory to keep the state of the uploads in.
+     * @param chunkSize Size of the chunks in bytes.
+     */
+    public ChunkedUploader(ChunkedUploadEndpoint endpoint, File stateDirectory, int chunkSize) {
+        this.endpoint = endpoint;
+        this.stateDirectory = stateDirectory;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Returns true if chunked upload endpoint is configured. */
+    public static boolean isEnabled() {
+        String url = System.getProperty(UPLOAD_URL_PROPERTY);
+        return url != null && url.length() > 0;
+    }
+
+    /** Returns the uploader, sending chunks to the configured endpoint. */
+    public static ChunkedUploader getInstance() {
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        try {
+            chunkSize = Integer.parseInt(System.getProperty(CHUNK_SIZE_PROPERTY,
+                    Integer.toString(DEFAULT_CHUNK_SIZE)));
+        } catch (NumberFormatException ex) {
+        }
+        return new ChunkedUploader(new HttpChunkedUploadEndpoint(System.getProperty(UPLOAD_URL_PROPERTY)),
+                new File(System.getProperty("user.home") + File.separator + ".sola"
+                + File.separator + "uploads"), chunkSize);
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Uploads the file and creates new document from it. If uploading of some chunk
+     * fails after several attempts, the exception is thrown and the upload can be
+     * continued by calling this method again.
+     *
+     * @param file The file to upload.
+     * @param description Description of the new document.
+     * @param listener Progress listener, can be null.
+     */
+    public DocumentBean upload(File file, String description, ProgressListener listener)
+            throws IOException {
+        File stateFile = getStateFile(file);
+        Properties state = sendChunks(file, stateFile, listener);
+        DocumentBean document = endpoint.completeUpload(state.getProperty(UPLOAD_ID),
+                state.getProperty(CHECKSUM), description, FileUtility.getFileExtesion(file.getName()));
+        stateFile.delete();
+        return document;
+    }
+
+    /**
+     * Sends the chunks of the file without creating the document. The upload state
+     * is kept, so the following {@link #upload(File, String, ProgressListener)} of
+     * the same file only completes the upload. Uploads, which are never completed,
+     * expire on the server.
+     *
+     * @param file The file to send.
+     * @param listener Progress listener, can be null.
+     */
+    public void transfer(File file, ProgressListener listener) throws IOException {
+        sendChunks(file, getStateFile(file), listener);
+    }
+
+    /**
+     * Sends the chunks, not received by the server yet. Returns the upload state
+     * with the checksum of the whole file.
+     */
+    private Properties sendChunks(File file, File stateFile, ProgressListener listener)
+            throws IOException {
+        Properties state = loadState(stateFile);
+        String uploadId = state.getProperty(UPLOAD_ID);
+        int uploadChunkSize = Integer.parseInt(state.getProperty(CHUNK_SIZE, Integer.toString(chunkSize)));
+        Set<Integer> receivedChunks = null;
+
+        if (uploadId != null) {
+            receivedChunks = endpoint.getReceivedChunks(uploadId);
+            if (receivedChunks == null) {
+                LogUtility.log("Upload " + uploadId + " is unknown to the server, starting again",
+                        Level.INFO);
+            }
+        }
+        if (receivedChunks == null) {
+            uploadChunkSize = chunkSize;
+            uploadId = endpoint.beginUpload(file.getName(), file.length(), uploadChunkSize);
+            receivedChunks = Collections.emptySet();
+            state.setProperty(UPLOAD_ID, uploadId);
+            state.setProperty(CHUNK_SIZE, Integer.toString(uploadChunkSize));
+            saveState(stateFile, state);
+        }
+
+        MessageDigest fileDigest = createDigest();
+        MessageDigest chunkDigest = createDigest();
+        byte[] buffer = new byte[uploadChunkSize];
+        long uploaded = 0;
+        InputStream in = new FileInputStream(file);
+        try {
+            int index = 0;
+            int length;
+            while ((length = readChunk(in, buffer)) > 0) {
+                fileDigest.update(buffer, 0, length);
+                if (!receivedChunks.contains(index)) {
+                    chunkDigest.reset();
+                    chunkDigest.update(buffer, 0, length);
+                    uploadChunk(uploadId, index, buffer, length, toHex(chunkDigest.digest()));
+                }
+                uploaded += length;
+                if (listener != null) {
+                    listener.progressChanged(uploaded, file.length());
+                }
+                index++;
+            }
+        } finally {
+            in.close();
+        }
+
+        state.setProperty(CHECKSUM, toHex(fileDigest.digest()));
+        return state;
+    }
+
+    /** Sends the chunk, repeating on failure. */
+    private void uploadChunk(String uploadId, int index, byte[] buffer, int length, String checksum)
+            throws IOException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                endpoint.uploadChunk(uploadId, index, buffer, length, checksum);
+                return;
+            } catch (IOException ex) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                LogUtility.log(String.format("Chunk %s of upload %s failed, attempt %s: %s",
+                        index, uploadId, attempt, ex.getMessage()), Level.WARNING);
+                try {
+                    Thread.sleep(retryDelay * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /** Reads full chunk from the stream, returns number of bytes read. */
+    private int readChunk(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        int length;
+        while (total < buffer.length && (length = in.read(buffer, total, buffer.length - total)) > 0) {
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the file with the upload state. The state is bound to the path, size
+     * and modification time of the file, so changed file is uploaded from the start.
+     */
+    private File getStateFile(File file) {
+        String key = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+        try {
+            return new File(stateDirectory, toHex(createDigest().digest(key.getBytes("UTF-8")))
+                    + STATE_EXTENSION);
+        } catch (IOException ex) {
+            return new File(stateDirectory, Integer.toHexString(key.hashCode()) + STATE_EXTENSION);
+        }
+    }
+
+    private Properties loadState(File stateFile) {
+        Properties state = new Properties();
+        if (stateFile.exists()) {
+            try {
+                InputStream in = new FileInputStream(stateFile);
+                try {
+                    state.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ex) {
+                LogUtility.log("Failed to read upload state " + stateFile.getPath(), Level.WARNING);
+            }
+        }
+        return state;
+    }
+
+    private void saveState(File stateFile, Properties state) throws IOException {
+        if (!stateDirectory.exists()) {
+            stateDirectory.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(stateFile);
+        try {
+            state.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** Returns hex string of the bytes. */
+    public static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
@@ -29,11 +29,18 @@ package org.sola.clients.beans.digitalarchive;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.awt.Desktop;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
 import org.sola.clients.beans.AbstractIdBean;
 import org.sola.clients.beans.AbstractVersionedBean;
 import org.sola.clients.beans.converters.TypeConverters;
 import org.sola.common.FileUtility;
+import org.sola.common.logging.LogUtility;
+import org.sola.common.messaging.ClientMessage;
+import org.sola.common.messaging.MessageUtility;
 import org.sola.services.boundary.wsclients.WSManager;
 import org.sola.webservices.transferobjects.EntityAction;
 import org.sola.webservices.transferobjects.digitalarchive.DocumentBinaryTO;
@@ -53,6 +60,7 @@ public class DocumentBean extends AbstractIdBean {
     private String description;
     private String extension;
     private String nr;
+    private static DocumentOpener documentOpener;
 
     public DocumentBean() {
         super();
@@ -135,6 +143,29 @@ public class DocumentBean extends AbstractIdBean {
      * @param file File object in the local folder.
      */
     public static DocumentBean createDocumentFromLocalFile(File file) {
+        return createDocumentFromLocalFile(file, null);
+    }
+
+    /**
+     * Creates digital archive document from the file in the local folder.
+     * If chunked upload is configured, the file is streamed in chunks by
+     * {@link ChunkedUploader}, otherwise it is sent in one piece. Chunks already
+     * sent by the {@link ScanFolderWatcher} are not sent again.
+     * @param file File object in the local folder.
+     * @param listener Listener of the chunked upload progress, can be null.
+     */
+    public static DocumentBean createDocumentFromLocalFile(File file,
+            ChunkedUploader.ProgressListener listener) {
+        if (ScanFolderWatcher.isEnabled()) {
+            ScanFolderWatcher.getInstance().prepareUpload(file);
+        }
+        if (file != null && file.getName().contains(".") && ChunkedUploader.isEnabled()) {
+            try {
+                return ChunkedUploader.getInstance().upload(file, file.getName(), listener);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex.getLocalizedMessage(), ex);
+            }
+        }
         if (file != null && file.getName().contains(".")) {
             DocumentBinaryTO documentBinary = new DocumentBinaryTO();
             documentBinary.setDescription(file.getName());
@@ -153,12 +184,66 @@ public class DocumentBean extends AbstractIdBean {
      * @param Id The ID of the document to open.
      */
     public static void openDocument(String Id) {
+        openDocument(Id, DocumentCache.ANY_VERSION);
+    }
+
+    /**
+     * Opens document from the digital archive. Document is downloaded into the
+     * {@link DocumentCache} and opened from there. Repeated opens of the same
+     * document version don't call the server. If {@link DocumentOpener} is set,
+     * it's used to open the document inside the application.
+     * @param Id The ID of the document to open.
+     * @param rowVersion Row version of the document or
+     * {@link DocumentCache#ANY_VERSION} if it's not known.
+     */
+    public static void openDocument(String Id, int rowVersion) {
         if (Id != null) {
-            DocumentBinaryTO documentBinary = WSManager.getInstance().getDigitalArchive().getDocument(Id);
-            if (documentBinary != null) {
+            DocumentCache cache = DocumentCache.getInstance();
+            File file = cache.getDocument(Id, rowVersion);
+            if (file == null) {
+                DocumentBinaryTO documentBinary = WSManager.getInstance().getDigitalArchive().getDocument(Id);
+                if (documentBinary == null) {
+                    return;
+                }
                 String fileName = "sola_arch_" + documentBinary.getNr() + "." + documentBinary.getExtension();
-                FileUtility.runFile(documentBinary.getBody(), fileName);
+                try {
+                    file = cache.storeDocument(Id, rowVersion, fileName,
+                            new ByteArrayInputStream(documentBinary.getBody()));
+                } catch (IOException ex) {
+                    LogUtility.log("Failed to cache document " + fileName, Level.WARNING);
+                    FileUtility.runFile(documentBinary.getBody(), fileName);
+                    return;
+                }
+            }
+            if (documentOpener != null && documentOpener.open(file)) {
+                return;
+            }
+            try {
+                Desktop.getDesktop().open(file);
+            } catch (IOException ex) {
+                MessageUtility.displayMessage(ClientMessage.ERR_FAILED_OPEN_FILE,
+                        new Object[]{file.getName()});
             }
         }
     }
+
+    /**
+     * Opens this document from the digital archive, using the cached copy of
+     * the same version if there is one.
+     */
+    public void openDocument() {
+        openDocument(getId(), getRowVersion());
+    }
+
+    public static DocumentOpener getDocumentOpener() {
+        return documentOpener;
+    }
+
+    /**
+     * Sets opener of the documents inside the application. If not set, or
+     * opener can't open the file, documents are opened by the external application.
+     */
+    public static void setDocumentOpener(DocumentOpener opener) {
+        documentOpener = opener;
+    }
 }
@@ -0,0 +1,296 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Local disk cache of the digital archive documents, opened by the user. Documents
+ * are stored in the directory named by the hash of the document ID, in the
+ * subdirectory named by the row version. Total size of the cache is limited, least
+ * recently used documents are removed when the limit is exceeded.
+ * <p>The limit in megabytes is set by <code>SOLA_DOCUMENT_CACHE_SIZE</code> system
+ * property, 500 by default.</p>
+ */
+public class DocumentCache {
+
+    /** System property with the size limit of the cache in megabytes. */
+    public static final String CACHE_SIZE_PROPERTY = "SOLA_DOCUMENT_CACHE_SIZE";
+    public static final long DEFAULT_CACHE_SIZE = 500;
+    /** Row version to use when it's not known. */
+    public static final int ANY_VERSION = -1;
+    private static final String TMP_EXTENSION = ".tmp";
+    private File directory;
+    private long maxSize;
+
+    /**
+     * Class constructor.
+     *
+     * @param directory Directory to keep the documents in.
+     * @param maxSize Size limit of the cache in bytes.
+     */
+    public DocumentCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /** Returns the cache in the user home folder. */
+    public static DocumentCache getInstance() {
+        return DocumentCacheHolder.INSTANCE;
+    }
+
+    private static class DocumentCacheHolder {
+
+        private static final DocumentCache INSTANCE = createDefaultCache();
+
+        private static DocumentCache createDefaultCache() {
+            long size = DEFAULT_CACHE_SIZE;
+            try {
+                size = Long.parseLong(System.getProperty(CACHE_SIZE_PROPERTY,
+                        Long.toString(DEFAULT_CACHE_SIZE)));
+            } catch (NumberFormatException ex) {
+            }
+            return new DocumentCache(new File(System.getProperty("user.home") + File.separator
+                    + ".sola" + File.separator + "documents"), size * 1024 * 1024);
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns cached file of the document or null if it's not cached.
+     *
+     * @param documentId ID of the document.
+     * @param rowVersion Row version of the document or {@link #ANY_VERSION} to
+     * return the most recently used version.
+     */
+    public synchronized File getDocument(String documentId, int rowVersion) {
+        File documentDir = new File(directory, hash(documentId));
+        File versionDir = null;
+        if (rowVersion != ANY_VERSION) {
+            versionDir = new File(documentDir, Integer.toString(rowVersion));
+        } else {
+            File[] versionDirs = documentDir.listFiles();
+            if (versionDirs != null) {
+                for (File dir : versionDirs) {
+                    if (dir.isDirectory() && (versionDir == null
+                            || dir.lastModified() > versionDir.lastModified())) {
+                        versionDir = dir;
+                    }
+                }
+            }
+        }
+        File file = getDocumentFile(versionDir);
+        if (file != null) {
+            versionDir.setLastModified(System.currentTimeMillis());
+        }
+        return file;
+    }
+
+    /**
+     * Streams the document content into the cache and returns the cached file. The
+     * file is made read only, so that changes made in the external application
+     * don't get into the cache.
+     *
+     * @param documentId ID of the document.
+     * @param rowVersion Row version of the document.
+     * @param fileName Name of the document file.
+     * @param content Content of the document. The stream is not closed.
+     */
+    public File storeDocument(String documentId, int rowVersion, String fileName, InputStream content)
+            throws IOException {
+        File versionDir = new File(new File(directory, hash(documentId)),
+                Integer.toString(Math.max(0, rowVersion)));
+        File file = new File(versionDir, fileName);
+        File tmpFile = new File(versionDir, fileName + TMP_EXTENSION);
+        synchronized (this) {
+            versionDir.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(tmpFile);
+        try {
+            byte[] buffer = new byte[65536];
+            int length;
+            while ((length = content.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            out.close();
+        }
+        synchronized (this) {
+            file.setWritable(true);
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("Can't rename " + tmpFile.getPath());
+            }
+            file.setReadOnly();
+            versionDir.setLastModified(System.currentTimeMillis());
+            evict(versionDir);
+        }
+        return file;
+    }
+
+    /** Returns total size of the cached documents in bytes. */
+    public synchronized long getSize() {
+        long size = 0;
+        for (File versionDir : getVersionDirs()) {
+            size += getDirSize(versionDir);
+        }
+        return size;
+    }
+
+    /** Removes all cached documents. */
+    public synchronized void clear() {
+        for (File versionDir : getVersionDirs()) {
+            delete(versionDir);
+        }
+    }
+
+    /**
+     * Removes least recently used documents until total size fits into the limit.
+     * The document just stored is kept even if it's bigger than the limit.
+     */
+    private void evict(File keepDir) {
+        List<File> versionDirs = getVersionDirs();
+        long size = 0;
+        for (File versionDir : versionDirs) {
+            size += getDirSize(versionDir);
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Collections.sort(versionDirs, new Comparator<File>() {
+
+            @Override
+            public int compare(File dir1, File dir2) {
+                return dir1.lastModified() < dir2.lastModified() ? -1
+                        : (dir1.lastModified() == dir2.lastModified() ? 0 : 1);
+            }
+        });
+        for (File versionDir : versionDirs) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (versionDir.equals(keepDir)) {
+                continue;
+            }
+            long dirSize = getDirSize(versionDir);
+            if (delete(versionDir)) {
+                size -= dirSize;
+            } else {
+                // File is probably open in the external application
+                LogUtility.log("Can't remove cached document " + versionDir.getPath(), Level.FINE);
+            }
+        }
+    }
+
+    private List<File> getVersionDirs() {
+        List<File> versionDirs = new ArrayList<File>();
+        File[] documentDirs = directory.listFiles();
+        if (documentDirs != null) {
+            for (File documentDir : documentDirs) {
+                File[] dirs = documentDir.listFiles();
+                if (dirs != null) {
+                    versionDirs.addAll(Arrays.asList(dirs));
+                }
+            }
+        }
+        return versionDirs;
+    }
+
+    private File getDocumentFile(File versionDir) {
+        if (versionDir == null) {
+            return null;
+        }
+        File[] files = versionDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(TMP_EXTENSION)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private long getDirSize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /** Deletes version directory with its file and the document directory if it gets empty. */
+    private boolean delete(File versionDir) {
+        boolean result = true;
+        File[] files = versionDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.setWritable(true);
+                result &= file.delete();
+            }
+        }
+        result &= versionDir.delete();
+        File documentDir = versionDir.getParentFile();
+        String[] versions = documentDir.list();
+        if (versions != null && versions.length == 0) {
+            documentDir.delete();
+        }
+        return result;
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA1");
+            return ChunkedUploader.toHex(digest.digest(value.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException ex) {
+            return Integer.toHexString(value.hashCode());
+        } catch (IOException ex) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
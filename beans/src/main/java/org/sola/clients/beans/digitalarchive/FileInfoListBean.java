@@ -27,24 +27,48 @@
  */
 package org.sola.clients.beans.digitalarchive;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.jdesktop.observablecollections.ObservableList;
 import org.sola.clients.beans.AbstractBindingBean;
 import org.sola.clients.beans.controls.SolaObservableList;
-import org.sola.clients.beans.converters.TypeConverters;
-import org.sola.services.boundary.wsclients.WSManager;
 
 /** 
  * Holds the list of {@link FileInfoBean} objects, representing the list of 
- * scanned images in the remote folder. 
+ * scanned images in the remote folder. The folder is loaded by pages, filtered
+ * and sorted by the {@link FileListingEndpoint}.
+ * <p>Paged listing endpoint is used when <code>SOLA_FILE_LISTING_URL</code> system
+ * property is set to its base URL, otherwise the whole folder is requested from the
+ * digital archive web service and paged on the client. Page size can be set by
+ * <code>SOLA_FILE_LISTING_PAGE_SIZE</code>, 200 by default.</p>
  */
 public class FileInfoListBean extends AbstractBindingBean {
     
     /** Property name for the selected file in the remote folder files list. */
     public static final String SELECTED_FILE_INFO_BEAN_PROPERTY = "selectedFileInfoBean";
+    /** System property with the base URL of the paged listing endpoint. */
+    public static final String LISTING_URL_PROPERTY = "SOLA_FILE_LISTING_URL";
+    /** System property with the number of files in one page. */
+    public static final String PAGE_SIZE_PROPERTY = "SOLA_FILE_LISTING_PAGE_SIZE";
+    public static final int DEFAULT_PAGE_SIZE = 200;
     
     private SolaObservableList<FileInfoBean> lstFileInfo;
     private FileInfoBean selectedFileInfoBean;
+    private FileListingEndpoint endpoint;
+    private int pageSize;
+    private int totalCount;
+    private String nameFilter;
+    private Date modifiedFrom;
+    private Date modifiedTo;
+    private String sortBy;
+    private boolean sortDescending;
+    private boolean filterChanged;
     
     /** 
      * Creates object's instance and initializes {@link ObservableList}
@@ -52,16 +76,189 @@ public class FileInfoListBean extends AbstractBindingBean {
      */
     public FileInfoListBean() {
         lstFileInfo = new SolaObservableList<FileInfoBean>();
+        String url = System.getProperty(LISTING_URL_PROPERTY);
+        if (url != null && url.length() > 0) {
+            endpoint = new HttpFileListingEndpoint(url);
+        } else {
+            endpoint = new WSFileListingEndpoint();
+        }
+        pageSize = DEFAULT_PAGE_SIZE;
+        try {
+            pageSize = Integer.parseInt(System.getProperty(PAGE_SIZE_PROPERTY,
+                    Integer.toString(DEFAULT_PAGE_SIZE)));
+        } catch (NumberFormatException ex) {
+        }
     }
     
     /** 
      * Populates {@link ObservableList}&lt;{@link FileInfoBean}&gt; with data 
-     * reflecting remote folder content.
+     * reflecting remote folder content. Reloads all pages loaded so far, or the
+     * first page. Files, which didn't change, are kept in the list. After the filter
+     * or sorting is changed, only the first page is loaded.
      */
     public void loadServerFileInfoList(){
-        TypeConverters.TransferObjectListToBeanList(
-                WSManager.getInstance().getDigitalArchive().getAllFiles(), 
-                FileInfoBean.class, (List)lstFileInfo);
+        loadFiles(0, filterChanged ? pageSize : Math.max(pageSize, lstFileInfo.size()));
+        filterChanged = false;
+    }
+
+    /**
+     * Loads the next page of the files and adds it to the list.
+     * @return false if there are no more files to load.
+     */
+    public boolean loadNextServerFileInfoPage() {
+        if (!hasMoreServerFiles()) {
+            return false;
+        }
+        loadFiles(lstFileInfo.size(), pageSize);
+        return true;
+    }
+
+    /** Returns true if not all files of the remote folder are loaded. */
+    public boolean hasMoreServerFiles() {
+        return lstFileInfo.size() < totalCount;
+    }
+
+    /** Returns number of the files in the remote folder, matching the filter. */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Loads the files from the listing and merges them into the list, starting
+     * from the given index. Files are matched by name; the file is replaced only
+     * if its size or modification time changed, so unchanged files keep their
+     * loaded thumbnails and selection.
+     */
+    private void loadFiles(int first, int count) {
+        FileListingEndpoint.Page page;
+        try {
+            page = endpoint.getFiles(nameFilter, modifiedFrom, modifiedTo, sortBy, sortDescending,
+                    first, count);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getLocalizedMessage(), ex);
+        }
+        totalCount = page.getTotalCount();
+
+        Map<String, FileInfoBean> loadedFiles = new HashMap<String, FileInfoBean>();
+        for (FileInfoBean file : lstFileInfo) {
+            loadedFiles.put(file.getName(), file);
+        }
+        List<FileInfoBean> files = new ArrayList<FileInfoBean>();
+        for (FileInfoBean file : page.getFiles()) {
+            FileInfoBean loadedFile = loadedFiles.get(file.getName());
+            if (first > 0 && loadedFile != null) {
+                // Shifted into the next page by the files added to the folder
+                continue;
+            }
+            if (loadedFile != null && isSameFile(loadedFile, file)) {
+                files.add(loadedFile);
+            } else {
+                files.add(file);
+            }
+        }
+
+        int index = first;
+        Set<String> names = new HashSet<String>();
+        for (FileInfoBean file : files) {
+            names.add(file.getName());
+        }
+        for (FileInfoBean file : files) {
+            // Files removed from the folder are removed from the list, not shifted
+            while (first == 0 && index < lstFileInfo.size() && !names.contains(lstFileInfo.get(index).getName())) {
+                lstFileInfo.remove(index);
+            }
+            if (index < lstFileInfo.size()) {
+                if (lstFileInfo.get(index) != file) {
+                    lstFileInfo.set(index, file);
+                }
+            } else {
+                lstFileInfo.add(file);
+            }
+            index++;
+        }
+        // Files after the reloaded range are dropped on full reload
+        if (first == 0) {
+            while (lstFileInfo.size() > index) {
+                lstFileInfo.remove(lstFileInfo.size() - 1);
+            }
+        }
+        if (selectedFileInfoBean != null && !lstFileInfo.contains(selectedFileInfoBean)) {
+            setSelectedFileInfoBean(null);
+        }
+    }
+
+    private boolean isSameFile(FileInfoBean file1, FileInfoBean file2) {
+        if (file1.getFileSize() != file2.getFileSize()) {
+            return false;
+        }
+        return file1.getModificationDate() == null ? file2.getModificationDate() == null
+                : file1.getModificationDate().equals(file2.getModificationDate());
+    }
+
+    public FileListingEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(FileListingEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public String getNameFilter() {
+        return nameFilter;
+    }
+
+    /** Sets part of the file name to filter by. Applied on the next full load. */
+    public void setNameFilter(String nameFilter) {
+        this.nameFilter = nameFilter == null || nameFilter.length() == 0 ? null : nameFilter;
+        filterChanged = true;
+    }
+
+    public Date getModifiedFrom() {
+        return modifiedFrom;
+    }
+
+    public void setModifiedFrom(Date modifiedFrom) {
+        this.modifiedFrom = modifiedFrom;
+        filterChanged = true;
+    }
+
+    public Date getModifiedTo() {
+        return modifiedTo;
+    }
+
+    public void setModifiedTo(Date modifiedTo) {
+        this.modifiedTo = modifiedTo;
+        filterChanged = true;
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    /**
+     * Sets property to sort by, one of the {@link FileInfoBean} property names.
+     * Applied on the next full load.
+     */
+    public void setSortBy(String sortBy) {
+        this.sortBy = sortBy;
+        filterChanged = true;
+    }
+
+    public boolean isSortDescending() {
+        return sortDescending;
+    }
+
+    public void setSortDescending(boolean sortDescending) {
+        this.sortDescending = sortDescending;
+        filterChanged = true;
     }
 
     public ObservableList<FileInfoBean> getFileInfoList() {
@@ -0,0 +1,78 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Server side of the paged listing of the remote folder, used by
+ * {@link FileInfoListBean}.
+ */
+public interface FileListingEndpoint {
+
+    /** One page of the listing. */
+    class Page {
+
+        private final List<FileInfoBean> files;
+        private final int totalCount;
+
+        public Page(List<FileInfoBean> files, int totalCount) {
+            this.files = files;
+            this.totalCount = totalCount;
+        }
+
+        /** Returns files of the page. */
+        public List<FileInfoBean> getFiles() {
+            return files;
+        }
+
+        /** Returns number of the files, matching the filter. */
+        public int getTotalCount() {
+            return totalCount;
+        }
+    }
+
+    /**
+     * Returns the page of the files, matching the filter. The first page is requested
+     * when the whole list is reloaded.
+     *
+     * @param nameFilter Part of the file name, case insensitive, or null.
+     * @param modifiedFrom Earliest modification date or null.
+     * @param modifiedTo Latest modification date or null.
+     * @param sortBy Property to sort by, one of {@link FileInfoBean#NAME_PROPERTY},
+     * {@link FileInfoBean#MODIFICATION_DATE_PROPERTY} or
+     * {@link FileInfoBean#FILE_SIZE_PROPERTY}, or null to keep the folder order.
+     * @param descending True to sort in descending order.
+     * @param first Index of the first file to return.
+     * @param count Maximum number of the files to return.
+     */
+    Page getFiles(String nameFilter, Date modifiedFrom, Date modifiedTo, String sortBy,
+            boolean descending, int first, int count) throws IOException;
+}
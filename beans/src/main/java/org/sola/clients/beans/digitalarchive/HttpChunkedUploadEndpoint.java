@@ -0,0 +1,178 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Chunked upload endpoint over plain HTTP. Resources under the base URL:
+ * <ul>
+ * <li><code>POST uploads</code> - starts new upload, returns upload ID;</li>
+ * <li><code>GET uploads/{id}</code> - returns comma separated indexes of the
+ * received chunks, 404 if upload is unknown;</li>
+ * <li><code>PUT uploads/{id}/{index}</code> - stores the chunk, 422 if checksum
+ * doesn't match;</li>
+ * <li><code>POST uploads/{id}/complete</code> - creates the document, returns its
+ * properties (id, nr, rowVersion).</li>
+ * </ul>
+ */
+public class HttpChunkedUploadEndpoint implements ChunkedUploadEndpoint {
+
+    public static final String FILE_NAME_HEADER = "X-File-Name";
+    public static final String FILE_SIZE_HEADER = "X-File-Size";
+    public static final String CHUNK_SIZE_HEADER = "X-Chunk-Size";
+    public static final String CHECKSUM_HEADER = "X-Checksum";
+    public static final String DESCRIPTION_HEADER = "X-Description";
+    public static final String EXTENSION_HEADER = "X-Extension";
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 60000;
+    private String baseUrl;
+
+    /**
+     * Class constructor.
+     *
+     * @param baseUrl Base URL of the endpoint.
+     */
+    public HttpChunkedUploadEndpoint(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    @Override
+    public String beginUpload(String fileName, long fileSize, int chunkSize) throws IOException {
+        HttpURLConnection connection = openConnection("uploads", "POST");
+        connection.setRequestProperty(FILE_NAME_HEADER, URLEncoder.encode(fileName, "UTF-8"));
+        connection.setRequestProperty(FILE_SIZE_HEADER, Long.toString(fileSize));
+        connection.setRequestProperty(CHUNK_SIZE_HEADER, Integer.toString(chunkSize));
+        return readResponse(connection).trim();
+    }
+
+    @Override
+    public Set<Integer> getReceivedChunks(String uploadId) throws IOException {
+        HttpURLConnection connection = openConnection("uploads/" + uploadId, "GET");
+        String response;
+        try {
+            response = readResponse(connection);
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+        Set<Integer> chunks = new HashSet<Integer>();
+        for (String index : response.split(",")) {
+            if (index.trim().length() > 0) {
+                chunks.add(Integer.valueOf(index.trim()));
+            }
+        }
+        return chunks;
+    }
+
+    @Override
+    public void uploadChunk(String uploadId, int index, byte[] data, int length, String checksum)
+            throws IOException {
+        HttpURLConnection connection = openConnection("uploads/" + uploadId + "/" + index, "PUT");
+        connection.setRequestProperty(CHECKSUM_HEADER, checksum);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(data, 0, length);
+        } finally {
+            out.close();
+        }
+        readResponse(connection);
+    }
+
+    @Override
+    public DocumentBean completeUpload(String uploadId, String checksum, String description,
+            String extension) throws IOException {
+        HttpURLConnection connection = openConnection("uploads/" + uploadId + "/complete", "POST");
+        connection.setRequestProperty(CHECKSUM_HEADER, checksum);
+        connection.setRequestProperty(DESCRIPTION_HEADER, URLEncoder.encode(
+                description == null ? "" : description, "UTF-8"));
+        connection.setRequestProperty(EXTENSION_HEADER, extension);
+        Properties properties = new Properties();
+        properties.load(new StringReader(readResponse(connection)));
+
+        DocumentBean document = new DocumentBean();
+        document.setId(properties.getProperty("id"));
+        document.setNr(properties.getProperty("nr"));
+        document.setRowVersion(Integer.parseInt(properties.getProperty("rowVersion", "1")));
+        document.setDescription(description);
+        document.setExtension(extension);
+        return document;
+    }
+
+    private HttpURLConnection openConnection(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    /**
+     * Reads the response body. Throws {@link FileNotFoundException} on 404 and
+     * {@link IOException} on other errors.
+     */
+    private String readResponse(HttpURLConnection connection) throws IOException {
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new FileNotFoundException(connection.getURL().toString());
+            }
+            if (code < 200 || code >= 300) {
+                throw new IOException("Upload request " + connection.getURL() + " failed with "
+                        + code + " " + connection.getResponseMessage());
+            }
+            InputStream in = connection.getInputStream();
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, length);
+                }
+                return new String(out.toByteArray(), "UTF-8");
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Paged listing of the remote folder over plain HTTP. Files are requested by
+ * <code>GET files?first=&amp;count=&amp;sort=&amp;desc=&amp;name=&amp;from=&amp;to=</code>
+ * with dates in milliseconds. The first line of the response is the number of the
+ * matching files, each next line is the URL encoded file name, size and
+ * modification time in milliseconds, separated by tabs.
+ */
+public class HttpFileListingEndpoint implements FileListingEndpoint {
+
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 60000;
+    private String baseUrl;
+
+    /**
+     * Class constructor.
+     *
+     * @param baseUrl Base URL of the endpoint.
+     */
+    public HttpFileListingEndpoint(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    @Override
+    public Page getFiles(String nameFilter, Date modifiedFrom, Date modifiedTo, String sortBy,
+            boolean descending, int first, int count) throws IOException {
+        StringBuilder query = new StringBuilder("files?first=").append(first).append("&count=").append(count);
+        if (sortBy != null) {
+            query.append("&sort=").append(sortBy).append("&desc=").append(descending);
+        }
+        if (nameFilter != null) {
+            query.append("&name=").append(URLEncoder.encode(nameFilter, "UTF-8"));
+        }
+        if (modifiedFrom != null) {
+            query.append("&from=").append(modifiedFrom.getTime());
+        }
+        if (modifiedTo != null) {
+            query.append("&to=").append(modifiedTo.getTime());
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + query).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new FileNotFoundException(connection.getURL().toString());
+            }
+            if (code < 200 || code >= 300) {
+                throw new IOException("Listing request " + connection.getURL() + " failed with "
+                        + code + " " + connection.getResponseMessage());
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    connection.getInputStream(), "UTF-8"));
+            try {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Empty listing response from " + connection.getURL());
+                }
+                int totalCount = Integer.parseInt(line.trim());
+                List<FileInfoBean> files = new ArrayList<FileInfoBean>();
+                while ((line = reader.readLine()) != null) {
+                    String[] values = line.split("\t");
+                    if (values.length < 3) {
+                        continue;
+                    }
+                    FileInfoBean file = new FileInfoBean();
+                    file.setName(URLDecoder.decode(values[0], "UTF-8"));
+                    file.setFileSize(Long.parseLong(values[1]));
+                    file.setModificationDate(new Date(Long.parseLong(values[2])));
+                    files.add(file);
+                }
+                return new Page(files, totalCount);
+            } catch (NumberFormatException ex) {
+                throw new IOException("Invalid listing response from " + connection.getURL(), ex);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
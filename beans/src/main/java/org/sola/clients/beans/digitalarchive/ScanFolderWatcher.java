@@ -0,0 +1,327 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Watches the local folder with scanned documents and sends new files to the
+ * chunked upload endpoint in the background, so they are already on the server
+ * when the user attaches them. File is sent when its size and modification time
+ * stay the same for {@link #STABLE_POLLS} checks in a row, so files still written
+ * by the scanner are not picked up. Only the chunks are sent, the document is
+ * created when the file is attached and {@link ChunkedUploader} finds all chunks
+ * already received. Files, which are never attached, don't leave documents in
+ * the digital archive, their uploads expire on the server.
+ * <p>The folder is set by <code>SOLA_SCAN_FOLDER</code> system property and
+ * requires chunked upload to be configured. Number of concurrent transfers can be
+ * set by <code>SOLA_SCAN_FOLDER_UPLOADS</code>, 2 by default.</p>
+ */
+public class ScanFolderWatcher {
+
+    /** System property with the path of the folder to watch. */
+    public static final String FOLDER_PROPERTY = "SOLA_SCAN_FOLDER";
+    /** System property with the number of concurrent transfers. */
+    public static final String UPLOADS_PROPERTY = "SOLA_SCAN_FOLDER_UPLOADS";
+    public static final int DEFAULT_UPLOADS = 2;
+    /** Number of checks the file must stay unchanged before it's sent. */
+    public static final int STABLE_POLLS = 2;
+    private static final long POLL_INTERVAL = 2000;
+    private static final String SEPARATOR = "|";
+    private final File folder;
+    private final File stateFile;
+    private final ChunkedUploader chunkedUploader;
+    private final Map<String, FileState> files = new HashMap<String, FileState>();
+    private final Map<String, Future<?>> transfers = new HashMap<String, Future<?>>();
+    private final Properties handledFiles = new Properties();
+    private final ExecutorService uploader;
+    private ScheduledExecutorService poller;
+
+    /** State of the file seen in the folder. */
+    private static class FileState {
+
+        long length;
+        long lastModified;
+        int stablePolls;
+        boolean queued;
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The folder to watch.
+     * @param stateFile The file to keep the list of sent and attached files in.
+     * @param chunkedUploader Uploader to send the files with.
+     * @param uploads Number of concurrent transfers.
+     */
+    public ScanFolderWatcher(File folder, File stateFile, ChunkedUploader chunkedUploader, int uploads) {
+        this.folder = folder;
+        this.stateFile = stateFile;
+        this.chunkedUploader = chunkedUploader;
+        this.uploader = Executors.newFixedThreadPool(Math.max(1, uploads),
+                createThreadFactory("ScanFolderWatcher-upload"));
+        loadState();
+    }
+
+    /** Returns true if the scan folder and chunked upload are configured. */
+    public static boolean isEnabled() {
+        String path = System.getProperty(FOLDER_PROPERTY);
+        return path != null && path.length() > 0 && ChunkedUploader.isEnabled();
+    }
+
+    /** Returns the watcher of the configured folder. */
+    public static ScanFolderWatcher getInstance() {
+        return ScanFolderWatcherHolder.INSTANCE;
+    }
+
+    private static class ScanFolderWatcherHolder {
+
+        private static final ScanFolderWatcher INSTANCE = createDefaultWatcher();
+
+        private static ScanFolderWatcher createDefaultWatcher() {
+            int uploads = DEFAULT_UPLOADS;
+            try {
+                uploads = Integer.parseInt(System.getProperty(UPLOADS_PROPERTY,
+                        Integer.toString(DEFAULT_UPLOADS)));
+            } catch (NumberFormatException ex) {
+            }
+            return new ScanFolderWatcher(new File(System.getProperty(FOLDER_PROPERTY, "")),
+                    new File(System.getProperty("user.home") + File.separator + ".sola"
+                    + File.separator + "scanuploads.properties"), ChunkedUploader.getInstance(), uploads);
+        }
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    /** Starts watching the folder. */
+    public synchronized void start() {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(createThreadFactory("ScanFolderWatcher"));
+        poller.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException ex) {
+                    LogUtility.log("Failed to check scan folder: " + ex.getMessage(), Level.WARNING);
+                }
+            }
+        }, 0, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        LogUtility.log("Watching scan folder " + folder.getPath(), Level.INFO);
+    }
+
+    /** Stops watching the folder. Transfers in progress are completed. */
+    public synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /**
+     * Checks files of the folder and queues the files, which didn't change since
+     * the previous checks, for transfer. Files already sent or attached are skipped.
+     */
+    synchronized void poll() {
+        File[] folderFiles = folder.listFiles();
+        if (folderFiles == null) {
+            return;
+        }
+        Map<String, FileState> current = new HashMap<String, FileState>();
+        Properties currentHandled = new Properties();
+        for (File file : folderFiles) {
+            if (!file.isFile() || file.isHidden() || !file.getName().contains(".")) {
+                continue;
+            }
+            if (isHandled(file)) {
+                currentHandled.setProperty(file.getName(), getVersion(file));
+                continue;
+            }
+            FileState state = files.get(file.getName());
+            if (state == null || state.length != file.length() || state.lastModified != file.lastModified()) {
+                state = new FileState();
+                state.length = file.length();
+                state.lastModified = file.lastModified();
+            } else if (!state.queued && ++state.stablePolls >= STABLE_POLLS) {
+                state.queued = true;
+                queueTransfer(file);
+            }
+            current.put(file.getName(), state);
+        }
+        files.clear();
+        files.putAll(current);
+        // Forget files removed from the folder
+        if (!currentHandled.equals(handledFiles)) {
+            handledFiles.clear();
+            handledFiles.putAll(currentHandled);
+            saveState();
+        }
+    }
+
+    /** Sends the file on the upload pool. */
+    private void queueTransfer(final File file) {
+        final String version = getVersion(file);
+        transfers.put(file.getName(), uploader.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    chunkedUploader.transfer(file, null);
+                    markHandled(file.getName(), version);
+                    LogUtility.log("Sent scanned file " + file.getName(), Level.INFO);
+                } catch (Exception ex) {
+                    LogUtility.log("Failed to send scanned file " + file.getName() + ": "
+                            + ex.getMessage(), Level.WARNING);
+                    retryLater(file);
+                } finally {
+                    synchronized (ScanFolderWatcher.this) {
+                        transfers.remove(file.getName());
+                    }
+                }
+            }
+        }));
+    }
+
+    /** Forgets the file state, so the file is queued again when it's stable. */
+    private synchronized void retryLater(File file) {
+        files.remove(file.getName());
+    }
+
+    /**
+     * Prepares the file of the watched folder to be attached. If the file is being
+     * sent, waits for the transfer to complete, so the following upload only
+     * completes it. The file is not sent in the background after it's attached.
+     *
+     * @param file The file to attach.
+     */
+    public void prepareUpload(File file) {
+        if (file == null || file.getParentFile() == null
+                || !file.getParentFile().getAbsoluteFile().equals(folder.getAbsoluteFile())) {
+            return;
+        }
+        Future<?> transfer;
+        synchronized (this) {
+            transfer = transfers.get(file.getName());
+        }
+        if (transfer != null) {
+            try {
+                transfer.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+            }
+        }
+        markHandled(file.getName(), getVersion(file));
+    }
+
+    /** Returns true if the file in its current version was sent or attached. */
+    private synchronized boolean isHandled(File file) {
+        return getVersion(file).equals(handledFiles.getProperty(file.getName()));
+    }
+
+    private synchronized void markHandled(String name, String version) {
+        handledFiles.setProperty(name, version);
+        saveState();
+    }
+
+    /** Returns the string identifying the file version by its size and modification time. */
+    private static String getVersion(File file) {
+        return file.length() + SEPARATOR + file.lastModified();
+    }
+
+    private void loadState() {
+        if (stateFile.exists()) {
+            try {
+                InputStream in = new FileInputStream(stateFile);
+                try {
+                    handledFiles.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ex) {
+                LogUtility.log("Failed to read scan uploads " + stateFile.getPath(), Level.WARNING);
+            }
+        }
+    }
+
+    private void saveState() {
+        try {
+            stateFile.getParentFile().mkdirs();
+            File tmpFile = new File(stateFile.getPath() + ".tmp");
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                handledFiles.store(out, null);
+            } finally {
+                out.close();
+            }
+            stateFile.delete();
+            if (!tmpFile.renameTo(stateFile)) {
+                throw new IOException("Can't rename " + tmpFile.getPath());
+            }
+        } catch (IOException ex) {
+            LogUtility.log("Failed to save scan uploads " + stateFile.getPath(), Level.WARNING);
+        }
+    }
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        return new ThreadFactory() {
+
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Loads thumbnails of the files in the remote folder in the background. Requests
+ * are served by a small pool of worker threads in the order of priority, newer
+ * requests first. Loaded thumbnails are kept in the memory LRU cache and in the
+ * disk cache, keyed by the file name and modification time, so the server is
+ * called only once for each version of the file.
+ */
+public class ThumbnailService {
+
+    /** Priority of the thumbnail, which must be shown right now. */
+    public static final int PRIORITY_SELECTED = 2;
+    /** Priority of the thumbnails of the visible files. */
+    public static final int PRIORITY_VISIBLE = 1;
+    /** Priority of the thumbnails, which may be needed soon. */
+    public static final int PRIORITY_PREFETCH = 0;
+    private static final int POOL_SIZE = 3;
+    private static final int MEMORY_CACHE_SIZE = 200;
+    private static final ImageIcon NO_THUMBNAIL = new ImageIcon();
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ImageIcon> memoryCache;
+    private final Map<String, ThumbnailRequest> requests = new HashMap<String, ThumbnailRequest>();
+    private final AtomicLong sequence = new AtomicLong();
+    private File cacheDirectory;
+
+    /** Listener of the loaded thumbnails. Always called on the EDT. */
+    public interface ThumbnailListener {
+
+        /**
+         * Called when thumbnail is loaded.
+         *
+         * @param file The file of the thumbnail.
+         * @param thumbnail The thumbnail or null if it's not available for the file.
+         */
+        void thumbnailLoaded(FileInfoBean file, ImageIcon thumbnail);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param cacheDirectory Directory of the disk cache.
+     */
+    public ThumbnailService(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        this.memoryCache = new LinkedHashMap<String, ImageIcon>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageIcon> eldest) {
+                return size() > MEMORY_CACHE_SIZE;
+            }
+        };
+        this.executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ThumbnailService-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Returns the service, caching thumbnails in the user home folder. */
+    public static ThumbnailService getInstance() {
+        return ThumbnailServiceHolder.INSTANCE;
+    }
+
+    private static class ThumbnailServiceHolder {
+
+        private static final ThumbnailService INSTANCE = new ThumbnailService(new File(
+                System.getProperty("user.home") + File.separator + ".sola"
+                + File.separator + "thumbnails"));
+    }
+
+    /** Returns true if the thumbnail of the file is in the memory cache. */
+    public boolean isThumbnailLoaded(FileInfoBean file) {
+        synchronized (memoryCache) {
+            return memoryCache.containsKey(getKey(file));
+        }
+    }
+
+    /**
+     * Returns thumbnail from the memory cache without loading it. Returns null if
+     * thumbnail is not loaded yet or is not available for the file.
+     */
+    public ImageIcon getCachedThumbnail(FileInfoBean file) {
+        ImageIcon thumbnail;
+        synchronized (memoryCache) {
+            thumbnail = memoryCache.get(getKey(file));
+        }
+        return thumbnail == NO_THUMBNAIL ? null : thumbnail;
+    }
+
+    /**
+     * Requests thumbnail of the file. If the thumbnail is already requested, the
+     * request priority is raised and the listener is added to it.
+     *
+     * @param file The file to load thumbnail for.
+     * @param priority Request priority.
+     * @param listener Listener to call on the EDT when thumbnail is loaded, can be
+     * null for prefetch requests.
+     */
+    public void requestThumbnail(final FileInfoBean file, int priority, final ThumbnailListener listener) {
+        if (file == null || file.getName() == null) {
+            return;
+        }
+        if (isThumbnailLoaded(file)) {
+            final ImageIcon cached = getCachedThumbnail(file);
+            if (listener != null) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        listener.thumbnailLoaded(file, cached);
+                    }
+                });
+            }
+            return;
+        }
+
+        String key = getKey(file);
+        synchronized (requests) {
+            ThumbnailRequest request = requests.get(key);
+            if (request != null && request.priority >= priority) {
+                request.addListener(listener);
+                return;
+            }
+            if (request != null) {
+                // Queue request with higher priority, the old one will be skipped
+                request.cancelled = true;
+            }
+            ThumbnailRequest newRequest = new ThumbnailRequest(file, key, priority, sequence.incrementAndGet());
+            if (request != null) {
+                newRequest.listeners.putAll(request.listeners);
+            }
+            newRequest.addListener(listener);
+            requests.put(key, newRequest);
+            executor.execute(newRequest);
+        }
+    }
+
+    /** Cancels waiting requests with the priority lower than given. */
+    public void cancelRequests(int priority) {
+        synchronized (requests) {
+            for (Iterator<ThumbnailRequest> it = requests.values().iterator(); it.hasNext();) {
+                ThumbnailRequest request = it.next();
+                if (request.priority < priority && executor.remove(request)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /** Removes all thumbnails from the memory and disk cache. */
+    public void clearCache() {
+        synchronized (memoryCache) {
+            memoryCache.clear();
+        }
+        File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Loads thumbnail from the disk cache or from the server. */
+    private ImageIcon loadThumbnail(FileInfoBean file, String key) {
+        File cacheFile = new File(cacheDirectory, hash(key));
+        byte[] content = null;
+        if (cacheFile.exists()) {
+            content = readFile(cacheFile);
+        }
+        if (content == null) {
+            FileBinaryBean thumbnail = file.getThumbnail();
+            content = thumbnail == null || thumbnail.getContent() == null
+                    ? new byte[0] : thumbnail.getContent();
+            writeFile(cacheFile, content);
+        }
+        return content.length > 0 ? new ImageIcon(content) : NO_THUMBNAIL;
+    }
+
+    private String getKey(FileInfoBean file) {
+        return file.getName() + "|" + (file.getModificationDate() == null
+                ? 0 : file.getModificationDate().getTime());
+    }
+
+    private byte[] readFile(File file) {
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+                byte[] buffer = new byte[8192];
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, length);
+                }
+                return out.toByteArray();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void writeFile(File file, byte[] content) {
+        try {
+            cacheDirectory.mkdirs();
+            File tmpFile = new File(cacheDirectory, file.getName() + "." + Thread.currentThread().getId());
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            file.delete();
+            tmpFile.renameTo(file);
+        } catch (IOException ex) {
+            LogUtility.log("Failed to cache thumbnail " + file.getName(), Level.FINE);
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA1");
+            return ChunkedUploader.toHex(digest.digest(value.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException ex) {
+            return Integer.toHexString(value.hashCode());
+        } catch (IOException ex) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    /** Thumbnail request, ordered by priority and then by sequence, newer first. */
+    private class ThumbnailRequest implements Runnable, Comparable<ThumbnailRequest> {
+
+        private final FileInfoBean file;
+        private final String key;
+        private final int priority;
+        private final long sequence;
+        private final Map<ThumbnailListener, Boolean> listeners =
+                new LinkedHashMap<ThumbnailListener, Boolean>();
+        private volatile boolean cancelled;
+
+        ThumbnailRequest(FileInfoBean file, String key, int priority, long sequence) {
+            this.file = file;
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        void addListener(ThumbnailListener listener) {
+            if (listener != null) {
+                listeners.put(listener, Boolean.TRUE);
+            }
+        }
+
+        @Override
+        public int compareTo(ThumbnailRequest other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence > other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            ImageIcon thumbnail = NO_THUMBNAIL;
+            try {
+                thumbnail = loadThumbnail(file, key);
+                synchronized (memoryCache) {
+                    memoryCache.put(key, thumbnail);
+                }
+            } catch (RuntimeException ex) {
+                // Not cached, will be requested again next time
+                LogUtility.log("Failed to load thumbnail of " + file.getName() + ": "
+                        + ex.getLocalizedMessage(), Level.WARNING);
+            }
+            final ThumbnailListener[] toNotify;
+            synchronized (requests) {
+                if (requests.get(key) != this) {
+                    // Replaced by request with higher priority, which notifies the listeners
+                    return;
+                }
+                requests.remove(key);
+                toNotify = listeners.keySet().toArray(new ThumbnailListener[listeners.size()]);
+            }
+            final ImageIcon result = thumbnail == NO_THUMBNAIL ? null : thumbnail;
+            if (toNotify.length > 0) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (ThumbnailListener listener : toNotify) {
+                            listener.thumbnailLoaded(file, result);
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import org.sola.clients.beans.converters.TypeConverters;
+import org.sola.services.boundary.wsclients.WSManager;
+
+/**
+ * Listing of the remote folder over the digital archive web service. The web
+ * service returns the whole folder, so the listing is kept and filtering, sorting
+ * and paging are done on the client. The folder is requested again only when the
+ * first page is loaded, which happens when the whole list is reloaded. Used when
+ * the paged listing endpoint is not configured.
+ */
+public class WSFileListingEndpoint implements FileListingEndpoint {
+
+    private List<FileInfoBean> allFiles;
+
+    @Override
+    public synchronized Page getFiles(String nameFilter, Date modifiedFrom, Date modifiedTo,
+            String sortBy, boolean descending, int first, int count) {
+        if (first == 0 || allFiles == null) {
+            allFiles = TypeConverters.TransferObjectListToBeanList(
+                    WSManager.getInstance().getDigitalArchive().getAllFiles(), FileInfoBean.class, null);
+        }
+        return getPage(allFiles, nameFilter, modifiedFrom, modifiedTo, sortBy, descending, first, count);
+    }
+
+    /** Filters, sorts and pages the list of files. */
+    static Page getPage(List<FileInfoBean> allFiles, String nameFilter, Date modifiedFrom,
+            Date modifiedTo, String sortBy, boolean descending, int first, int count) {
+        List<FileInfoBean> files = new ArrayList<FileInfoBean>();
+        String name = nameFilter == null ? null : nameFilter.toLowerCase();
+        for (FileInfoBean file : allFiles) {
+            if (name != null && (file.getName() == null || !file.getName().toLowerCase().contains(name))) {
+                continue;
+            }
+            Date modified = file.getModificationDate();
+            if ((modifiedFrom != null && (modified == null || modified.before(modifiedFrom)))
+                    || (modifiedTo != null && (modified == null || modified.after(modifiedTo)))) {
+                continue;
+            }
+            files.add(file);
+        }
+        if (sortBy != null) {
+            Comparator<FileInfoBean> comparator = getComparator(sortBy);
+            Collections.sort(files, descending ? Collections.reverseOrder(comparator) : comparator);
+        }
+        int from = Math.min(first, files.size());
+        int to = Math.min(from + count, files.size());
+        return new Page(new ArrayList<FileInfoBean>(files.subList(from, to)), files.size());
+    }
+
+    private static Comparator<FileInfoBean> getComparator(final String sortBy) {
+        return new Comparator<FileInfoBean>() {
+
+            @Override
+            public int compare(FileInfoBean file1, FileInfoBean file2) {
+                if (FileInfoBean.FILE_SIZE_PROPERTY.equals(sortBy)) {
+                    return file1.getFileSize() < file2.getFileSize() ? -1
+                            : (file1.getFileSize() == file2.getFileSize() ? 0 : 1);
+                }
+                if (FileInfoBean.MODIFICATION_DATE_PROPERTY.equals(sortBy)) {
+                    return compareValues(file1.getModificationDate(), file2.getModificationDate());
+                }
+                return compareValues(file1.getName(), file2.getName());
+            }
+        };
+    }
+
+    private static <T extends Comparable<T>> int compareValues(T value1, T value2) {
+        if (value1 == null || value2 == null) {
+            return value1 == null ? (value2 == null ? 0 : -1) : 1;
+        }
+        return value1.compareTo(value2);
+    }
+}
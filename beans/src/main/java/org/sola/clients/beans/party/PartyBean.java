@@ -35,6 +35,7 @@ import org.sola.clients.beans.application.ApplicationBean;
 import org.sola.clients.beans.cache.CacheManager;
 import org.sola.clients.beans.controls.SolaList;
 import org.sola.clients.beans.converters.TypeConverters;
+import org.sola.clients.beans.savequeue.SaveQueue;
 import org.sola.clients.beans.party.validation.PartyIdTypeCheck;
 import org.sola.clients.beans.referencedata.*;
 import org.sola.clients.beans.validation.Localized;
@@ -331,6 +332,20 @@ public class PartyBean extends PartySummaryBean {
      * @throws Exception
      */
     public boolean saveParty() {
+        if (SaveQueue.getInstance().isWriteBehind()) {
+            SaveQueue.getInstance().enqueue(this, null);
+        } else {
+            SaveQueue.getInstance().awaitSaved(getId());
+            savePartyToServer();
+        }
+        CacheManager.getPartySearchIndex().put(getPartySummary());
+        return true;
+    }
+
+    /**
+     * Saves party on the server, ignoring write-behind mode of the {@link SaveQueue}.
+     */
+    public void savePartyToServer() {
         PartyTO party = TypeConverters.BeanToTrasferObject(this, PartyTO.class);
 
         if (getAddress() != null && getAddress().isNew() && (getAddress().getDescription() == null
@@ -343,7 +358,24 @@ public class PartyBean extends PartySummaryBean {
         
         party = WSManager.getInstance().getCaseManagementService().saveParty(party);
         TypeConverters.TransferObjectToBean(party, PartyBean.class, this);
-        return true;
+    }
+
+    /**
+     * Returns new {@link PartySummaryBean} with the values of this party. The summary is
+     * detached from the party and not changed by further party editing.
+     */
+    public PartySummaryBean getPartySummary() {
+        PartySummaryBean summary = new PartySummaryBean();
+        summary.setId(getId());
+        summary.setRowVersion(getRowVersion());
+        summary.setName(getName());
+        summary.setLastName(getLastName());
+        summary.setExtId(getExtId());
+        summary.setRightHolder(isRightHolder());
+        if (getTypeCode() != null) {
+            summary.setTypeCode(getTypeCode());
+        }
+        return summary;
     }
     
     /** Returns party by ID. */
@@ -360,8 +392,10 @@ public class PartyBean extends PartySummaryBean {
         if(partyId == null || partyId.length()<1){
             return;
         }
+        SaveQueue.getInstance().awaitSaved(partyId);
         PartyTO partyTO = WSManager.getInstance().getCaseManagementService().getParty(partyId);
         partyTO.setEntityAction(EntityAction.DELETE);
         WSManager.getInstance().getCaseManagementService().saveParty(partyTO);
+        CacheManager.getPartySearchIndex().remove(partyId);
     }
 }
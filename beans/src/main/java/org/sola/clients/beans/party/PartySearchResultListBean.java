@@ -30,6 +30,7 @@ package org.sola.clients.beans.party;
 import java.util.List;
 import org.jdesktop.observablecollections.ObservableList;
 import org.sola.clients.beans.AbstractBindingListBean;
+import org.sola.clients.beans.cache.CacheManager;
 import org.sola.clients.beans.controls.SolaObservableList;
 import org.sola.clients.beans.converters.TypeConverters;
 import org.sola.services.boundary.wsclients.WSManager;
@@ -76,5 +77,6 @@ public class PartySearchResultListBean extends AbstractBindingListBean {
         TypeConverters.TransferObjectListToBeanList(
                 WSManager.getInstance().getSearchService().searchParties(searchParamsTO),
                 PartySearchResultBean.class, (List)getPartySearchResults());
+        CacheManager.getPartySearchIndex().putAll(getPartySearchResults());
     }
 }
@@ -30,6 +30,7 @@ package org.sola.clients.beans.party;
 import java.util.List;
 import org.jdesktop.observablecollections.ObservableList;
 import org.sola.clients.beans.AbstractBindingBean;
+import org.sola.clients.beans.cache.CacheManager;
 import org.sola.clients.beans.controls.SolaObservableList;
 import org.sola.clients.beans.converters.TypeConverters;
 import org.sola.services.boundary.wsclients.WSManager;
@@ -60,6 +61,7 @@ public class PartySummaryListBean extends AbstractBindingBean {
         List<PartySummaryTO> lst = WSManager.getInstance().getCaseManagementService().getAgents();
         partySummaryListBean.clear();
         TypeConverters.TransferObjectListToBeanList(lst, PartySummaryBean.class, (List)partySummaryListBean);
+        CacheManager.getPartySearchIndex().putAll(partySummaryListBean);
         if(createDummyAgent){
             PartySummaryBean dummyAgent = new PartySummaryBean();
             dummyAgent.setName(" ");
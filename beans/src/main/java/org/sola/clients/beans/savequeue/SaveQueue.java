@@ -0,0 +1,623 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.savequeue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import javax.xml.ws.WebServiceException;
+import org.sola.clients.beans.AbstractBindingBean;
+import org.sola.clients.beans.AbstractIdBean;
+import org.sola.clients.beans.AbstractVersionedBean;
+import org.sola.common.logging.LogUtility;
+import org.sola.webservices.transferobjects.EntityAction;
+
+/**
+ * Write-behind queue of the bean saves. When write-behind mode is on, a save takes
+ * the snapshot of the bean, stores it in the local queue directory and returns
+ * immediately. The worker thread submits queued snapshots to the server one by one,
+ * in the order they were queued. Before submitting, the row version of the bean on
+ * the server is compared with the row version the snapshot is based on. If they
+ * differ, the entry is marked as conflict and waits for the user decision.
+ * <p>Snapshots of the same bean, queued before the previous one is submitted, are
+ * merged into one entry. The bean itself is not refreshed after the save, so row
+ * versions of the bean and its child rows in the later snapshots are rebased on the
+ * row versions returned by the server. Otherwise new child rows would be inserted
+ * again and changed rows would fail the row version check. The same row versions are
+ * set on the bean the snapshot was taken from, once the entry is saved.</p>
+ * <p>Direct server calls on the bean, checking its row version (e.g. application
+ * actions), must call {@link #awaitSaved(String)} first.</p>
+ * <p>Write-behind mode is switched on with <code>SOLA_WRITE_BEHIND=true</code>
+ * system property. Entries, not submitted before the application is closed, are
+ * submitted on the next start.</p>
+ */
+public class SaveQueue {
+
+    /** System property to switch write-behind mode on. */
+    public static final String WRITE_BEHIND_PROPERTY = "SOLA_WRITE_BEHIND";
+    /** Default delay before retrying submission after the connection failure, in milliseconds. */
+    public static final long DEFAULT_RETRY_DELAY = 5000;
+    /** Default time to wait for the queued saves of the bean, in milliseconds. */
+    public static final long DEFAULT_AWAIT_TIMEOUT = 60000;
+    private static final String ENTRY_EXTENSION = ".entry";
+    private final List<SaveQueueEntry> entries = new ArrayList<SaveQueueEntry>();
+    private final List<SaveQueueListener> listeners = new CopyOnWriteArrayList<SaveQueueListener>();
+    private SaveService saveService;
+    private File storageDirectory;
+    private boolean writeBehind;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private long awaitTimeout = DEFAULT_AWAIT_TIMEOUT;
+    private long nextSequence = 1;
+    private SaveQueueEntry entryInProgress;
+    private Thread worker;
+    private final Map<String, SavedRow> savedRows = new HashMap<String, SavedRow>();
+
+    /**
+     * Row versions of the row, submitted by the queue, and the row version returned
+     * by the server after the last save.
+     */
+    private static class SavedRow {
+
+        private final Set<Integer> submittedVersions = new HashSet<Integer>();
+        private int rowVersion;
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param saveService Service submitting the entries.
+     * @param storageDirectory Directory to keep the queued entries in.
+     */
+    public SaveQueue(SaveService saveService, File storageDirectory) {
+        this.saveService = saveService;
+        this.storageDirectory = storageDirectory;
+        addListener(new BeanUpdater());
+    }
+
+    /**
+     * Sets the row versions returned by the server on the bean the saved snapshot was
+     * taken from, so the bean can be saved again or used in direct server calls.
+     */
+    private class BeanUpdater implements SaveQueueListener {
+
+        @Override
+        public void entrySaved(SaveQueueEntry entry, AbstractIdBean savedBean) {
+            AbstractIdBean bean = entry.getBean();
+            if (bean != null) {
+                synchronized (SaveQueue.this) {
+                    rebase(bean);
+                }
+            }
+        }
+
+        @Override
+        public void entryConflict(SaveQueueEntry entry) {
+        }
+
+        @Override
+        public void entryFailed(SaveQueueEntry entry) {
+        }
+    }
+
+    /**
+     * Returns the instance of the queue, submitting the entries to the web services.
+     */
+    public static SaveQueue getInstance() {
+        return SaveQueueHolder.INSTANCE;
+    }
+
+    private static class SaveQueueHolder {
+
+        private static final SaveQueue INSTANCE = createDefaultQueue();
+
+        private static SaveQueue createDefaultQueue() {
+            SaveQueue queue = new SaveQueue(new WSSaveService(), new File(
+                    System.getProperty("user.home") + File.separator + ".sola"
+                    + File.separator + "savequeue"));
+            queue.setWriteBehind(Boolean.parseBoolean(System.getProperty(WRITE_BEHIND_PROPERTY)));
+            return queue;
+        }
+    }
+
+    /** Returns true if saves must be queued instead of being submitted directly. */
+    public synchronized boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /** Switches write-behind mode on or off. Entries already queued are submitted anyway. */
+    public synchronized void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+        if (writeBehind) {
+            start();
+        }
+    }
+
+    public synchronized long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public synchronized void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public synchronized long getAwaitTimeout() {
+        return awaitTimeout;
+    }
+
+    public synchronized void setAwaitTimeout(long awaitTimeout) {
+        this.awaitTimeout = awaitTimeout;
+    }
+
+    public void addListener(SaveQueueListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SaveQueueListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Loads entries left from the previous session and starts the worker thread.
+     * Called automatically when the first entry is queued.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        loadEntries();
+        worker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                processEntries();
+            }
+        }, "SaveQueue-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues the snapshot of the bean to be saved.
+     *
+     * @param bean The bean to save.
+     * @param serviceId ID of the application service, used to save properties.
+     * @return Queued entry.
+     */
+    public synchronized SaveQueueEntry enqueue(AbstractIdBean bean, String serviceId) {
+        start();
+        AbstractIdBean snapshot = bean.copy();
+        rebase(snapshot);
+
+        // Merge with the waiting snapshot of the same bean
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            SaveQueueEntry entry = entries.get(i);
+            if (entry.getBeanId() != null && entry.getBeanId().equals(snapshot.getId())) {
+                if (entry.getStatus() == SaveQueueEntry.Status.PENDING && entry != entryInProgress) {
+                    // Merged snapshot is submitted against the row version of the waiting entry
+                    snapshot.setRowVersion(entry.getBaseRowVersion());
+                    entry.setSnapshot(snapshot);
+                    entry.setBean(bean);
+                    storeEntry(entry);
+                    return entry;
+                }
+                break;
+            }
+        }
+
+        SaveQueueEntry entry = new SaveQueueEntry(nextSequence++, snapshot, serviceId);
+        entry.setBean(bean);
+        storeEntry(entry);
+        entries.add(entry);
+        notifyAll();
+        return entry;
+    }
+
+    /** Returns the list of queued entries in the order of submission. */
+    public synchronized List<SaveQueueEntry> getEntries() {
+        return new ArrayList<SaveQueueEntry>(entries);
+    }
+
+    /** Returns the number of entries, which are not submitted yet. */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (SaveQueueEntry entry : entries) {
+            if (entry.getStatus() == SaveQueueEntry.Status.PENDING) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits until the queued saves of the bean are submitted and the bean has the row
+     * versions returned by the server. Returns immediately if nothing is queued for the
+     * bean or if called on the queue worker thread.
+     *
+     * @param beanId ID of the bean.
+     * @throws IllegalStateException if the save of the bean is in conflict, was rejected
+     * or is not submitted within {@link #getAwaitTimeout()} milliseconds.
+     */
+    public synchronized void awaitSaved(String beanId) {
+        if (beanId == null || Thread.currentThread() == worker) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + awaitTimeout;
+        while (true) {
+            boolean pending = entryInProgress != null && beanId.equals(entryInProgress.getBeanId());
+            for (SaveQueueEntry entry : entries) {
+                if (beanId.equals(entry.getBeanId())) {
+                    if (entry.getStatus() != SaveQueueEntry.Status.PENDING) {
+                        throw new IllegalStateException("Save of " + beanId + " is not completed: "
+                                + entry.getStatus());
+                    }
+                    pending = true;
+                }
+            }
+            if (!pending) {
+                return;
+            }
+            long timeout = deadline - System.currentTimeMillis();
+            if (timeout <= 0) {
+                throw new IllegalStateException("Save of " + beanId + " is not submitted in "
+                        + awaitTimeout + " ms");
+            }
+            try {
+                wait(timeout);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the save of " + beanId, ex);
+            }
+        }
+    }
+
+    /**
+     * Resolves the conflict of the entry.
+     *
+     * @param entry Entry in conflict.
+     * @param overwrite If true, the snapshot is submitted over the server version
+     * of the bean, otherwise the entry is discarded.
+     */
+    public synchronized void resolveConflict(SaveQueueEntry entry, boolean overwrite) {
+        if (!entries.contains(entry) || entry.getStatus() != SaveQueueEntry.Status.CONFLICT) {
+            return;
+        }
+        if (overwrite) {
+            entry.setBaseRowVersion(entry.getServerRowVersion());
+            entry.setStatus(SaveQueueEntry.Status.PENDING);
+            storeEntry(entry);
+            notifyAll();
+        } else {
+            discard(entry);
+        }
+    }
+
+    /** Removes the entry from the queue without submitting it. */
+    public synchronized void discard(SaveQueueEntry entry) {
+        if (entry == entryInProgress) {
+            return;
+        }
+        entries.remove(entry);
+        getEntryFile(entry).delete();
+        notifyAll();
+    }
+
+    /**
+     * Returns the first pending entry, which is not preceded by the entry of the
+     * same bean waiting for the user decision.
+     */
+    private SaveQueueEntry getNextEntry() {
+        List<String> blockedBeans = new ArrayList<String>();
+        for (SaveQueueEntry entry : entries) {
+            if (entry.getStatus() == SaveQueueEntry.Status.PENDING) {
+                if (!blockedBeans.contains(entry.getBeanId())) {
+                    return entry;
+                }
+            } else {
+                blockedBeans.add(entry.getBeanId());
+            }
+        }
+        return null;
+    }
+
+    private void processEntries() {
+        while (true) {
+            SaveQueueEntry entry;
+            synchronized (this) {
+                try {
+                    while ((entry = getNextEntry()) == null) {
+                        wait();
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                entryInProgress = entry;
+            }
+            if (!submit(entry)) {
+                try {
+                    Thread.sleep(getRetryDelay());
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits the entry. Returns false if submission failed because of the
+     * connection problem and must be repeated.
+     */
+    private boolean submit(SaveQueueEntry entry) {
+        try {
+            int serverRowVersion = saveService.getServerRowVersion(entry);
+            if (serverRowVersion >= 0 && serverRowVersion != entry.getBaseRowVersion()) {
+                synchronized (this) {
+                    entry.setServerRowVersion(serverRowVersion);
+                    entry.setStatus(SaveQueueEntry.Status.CONFLICT);
+                    storeEntry(entry);
+                    entryInProgress = null;
+                    notifyAll();
+                }
+                for (SaveQueueListener listener : listeners) {
+                    listener.entryConflict(entry);
+                }
+                return true;
+            }
+
+            AbstractIdBean savedBean = saveService.save(entry);
+            synchronized (this) {
+                entries.remove(entry);
+                getEntryFile(entry).delete();
+                recordSavedRows(entry.getSnapshot(), savedBean);
+                // Later snapshots of the bean are based on the version just saved
+                for (SaveQueueEntry nextEntry : entries) {
+                    if (entry.getBeanId() != null && entry.getBeanId().equals(nextEntry.getBeanId())) {
+                        rebase(nextEntry.getSnapshot());
+                        nextEntry.setBaseRowVersion(nextEntry.getSnapshot().getRowVersion());
+                        storeEntry(nextEntry);
+                    }
+                }
+            }
+            try {
+                for (SaveQueueListener listener : listeners) {
+                    listener.entrySaved(entry, savedBean);
+                }
+            } finally {
+                // Waiting callers resume once the bean has the saved row versions
+                synchronized (this) {
+                    entryInProgress = null;
+                    notifyAll();
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                synchronized (this) {
+                    entryInProgress = null;
+                    notifyAll();
+                }
+                return false;
+            }
+            synchronized (this) {
+                entry.setStatus(SaveQueueEntry.Status.FAILED);
+                entry.setErrorMessage(e.getLocalizedMessage());
+                storeEntry(entry);
+                entryInProgress = null;
+                notifyAll();
+            }
+            for (SaveQueueListener listener : listeners) {
+                listener.entryFailed(entry);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Remembers row versions of the submitted snapshot and row versions returned by
+     * the server for the bean and its child rows.
+     */
+    private void recordSavedRows(AbstractIdBean snapshot, AbstractIdBean savedBean) {
+        Map<String, AbstractVersionedBean> savedBeans = getVersionedBeans(savedBean);
+        for (AbstractVersionedBean row : getVersionedBeans(snapshot).values()) {
+            AbstractVersionedBean savedRow = savedBeans.get(row.getRowId());
+            if (savedRow == null) {
+                continue;
+            }
+            SavedRow rowVersions = savedRows.get(row.getRowId());
+            if (rowVersions == null) {
+                rowVersions = new SavedRow();
+                savedRows.put(row.getRowId(), rowVersions);
+            }
+            rowVersions.submittedVersions.add(row.getRowVersion());
+            rowVersions.rowVersion = savedRow.getRowVersion();
+        }
+    }
+
+    /**
+     * Sets row versions returned by the server on the rows of the snapshot, which
+     * still have the row version already submitted by the queue. Rows changed on the
+     * server by other users keep their row version to be detected on submission.
+     */
+    private void rebase(AbstractIdBean snapshot) {
+        if (savedRows.isEmpty()) {
+            return;
+        }
+        for (AbstractVersionedBean row : getVersionedBeans(snapshot).values()) {
+            SavedRow rowVersions = savedRows.get(row.getRowId());
+            if (rowVersions != null && row.getRowVersion() != rowVersions.rowVersion
+                    && rowVersions.submittedVersions.contains(row.getRowVersion())) {
+                row.setRowVersion(rowVersions.rowVersion);
+                if (row.getEntityAction() == EntityAction.INSERT) {
+                    row.setEntityAction(null);
+                }
+            }
+        }
+    }
+
+    /** Returns the bean and all its child rows by row ID. */
+    private static Map<String, AbstractVersionedBean> getVersionedBeans(AbstractIdBean bean) {
+        Map<String, AbstractVersionedBean> beans = new HashMap<String, AbstractVersionedBean>();
+        collectVersionedBeans(bean, beans, new IdentityHashMap<Object, Object>());
+        return beans;
+    }
+
+    private static void collectVersionedBeans(Object object, Map<String, AbstractVersionedBean> beans,
+            Map<Object, Object> visited) {
+        if (object == null || visited.put(object, object) != null) {
+            return;
+        }
+        if (object instanceof Collection) {
+            for (Object item : (Collection<?>) object) {
+                collectVersionedBeans(item, beans, visited);
+            }
+            return;
+        }
+        if (!(object instanceof AbstractBindingBean)) {
+            return;
+        }
+        if (object instanceof AbstractVersionedBean) {
+            AbstractVersionedBean row = (AbstractVersionedBean) object;
+            beans.put(row.getRowId(), row);
+        }
+        // Fields are read directly, because some getters load data from the server
+        for (Class<?> type = object.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                        || field.getType().isPrimitive()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    Object value = field.get(object);
+                    if (value instanceof AbstractBindingBean || value instanceof Collection) {
+                        collectVersionedBeans(value, beans, visited);
+                    }
+                } catch (IllegalAccessException ex) {
+                    LogUtility.log("Failed to read " + field.getName() + " of " + type.getName(), Level.WARNING);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the failure is caused by the connection problem and
+     * submission can be repeated.
+     */
+    protected boolean isTransient(Throwable error) {
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof IOException || cause.getClass().equals(WebServiceException.class)) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    private File getEntryFile(SaveQueueEntry entry) {
+        return new File(storageDirectory, entry.getSequence() + ENTRY_EXTENSION);
+    }
+
+    /** Writes the entry into the temporary file and renames it, to not leave broken entries. */
+    private void storeEntry(SaveQueueEntry entry) {
+        try {
+            if (!storageDirectory.exists()) {
+                storageDirectory.mkdirs();
+            }
+            File file = getEntryFile(entry);
+            File tmpFile = new File(storageDirectory, file.getName() + ".tmp");
+            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tmpFile));
+            try {
+                out.writeObject(entry);
+            } finally {
+                out.close();
+            }
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Can't rename " + tmpFile.getPath());
+            }
+        } catch (IOException ex) {
+            LogUtility.log("Failed to store save queue entry " + entry.getSequence(), Level.SEVERE);
+        }
+    }
+
+    /** Loads entries, left from the previous session. */
+    private void loadEntries() {
+        File[] files = storageDirectory.listFiles(new FilenameFilter() {
+
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(ENTRY_EXTENSION);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+                try {
+                    SaveQueueEntry entry = (SaveQueueEntry) in.readObject();
+                    // Property change support of the bean is not serialized, copy restores it
+                    entry.setSnapshot((AbstractIdBean) entry.getSnapshot().copy());
+                    entries.add(entry);
+                    nextSequence = Math.max(nextSequence, entry.getSequence() + 1);
+                } finally {
+                    in.close();
+                }
+            } catch (Exception ex) {
+                LogUtility.log("Failed to load save queue entry " + file.getName(), Level.SEVERE);
+            }
+        }
+        Collections.sort(entries, new Comparator<SaveQueueEntry>() {
+
+            @Override
+            public int compare(SaveQueueEntry entry1, SaveQueueEntry entry2) {
+                return entry1.getSequence() < entry2.getSequence() ? -1
+                        : (entry1.getSequence() == entry2.getSequence() ? 0 : 1);
+            }
+        });
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.savequeue;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import org.sola.clients.beans.AbstractIdBean;
+
+/**
+ * Snapshot of the bean, waiting in the {@link SaveQueue} to be saved on the server.
+ */
+public class SaveQueueEntry implements Serializable {
+
+    /** Status of the entry. */
+    public enum Status {
+
+        /** Entry is waiting to be submitted. */
+        PENDING,
+        /** The bean was changed on the server after the snapshot was taken. */
+        CONFLICT,
+        /** The server rejected the bean. */
+        FAILED;
+    }
+    private static final long serialVersionUID = 1L;
+    private long sequence;
+    private AbstractIdBean snapshot;
+    private String serviceId;
+    private int baseRowVersion;
+    private int serverRowVersion = -1;
+    private Status status = Status.PENDING;
+    private String errorMessage;
+    private Date queuedTime;
+    private transient WeakReference<AbstractIdBean> bean;
+
+    SaveQueueEntry(long sequence, AbstractIdBean snapshot, String serviceId) {
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.serviceId = serviceId;
+        this.baseRowVersion = snapshot.getRowVersion();
+        this.queuedTime = new Date();
+    }
+
+    /** Returns the number defining the order of submission. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Returns the copy of the bean, taken when it was queued. */
+    public AbstractIdBean getSnapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(AbstractIdBean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns the bean the snapshot was taken from. Returns <code>null</code> if the
+     * bean is not used anymore or the entry is left from the previous session.
+     */
+    public AbstractIdBean getBean() {
+        return bean == null ? null : bean.get();
+    }
+
+    void setBean(AbstractIdBean bean) {
+        this.bean = new WeakReference<AbstractIdBean>(bean);
+    }
+
+    /** Returns the ID of the bean. */
+    public String getBeanId() {
+        return snapshot.getId();
+    }
+
+    /** Returns the ID of the application service, used to save properties. */
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    /** Returns the row version of the bean the changes are based on. */
+    public int getBaseRowVersion() {
+        return baseRowVersion;
+    }
+
+    void setBaseRowVersion(int baseRowVersion) {
+        this.baseRowVersion = baseRowVersion;
+        snapshot.setRowVersion(baseRowVersion);
+    }
+
+    /** Returns the row version found on the server in case of conflict. */
+    public int getServerRowVersion() {
+        return serverRowVersion;
+    }
+
+    void setServerRowVersion(int serverRowVersion) {
+        this.serverRowVersion = serverRowVersion;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /** Returns the error message if the entry failed. */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Date getQueuedTime() {
+        return queuedTime;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.savequeue;
+
+import org.sola.clients.beans.AbstractIdBean;
+
+/**
+ * Listener of the {@link SaveQueue} events. Methods are called from the queue
+ * worker thread.
+ */
+public interface SaveQueueListener {
+
+    /**
+     * Called when the entry is saved on the server.
+     *
+     * @param entry Saved entry.
+     * @param savedBean The bean returned by the server.
+     */
+    void entrySaved(SaveQueueEntry entry, AbstractIdBean savedBean);
+
+    /**
+     * Called when the bean was changed on the server after the snapshot was taken.
+     * The entry is kept until {@link SaveQueue#resolveConflict(SaveQueueEntry, boolean)} is called.
+     */
+    void entryConflict(SaveQueueEntry entry);
+
+    /**
+     * Called when the server rejected the entry. The entry is kept until
+     * {@link SaveQueue#discard(SaveQueueEntry)} is called.
+     */
+    void entryFailed(SaveQueueEntry entry);
+}
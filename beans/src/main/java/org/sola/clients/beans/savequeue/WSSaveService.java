@@ -0,0 +1,80 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.savequeue;
+
+import org.sola.clients.beans.AbstractIdBean;
+import org.sola.clients.beans.administrative.BaUnitBean;
+import org.sola.clients.beans.application.ApplicationBean;
+import org.sola.clients.beans.party.PartyBean;
+import org.sola.services.boundary.wsclients.WSManager;
+import org.sola.webservices.transferobjects.administrative.BaUnitTO;
+import org.sola.webservices.transferobjects.casemanagement.ApplicationTO;
+import org.sola.webservices.transferobjects.casemanagement.PartyTO;
+
+/**
+ * {@link SaveService} submitting applications, parties and properties to the
+ * web services.
+ */
+public class WSSaveService implements SaveService {
+
+    @Override
+    public int getServerRowVersion(SaveQueueEntry entry) {
+        AbstractIdBean bean = entry.getSnapshot();
+        if (bean.getId() == null) {
+            return -1;
+        }
+        if (bean instanceof ApplicationBean) {
+            ApplicationTO application = WSManager.getInstance().getCaseManagementService().getApplication(bean.getId());
+            return application == null ? -1 : application.getRowVersion();
+        }
+        if (bean instanceof PartyBean) {
+            PartyTO party = WSManager.getInstance().getCaseManagementService().getParty(bean.getId());
+            return party == null ? -1 : party.getRowVersion();
+        }
+        if (bean instanceof BaUnitBean) {
+            BaUnitTO baUnit = WSManager.getInstance().getAdministrative().getBaUnitById(bean.getId());
+            return baUnit == null ? -1 : baUnit.getRowVersion();
+        }
+        throw new IllegalArgumentException("Unsupported bean " + bean.getClass().getName());
+    }
+
+    @Override
+    public AbstractIdBean save(SaveQueueEntry entry) {
+        AbstractIdBean bean = entry.getSnapshot();
+        if (bean instanceof ApplicationBean) {
+            ((ApplicationBean) bean).saveApplicationToServer();
+        } else if (bean instanceof PartyBean) {
+            ((PartyBean) bean).savePartyToServer();
+        } else if (bean instanceof BaUnitBean) {
+            ((BaUnitBean) bean).saveBaUnitToServer(entry.getServiceId());
+        } else {
+            throw new IllegalArgumentException("Unsupported bean " + bean.getClass().getName());
+        }
+        return bean;
+    }
+}
@@ -111,7 +111,8 @@ public class SecurityBean extends AbstractBindingBean {
     /** 
      * Authenticates user by calling 
      * {@link WSManager#initWebServices(String, char[])} and passing user name 
-     * and password.
+     * and password. If parallel initialization is switched on, WSDL documents
+     * are loaded concurrently through {@link WebServicesInitializer}.
      * @param userName Username to be authenticated.
      * @param password User password.
      * @param config Configuration settings for the Web-services initialization.
@@ -121,7 +122,25 @@ public class SecurityBean extends AbstractBindingBean {
         boolean result = false;
         if (userName != null && password != null && !userName.equals("") && password.length > 0) {
             // Initialize web services
-            result = WSManager.getInstance().initWebServices(userName, password, config);
+            HashMap<String, String> wsConfig = config;
+            if (WebServicesInitializer.isParallel()) {
+                wsConfig = WebServicesInitializer.prepareConfig(config);
+            }
+            // Per service timings of the initializer cover the WSDL fetch only,
+            // creation of the ports is measured here as part of the total time
+            long start = System.currentTimeMillis();
+            boolean initialized = false;
+            try {
+                result = WSManager.getInstance().initWebServices(userName, password, wsConfig);
+                // False result means wrong credentials, services were initialized
+                initialized = true;
+            } finally {
+                WebServicesInitializer.recordTotalTime(System.currentTimeMillis() - start);
+                if (!initialized && wsConfig != config) {
+                    // Cached WSDL may be outdated, load it again on the next attempt
+                    WebServicesInitializer.clearCache();
+                }
+            }
             if (result) {
                 // Set current user
                 UserBean user = TypeConverters.TransferObjectToBean(
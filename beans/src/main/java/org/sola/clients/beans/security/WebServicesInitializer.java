@@ -0,0 +1,293 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Prepares web services configuration for the fast login. WSDL documents of the
+ * services and schemas they import are downloaded concurrently and stored in the
+ * local cache directory. URLs in the configuration are replaced with the cached
+ * files, so creating the ports at login does not have to go to the server for the
+ * metadata. Cached documents are reused between runs until they expire.
+ * <p>The mode is switched on with <code>SOLA_WS_PARALLEL_INIT=true</code> system
+ * property. Cache life time in hours is set by <code>SOLA_WS_WSDL_CACHE_HOURS</code>
+ * (24 by default). Time spent on fetching the WSDL of each service is logged and
+ * available from {@link #getTimings()}. Creation of the ports by the
+ * <code>WSManager</code> is not part of these timings, it is included only in the
+ * total time of the initialization.</p>
+ */
+public class WebServicesInitializer {
+
+    /** System property to switch parallel initialization on. */
+    public static final String PARALLEL_INIT_PROPERTY = "SOLA_WS_PARALLEL_INIT";
+    /** System property with the life time of the cached WSDL documents in hours. */
+    public static final String CACHE_HOURS_PROPERTY = "SOLA_WS_WSDL_CACHE_HOURS";
+    /** Key of the total time spent in the web services initialization. */
+    public static final String TOTAL_TIME_KEY = "TOTAL";
+    private static final long DEFAULT_CACHE_HOURS = 24;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final String SERVICE_FILE_NAME = "service.wsdl";
+    private static final Pattern IMPORT_PATTERN = Pattern.compile(
+            "(<(?:\\w+:)?(?:import|include)\\b[^>]*?\\b(?:schemaLocation|location)\\s*=\\s*\")([^\"]+)(\")");
+    private static final Map<String, Long> timings =
+            Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+    private static File cacheDirectory = new File(System.getProperty("user.home")
+            + File.separator + ".sola" + File.separator + "wsdl");
+
+    /** Returns true if parallel initialization is switched on. */
+    public static boolean isParallel() {
+        return Boolean.parseBoolean(System.getProperty(PARALLEL_INIT_PROPERTY));
+    }
+
+    public static File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public static void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    /**
+     * Returns time in milliseconds, spent on fetching the WSDL of each service
+     * from the last login, by configuration key. {@link #TOTAL_TIME_KEY} holds the
+     * time of the whole web services initialization, including creation of the ports.
+     */
+    public static Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<String, Long>(timings);
+        }
+    }
+
+    /**
+     * Loads WSDL documents of the services concurrently into the local cache and
+     * returns configuration pointing to the cached documents. Services, which
+     * metadata can't be loaded, keep their original URL.
+     *
+     * @param config Web services configuration.
+     */
+    public static HashMap<String, String> prepareConfig(HashMap<String, String> config) {
+        timings.clear();
+        HashMap<String, String> result = new HashMap<String, String>(config);
+        Map<String, Future<String>> files = new LinkedHashMap<String, Future<String>>();
+        Map<String, Future<String>> filesByUrl = new HashMap<String, Future<String>>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, config.size()));
+        try {
+            for (final Map.Entry<String, String> entry : config.entrySet()) {
+                if (entry.getValue() == null || !entry.getValue().toLowerCase().endsWith("?wsdl")) {
+                    continue;
+                }
+                // Services sharing the same URL are loaded once
+                Future<String> file = filesByUrl.get(entry.getValue());
+                if (file != null) {
+                    files.put(entry.getKey(), file);
+                    continue;
+                }
+                file = executor.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        long start = System.nanoTime();
+                        String fileUrl = getCachedWsdl(entry.getValue());
+                        long time = (System.nanoTime() - start) / 1000000;
+                        timings.put(entry.getKey(), time);
+                        LogUtility.log(String.format("WSDL of %s fetched in %s ms (WSDL fetch only, "
+                                + "port creation not included)", entry.getKey(), time), Level.INFO);
+                        return fileUrl;
+                    }
+                });
+                filesByUrl.put(entry.getValue(), file);
+                files.put(entry.getKey(), file);
+            }
+            for (Map.Entry<String, Future<String>> file : files.entrySet()) {
+                try {
+                    result.put(file.getKey(), file.getValue().get());
+                } catch (ExecutionException ex) {
+                    LogUtility.log(String.format("Failed to cache WSDL of %s: %s",
+                            file.getKey(), ex.getCause()), Level.WARNING);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return config;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /** Records total time of the web services initialization. */
+    public static void recordTotalTime(long time) {
+        timings.put(TOTAL_TIME_KEY, time);
+        LogUtility.log(String.format("Web services initialized in %s ms, "
+                + "including WSDL fetch and port creation", time), Level.INFO);
+    }
+
+    /** Removes all cached documents. Called when initialization with cached documents fails. */
+    public static void clearCache() {
+        File[] dirs = cacheDirectory.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                deleteDirectory(dir);
+            }
+        }
+    }
+
+    /**
+     * Returns URL of the cached WSDL document, downloading the document with
+     * imported schemas if it's not cached yet or expired.
+     */
+    private static String getCachedWsdl(String wsdlUrl) throws IOException {
+        File dir = new File(cacheDirectory, hash(wsdlUrl));
+        File wsdlFile = new File(dir, SERVICE_FILE_NAME);
+        long maxAge = getCacheHours() * 3600000L;
+        if (wsdlFile.exists() && System.currentTimeMillis() - wsdlFile.lastModified() < maxAge) {
+            return wsdlFile.toURI().toString();
+        }
+
+        // Download into temporary directory and replace the cached one at the end
+        File tmpDir = new File(cacheDirectory, dir.getName() + ".tmp");
+        deleteDirectory(tmpDir);
+        if (!tmpDir.mkdirs()) {
+            throw new IOException("Can't create " + tmpDir.getPath());
+        }
+        Map<String, String> fileNames = new HashMap<String, String>();
+        fileNames.put(wsdlUrl, SERVICE_FILE_NAME);
+        download(new URL(wsdlUrl), SERVICE_FILE_NAME, tmpDir, fileNames);
+        deleteDirectory(dir);
+        if (!tmpDir.renameTo(dir)) {
+            throw new IOException("Can't rename " + tmpDir.getPath());
+        }
+        return wsdlFile.toURI().toString();
+    }
+
+    /**
+     * Downloads the document and documents it imports, replacing imported locations
+     * with the names of the local files.
+     */
+    private static void download(URL url, String fileName, File dir, Map<String, String> fileNames)
+            throws IOException {
+        String content = new String(read(url), "UTF-8");
+        Matcher matcher = IMPORT_PATTERN.matcher(content);
+        StringBuffer localContent = new StringBuffer();
+        while (matcher.find()) {
+            URL importUrl = new URL(url, matcher.group(2).replace("&amp;", "&"));
+            String importFileName = fileNames.get(importUrl.toString());
+            if (importFileName == null) {
+                importFileName = "import" + fileNames.size() + ".xsd";
+                fileNames.put(importUrl.toString(), importFileName);
+                download(importUrl, importFileName, dir, fileNames);
+            }
+            matcher.appendReplacement(localContent, Matcher.quoteReplacement(
+                    matcher.group(1) + importFileName + matcher.group(3)));
+        }
+        matcher.appendTail(localContent);
+
+        OutputStream out = new FileOutputStream(new File(dir, fileName));
+        try {
+            out.write(localContent.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] read(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        InputStream in = connection.getInputStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long getCacheHours() {
+        try {
+            return Long.parseLong(System.getProperty(CACHE_HOURS_PROPERTY,
+                    Long.toString(DEFAULT_CACHE_HOURS)));
+        } catch (NumberFormatException ex) {
+            return DEFAULT_CACHE_HOURS;
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA1");
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes("UTF-8"))) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            return Integer.toHexString(value.hashCode());
+        } catch (IOException ex) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
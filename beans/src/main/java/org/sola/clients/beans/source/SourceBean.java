@@ -123,7 +123,7 @@ public class SourceBean extends SourceSummaryBean {
 
     public void openDocument() {
         if (archiveDocument != null && archiveDocument.getId() != null) {
-            DocumentBean.openDocument(archiveDocument.getId());
+            archiveDocument.openDocument();
         }
     }
 
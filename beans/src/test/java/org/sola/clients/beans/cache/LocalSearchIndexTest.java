@@ -0,0 +1,171 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.cache;
+
+import java.util.List;
+import junit.framework.TestCase;
+import org.sola.clients.beans.AbstractIdBean;
+
+/**
+ * Tests lookups, updates and eviction of the {@link LocalSearchIndex}.
+ */
+public class LocalSearchIndexTest extends TestCase {
+
+    /** Simple bean to index. */
+    public static class TestBean extends AbstractIdBean {
+
+        private String name;
+
+        public TestBean(String id, int rowVersion, String name) {
+            setId(id);
+            setRowVersion(rowVersion);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /** Index searching the name of the bean. */
+    private static class TestIndex extends LocalSearchIndex<TestBean> {
+
+        TestIndex(int maxSize) {
+            super(maxSize);
+        }
+
+        TestIndex(int maxSize, long maxAge) {
+            super(maxSize, maxAge);
+        }
+
+        @Override
+        protected String getSearchText(TestBean bean) {
+            return bean.getName();
+        }
+    }
+
+    private TestIndex index;
+
+    public LocalSearchIndexTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        index = new TestIndex(100);
+        index.put(new TestBean("1", 1, "John Smith"));
+        index.put(new TestBean("2", 1, "Jane Smithers"));
+        index.put(new TestBean("3", 1, "Peter Jones"));
+    }
+
+    public void testSearchBySubstring() {
+        assertIds(index.search("mith", 10), "1", "2");
+        assertIds(index.search("ne", 10), "2", "3");
+        assertIds(index.search("o", 10), "1", "3");
+    }
+
+    public void testSearchIgnoresCase() {
+        assertIds(index.search("JOHN", 10), "1");
+        assertIds(index.search("  jOnEs ", 10), "3");
+    }
+
+    public void testSearchRequiresEveryWord() {
+        assertIds(index.search("smith ja", 10), "2");
+        assertIds(index.search("smith peter", 10));
+    }
+
+    public void testSearchChecksOrderOfCharacters() {
+        // Both n-grams of "abab" are in the words, but the words don't contain "abab"
+        index.put(new TestBean("4", 1, "aba bab"));
+        assertIds(index.search("abab", 10));
+        assertIds(index.search("aba", 10), "4");
+    }
+
+    public void testSearchWithoutMatchOrWords() {
+        assertIds(index.search("xyz", 10));
+        assertIds(index.search("", 10));
+        assertIds(index.search(null, 10));
+    }
+
+    public void testSearchLimitsResults() {
+        assertEquals(1, index.search("smith", 1).size());
+    }
+
+    public void testPutReplacesText() {
+        index.put(new TestBean("1", 2, "John Brown"));
+        assertIds(index.search("smith", 10), "2");
+        assertIds(index.search("brown", 10), "1");
+        assertEquals(3, index.size());
+    }
+
+    public void testPutIgnoresOlderRowVersion() {
+        index.put(new TestBean("1", 3, "John Brown"));
+        index.put(new TestBean("1", 2, "John Green"));
+        assertIds(index.search("brown", 10), "1");
+        assertIds(index.search("green", 10));
+    }
+
+    public void testRemove() {
+        index.remove("2");
+        assertIds(index.search("smith", 10), "1");
+        assertNull(index.get("2"));
+        assertEquals(2, index.size());
+    }
+
+    public void testOldestBeanIsEvicted() {
+        TestIndex smallIndex = new TestIndex(2);
+        smallIndex.put(new TestBean("1", 1, "John Smith"));
+        smallIndex.put(new TestBean("2", 1, "Jane Smithers"));
+        smallIndex.put(new TestBean("3", 1, "Peter Smith"));
+        assertEquals(2, smallIndex.size());
+        assertNull(smallIndex.get("1"));
+        assertIds(smallIndex.search("smith", 10), "2", "3");
+    }
+
+    public void testExpiredBeansAreRemoved() throws Exception {
+        TestIndex expiringIndex = new TestIndex(100, 200);
+        expiringIndex.put(new TestBean("1", 1, "John Smith"));
+        expiringIndex.put(new TestBean("2", 1, "Jane Smithers"));
+        Thread.sleep(300);
+        expiringIndex.put(new TestBean("3", 1, "Peter Smith"));
+        assertIds(expiringIndex.search("smith", 10), "3");
+        assertNull(expiringIndex.get("1"));
+        assertEquals(1, expiringIndex.size());
+    }
+
+    private static void assertIds(List<TestBean> beans, String... ids) {
+        assertEquals(ids.length, beans.size());
+        for (String id : ids) {
+            boolean found = false;
+            for (TestBean bean : beans) {
+                found = found || bean.getId().equals(id);
+            }
+            assertTrue("Missing " + id, found);
+        }
+    }
+}
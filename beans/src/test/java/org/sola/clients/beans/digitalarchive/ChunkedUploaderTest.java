@@ -0,0 +1,148 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link ChunkedUploader} against {@link LocalChunkedUploadServer}.
+ */
+public class ChunkedUploaderTest extends TestCase {
+
+    private static final int CHUNK_SIZE = 1000;
+    private LocalChunkedUploadServer server;
+    private ChunkedUploader uploader;
+    private File stateDirectory;
+    private File file;
+    private byte[] content;
+
+    public ChunkedUploaderTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalChunkedUploadServer();
+        stateDirectory = File.createTempFile("uploads", "");
+        stateDirectory.delete();
+        uploader = new ChunkedUploader(new HttpChunkedUploadEndpoint(server.getUrl()),
+                stateDirectory, CHUNK_SIZE);
+        uploader.setRetryDelay(10);
+
+        content = new byte[10500];
+        new Random(1).nextBytes(content);
+        file = File.createTempFile("scan", ".tif");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        file.delete();
+        File[] files = stateDirectory.listFiles();
+        if (files != null) {
+            for (File stateFile : files) {
+                stateFile.delete();
+            }
+        }
+        stateDirectory.delete();
+    }
+
+    public void testUpload() throws Exception {
+        final long[] progress = new long[1];
+        DocumentBean document = uploader.upload(file, "Scan", new ChunkedUploader.ProgressListener() {
+
+            @Override
+            public void progressChanged(long uploadedBytes, long totalBytes) {
+                progress[0] = uploadedBytes;
+            }
+        });
+
+        assertEquals("Scan", document.getDescription());
+        assertEquals("tif", document.getExtension());
+        assertTrue(Arrays.equals(content, server.getDocument(document.getId())));
+        assertEquals(11, server.getReceivedChunks());
+        assertEquals(content.length, progress[0]);
+        assertEquals(0, stateDirectory.listFiles().length);
+    }
+
+    /** Corrupted and failed chunks are sent again. */
+    public void testRetry() throws Exception {
+        server.setChunksToCorrupt(1);
+        server.setChunksToFail(1);
+        DocumentBean document = uploader.upload(file, "Scan", null);
+
+        assertTrue(Arrays.equals(content, server.getDocument(document.getId())));
+        assertEquals(11, server.getReceivedChunks());
+    }
+
+    /** Upload fails when a chunk can't be sent after several attempts. */
+    public void testFailure() throws Exception {
+        server.setChunksToFail(100);
+        try {
+            uploader.upload(file, "Scan", null);
+            fail("Upload must fail");
+        } catch (IOException ex) {
+        }
+        assertEquals(0, server.getReceivedChunks());
+        assertEquals(1, stateDirectory.listFiles().length);
+    }
+
+    /** Interrupted upload continues from the chunks received by the server. */
+    public void testResume() throws Exception {
+        try {
+            uploader.upload(file, "Scan", new ChunkedUploader.ProgressListener() {
+
+                @Override
+                public void progressChanged(long uploadedBytes, long totalBytes) {
+                    if (uploadedBytes >= 4 * CHUNK_SIZE) {
+                        throw new IllegalStateException("Connection lost");
+                    }
+                }
+            });
+            fail("Upload must be interrupted");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(4, server.getReceivedChunks());
+        assertEquals(1, stateDirectory.listFiles().length);
+
+        DocumentBean document = uploader.upload(file, "Scan", null);
+        assertTrue(Arrays.equals(content, server.getDocument(document.getId())));
+        assertEquals(11, server.getReceivedChunks());
+    }
+}
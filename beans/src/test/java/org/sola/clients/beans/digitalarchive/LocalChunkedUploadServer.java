@@ -0,0 +1,192 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stub of the chunked upload endpoint, implementing the protocol of
+ * {@link HttpChunkedUploadEndpoint}. Keeps uploads in memory and allows to
+ * simulate failed and corrupted chunks.
+ */
+public class LocalChunkedUploadServer {
+
+    private final HttpServer server;
+    private final Map<String, Map<Integer, byte[]>> uploads = new HashMap<String, Map<Integer, byte[]>>();
+    private final Map<String, byte[]> documents = new HashMap<String, byte[]>();
+    private final AtomicInteger receivedChunks = new AtomicInteger();
+    private volatile int chunksToFail = 0;
+    private volatile int chunksToCorrupt = 0;
+    private int nextId = 1;
+
+    public LocalChunkedUploadServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/uploads", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleRequest(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /** Makes the next chunk requests fail with server error. */
+    public void setChunksToFail(int chunksToFail) {
+        this.chunksToFail = chunksToFail;
+    }
+
+    /** Makes the next chunks arrive with a damaged byte. */
+    public void setChunksToCorrupt(int chunksToCorrupt) {
+        this.chunksToCorrupt = chunksToCorrupt;
+    }
+
+    /** Returns the number of chunks, accepted by the server. */
+    public int getReceivedChunks() {
+        return receivedChunks.get();
+    }
+
+    /** Returns the content of the created document. */
+    public synchronized byte[] getDocument(String id) {
+        return documents.get(id);
+    }
+
+    /** Forgets all uploads in progress, as if they had expired. */
+    public synchronized void clearUploads() {
+        uploads.clear();
+    }
+
+    private synchronized void handleRequest(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+        String method = exchange.getRequestMethod();
+        byte[] body = read(exchange.getRequestBody());
+
+        if (path.length == 1 && method.equals("POST")) {
+            String uploadId = "upload" + nextId++;
+            uploads.put(uploadId, new TreeMap<Integer, byte[]>());
+            respond(exchange, 201, uploadId);
+            return;
+        }
+        Map<Integer, byte[]> chunks = uploads.get(path[1]);
+        if (chunks == null) {
+            respond(exchange, 404, "");
+        } else if (path.length == 2 && method.equals("GET")) {
+            StringBuilder indexes = new StringBuilder();
+            for (Integer index : chunks.keySet()) {
+                indexes.append(indexes.length() > 0 ? "," : "").append(index);
+            }
+            respond(exchange, 200, indexes.toString());
+        } else if (path.length == 3 && path[2].equals("complete")) {
+            ByteArrayOutputStream document = new ByteArrayOutputStream();
+            for (byte[] chunk : chunks.values()) {
+                document.write(chunk);
+            }
+            if (!checksum(document.toByteArray()).equals(
+                    exchange.getRequestHeaders().getFirst(HttpChunkedUploadEndpoint.CHECKSUM_HEADER))) {
+                respond(exchange, 422, "Checksum mismatch");
+                return;
+            }
+            String documentId = "doc" + nextId++;
+            documents.put(documentId, document.toByteArray());
+            uploads.remove(path[1]);
+            respond(exchange, 200, "id=" + documentId + "\nnr=" + documentId + "\nrowVersion=1\n");
+        } else if (path.length == 3 && method.equals("PUT")) {
+            if (chunksToFail > 0) {
+                chunksToFail--;
+                respond(exchange, 503, "Unavailable");
+                return;
+            }
+            if (chunksToCorrupt > 0 && body.length > 0) {
+                chunksToCorrupt--;
+                body[0]++;
+            }
+            if (!checksum(body).equals(
+                    exchange.getRequestHeaders().getFirst(HttpChunkedUploadEndpoint.CHECKSUM_HEADER))) {
+                respond(exchange, 422, "Checksum mismatch");
+                return;
+            }
+            chunks.put(Integer.valueOf(path[2]), body);
+            receivedChunks.incrementAndGet();
+            respond(exchange, 200, "");
+        } else {
+            respond(exchange, 400, "");
+        }
+    }
+
+    private static String checksum(byte[] data) {
+        try {
+            return ChunkedUploader.toHex(MessageDigest.getInstance("SHA1").digest(data));
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.digitalarchive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests stability check and sending ahead of the {@link ScanFolderWatcher} against
+ * {@link LocalChunkedUploadServer}.
+ */
+public class ScanFolderWatcherTest extends TestCase {
+
+    private static final int CHUNK_SIZE = 1000;
+    private LocalChunkedUploadServer server;
+    private ChunkedUploader uploader;
+    private File folder;
+    private File stateDirectory;
+    private File stateFile;
+    private File file;
+    private byte[] content;
+
+    public ScanFolderWatcherTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LocalChunkedUploadServer();
+        stateDirectory = createDirectory("uploads");
+        folder = createDirectory("scans");
+        stateFile = new File(stateDirectory, "scanuploads.properties");
+        uploader = new ChunkedUploader(new HttpChunkedUploadEndpoint(server.getUrl()),
+                stateDirectory, CHUNK_SIZE);
+
+        content = new byte[10500];
+        new Random(1).nextBytes(content);
+        file = new File(folder, "scan.tif");
+        write(file, content);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        delete(folder);
+        delete(stateDirectory);
+    }
+
+    /**
+     * File is sent when it stays unchanged for two checks. The document is created
+     * only when the file is attached, without sending the chunks again.
+     */
+    public void testSendStableFile() throws Exception {
+        ScanFolderWatcher watcher = new ScanFolderWatcher(folder, stateFile, uploader, 1);
+        watcher.poll();
+        watcher.poll();
+        // Scanner is still writing
+        write(file, content);
+        file.setLastModified(file.lastModified() + 2000);
+        watcher.poll();
+        watcher.poll();
+        assertEquals(0, server.getReceivedChunks());
+
+        watcher.poll();
+        watcher.prepareUpload(file);
+        assertEquals(11, server.getReceivedChunks());
+
+        DocumentBean document = uploader.upload(file, file.getName(), null);
+        assertTrue(Arrays.equals(content, server.getDocument(document.getId())));
+        assertEquals(11, server.getReceivedChunks());
+    }
+
+    /** Sent and attached files are not sent again, also after restart. */
+    public void testNoRepeatedTransfer() throws Exception {
+        ScanFolderWatcher watcher = new ScanFolderWatcher(folder, stateFile, uploader, 1);
+        for (int i = 0; i < 3; i++) {
+            watcher.poll();
+        }
+        watcher.prepareUpload(file);
+        File attached = new File(folder, "attached.tif");
+        write(attached, content);
+        watcher.prepareUpload(attached);
+        uploader.upload(attached, attached.getName(), null);
+        int received = server.getReceivedChunks();
+
+        ScanFolderWatcher restarted = new ScanFolderWatcher(folder, stateFile, uploader, 1);
+        for (int i = 0; i < 3; i++) {
+            restarted.poll();
+        }
+        restarted.prepareUpload(file);
+        restarted.prepareUpload(attached);
+        assertEquals(received, server.getReceivedChunks());
+    }
+
+    /** Attaching the same file twice creates two documents. */
+    public void testAttachTwice() throws Exception {
+        ScanFolderWatcher watcher = new ScanFolderWatcher(folder, stateFile, uploader, 1);
+        for (int i = 0; i < 3; i++) {
+            watcher.poll();
+        }
+        watcher.prepareUpload(file);
+        DocumentBean first = uploader.upload(file, file.getName(), null);
+        watcher.prepareUpload(file);
+        DocumentBean second = uploader.upload(file, file.getName(), null);
+
+        assertFalse(first.getId().equals(second.getId()));
+        assertTrue(Arrays.equals(content, server.getDocument(second.getId())));
+    }
+
+    private static File createDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.savequeue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.ws.WebServiceException;
+import org.sola.clients.beans.AbstractIdBean;
+
+/**
+ * Local stand-in for the web services, used to test {@link SaveQueue}. Keeps row
+ * versions of the saved beans and their child rows in memory, allows to simulate changes made by other
+ * users, slow responses and lost connection.
+ */
+public class LocalSaveService implements SaveService {
+
+    private final Map<String, Integer> rowVersions = new HashMap<String, Integer>();
+    private final List<String> savedBeans = new ArrayList<String>();
+    private volatile long latency = 0;
+    private volatile boolean offline = false;
+
+    /** Stores the bean on the "server" with the given row version. */
+    public synchronized void put(String beanId, int rowVersion) {
+        rowVersions.put(beanId, rowVersion);
+    }
+
+    /** Simulates change of the bean by another user. */
+    public synchronized void changeOnServer(String beanId) {
+        rowVersions.put(beanId, getRowVersion(beanId) + 1);
+    }
+
+    public synchronized int getRowVersion(String beanId) {
+        Integer rowVersion = rowVersions.get(beanId);
+        return rowVersion == null ? -1 : rowVersion;
+    }
+
+    /** Returns IDs of the saved beans in the order of saving. */
+    public synchronized List<String> getSavedBeans() {
+        return new ArrayList<String>(savedBeans);
+    }
+
+    /** Sets the delay of each call in milliseconds. */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /** Makes each call fail with the connection error. */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    @Override
+    public int getServerRowVersion(SaveQueueEntry entry) {
+        call();
+        return getRowVersion(entry.getBeanId());
+    }
+
+    @Override
+    public AbstractIdBean save(SaveQueueEntry entry) {
+        call();
+        synchronized (this) {
+            int rowVersion = getRowVersion(entry.getBeanId());
+            if (rowVersion >= 0 && rowVersion != entry.getSnapshot().getRowVersion()) {
+                throw new IllegalStateException("Row version of " + entry.getBeanId() + " has changed");
+            }
+            AbstractIdBean savedBean = entry.getSnapshot().copy();
+            if (savedBean instanceof SaveQueueTest.TestBean) {
+                saveChildren((SaveQueueTest.TestBean) savedBean);
+            }
+            savedBean.setRowVersion(rowVersion + 1);
+            rowVersions.put(entry.getBeanId(), rowVersion + 1);
+            savedBeans.add(entry.getBeanId());
+            return savedBean;
+        }
+    }
+
+    /** Inserts new child rows and updates existing ones, checking row versions by row ID. */
+    private void saveChildren(SaveQueueTest.TestBean bean) {
+        for (SaveQueueTest.TestChild child : bean.getChildren()) {
+            int rowVersion = getRowVersion(child.getRowId());
+            if (rowVersion < 0 && child.getRowVersion() != 0) {
+                throw new IllegalStateException("Row " + child.getRowId() + " doesn't exist");
+            }
+            if (rowVersion >= 0 && rowVersion != child.getRowVersion()) {
+                throw new IllegalStateException("Row " + child.getRowId() + " already exists or has changed");
+            }
+            child.setRowVersion(child.getRowVersion() + 1);
+            rowVersions.put(child.getRowId(), child.getRowVersion());
+        }
+    }
+
+    private void call() {
+        if (offline) {
+            throw new WebServiceException(new IOException("Connection refused"));
+        }
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
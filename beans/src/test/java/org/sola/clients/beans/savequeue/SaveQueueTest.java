@@ -0,0 +1,277 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.beans.savequeue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.sola.clients.beans.AbstractIdBean;
+import org.sola.clients.beans.AbstractVersionedBean;
+
+/**
+ * Tests ordering, merging, conflict detection and persistence of the {@link SaveQueue},
+ * using {@link LocalSaveService}.
+ */
+public class SaveQueueTest extends TestCase {
+
+    private File storageDirectory;
+    private LocalSaveService service;
+
+    /** Simple bean to queue. */
+    public static class TestBean extends AbstractIdBean {
+
+        private String name;
+        private List<TestChild> children = new ArrayList<TestChild>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<TestChild> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<TestChild> children) {
+            this.children = children;
+        }
+    }
+
+    /** Child row of the bean, saved together with the bean. */
+    public static class TestChild extends AbstractVersionedBean {
+    }
+
+    /** Listener counting down the latches on the queue events. */
+    private static class LatchListener implements SaveQueueListener {
+
+        CountDownLatch saved;
+        CountDownLatch conflicts = new CountDownLatch(1);
+        SaveQueueEntry conflictEntry;
+
+        LatchListener(int expectedSaves) {
+            saved = new CountDownLatch(expectedSaves);
+        }
+
+        @Override
+        public void entrySaved(SaveQueueEntry entry, AbstractIdBean savedBean) {
+            saved.countDown();
+        }
+
+        @Override
+        public void entryConflict(SaveQueueEntry entry) {
+            conflictEntry = entry;
+            conflicts.countDown();
+        }
+
+        @Override
+        public void entryFailed(SaveQueueEntry entry) {
+        }
+    }
+
+    public SaveQueueTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        storageDirectory = File.createTempFile("savequeue", "");
+        storageDirectory.delete();
+        storageDirectory.mkdirs();
+        service = new LocalSaveService();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = storageDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        storageDirectory.delete();
+    }
+
+    /**
+     * Saves of the same bean, queued while the previous save is submitted, are merged
+     * and rebased on the new row version. Beans are saved in the order of queuing.
+     */
+    public void testOrderingAndMerging() throws Exception {
+        service.setLatency(100);
+        SaveQueue queue = new SaveQueue(service, storageDirectory);
+        LatchListener listener = new LatchListener(3);
+        queue.addListener(listener);
+
+        TestBean beanA = new TestBean();
+        TestBean beanB = new TestBean();
+        beanA.setName("A1");
+        queue.enqueue(beanA, null);
+        Thread.sleep(50);
+        beanA.setName("A2");
+        queue.enqueue(beanA, null);
+        beanB.setName("B1");
+        queue.enqueue(beanB, null);
+        beanA.setName("A3");
+        SaveQueueEntry mergedEntry = queue.enqueue(beanA, null);
+
+        assertEquals("A3", ((TestBean) mergedEntry.getSnapshot()).getName());
+        assertEquals(3, queue.getEntries().size());
+        assertTrue(listener.saved.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(beanA.getId(), beanA.getId(), beanB.getId()), service.getSavedBeans());
+        assertEquals(1, service.getRowVersion(beanA.getId()));
+        assertEquals(0, service.getRowVersion(beanB.getId()));
+        assertEquals(1, listener.conflicts.getCount());
+        assertTrue(queue.getEntries().isEmpty());
+        assertEquals(0, storageDirectory.listFiles().length);
+    }
+
+    /**
+     * New child row is inserted once. Snapshots queued while the previous one is
+     * submitted and snapshots taken later from the not refreshed bean are rebased on
+     * the row versions returned by the server.
+     */
+    public void testChildRowsRebased() throws Exception {
+        service.setLatency(100);
+        SaveQueue queue = new SaveQueue(service, storageDirectory);
+        LatchListener listener = new LatchListener(2);
+        queue.addListener(listener);
+
+        TestBean bean = new TestBean();
+        TestChild child = new TestChild();
+        bean.getChildren().add(child);
+        queue.enqueue(bean, null);
+        Thread.sleep(50);
+        bean.setName("changed");
+        queue.enqueue(bean, null);
+        assertTrue(listener.saved.await(5, TimeUnit.SECONDS));
+        assertEquals(2, service.getRowVersion(child.getRowId()));
+
+        listener = new LatchListener(1);
+        queue.addListener(listener);
+        bean.setName("changed again");
+        SaveQueueEntry entry = queue.enqueue(bean, null);
+        assertEquals(2, ((TestBean) entry.getSnapshot()).getChildren().get(0).getRowVersion());
+        assertTrue(listener.saved.await(5, TimeUnit.SECONDS));
+        assertEquals(3, service.getRowVersion(child.getRowId()));
+        assertEquals(3, service.getSavedBeans().size());
+        assertTrue(queue.getEntries().isEmpty());
+    }
+
+    /**
+     * Action on the bean, called after the save is queued, waits for the save and
+     * gets the row versions returned by the server on the bean.
+     */
+    public void testActionAfterQueuedSave() throws Exception {
+        service.setLatency(100);
+        SaveQueue queue = new SaveQueue(service, storageDirectory);
+
+        TestBean bean = new TestBean();
+        TestChild child = new TestChild();
+        bean.getChildren().add(child);
+        queue.enqueue(bean, null);
+        Thread.sleep(50);
+        bean.setName("changed");
+        queue.enqueue(bean, null);
+
+        // The action checks the row version of the bean on the server
+        queue.awaitSaved(bean.getId());
+        assertEquals(service.getRowVersion(bean.getId()), bean.getRowVersion());
+        assertEquals(service.getRowVersion(child.getRowId()), child.getRowVersion());
+        assertTrue(queue.getEntries().isEmpty());
+
+        // Next save of the bean is based on the saved row versions
+        service.setLatency(0);
+        bean.setName("changed again");
+        queue.enqueue(bean, null);
+        queue.awaitSaved(bean.getId());
+        assertEquals(2, bean.getRowVersion());
+        assertEquals(3, service.getSavedBeans().size());
+    }
+
+    /** Waiting for the save in conflict fails instead of using the stale row version. */
+    public void testAwaitSavedConflict() throws Exception {
+        TestBean bean = new TestBean();
+        service.put(bean.getId(), 0);
+        service.changeOnServer(bean.getId());
+        SaveQueue queue = new SaveQueue(service, storageDirectory);
+
+        queue.enqueue(bean, null);
+        try {
+            queue.awaitSaved(bean.getId());
+            fail("Conflict is not reported");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(0, bean.getRowVersion());
+    }
+
+    /** Bean changed on the server is reported as conflict and saved after overwrite. */
+    public void testConflict() throws Exception {
+        TestBean bean = new TestBean();
+        service.put(bean.getId(), 0);
+        service.changeOnServer(bean.getId());
+        SaveQueue queue = new SaveQueue(service, storageDirectory);
+        LatchListener listener = new LatchListener(1);
+        queue.addListener(listener);
+
+        queue.enqueue(bean, null);
+        assertTrue(listener.conflicts.await(5, TimeUnit.SECONDS));
+        assertEquals(SaveQueueEntry.Status.CONFLICT, listener.conflictEntry.getStatus());
+        assertEquals(1, listener.conflictEntry.getServerRowVersion());
+        assertTrue(service.getSavedBeans().isEmpty());
+
+        queue.resolveConflict(listener.conflictEntry, true);
+        assertTrue(listener.saved.await(5, TimeUnit.SECONDS));
+        assertEquals(2, service.getRowVersion(bean.getId()));
+    }
+
+    /** Entries queued while offline are kept on disk and submitted by the new queue. */
+    public void testPersistence() throws Exception {
+        LocalSaveService offlineService = new LocalSaveService();
+        offlineService.setOffline(true);
+        SaveQueue queue = new SaveQueue(offlineService, storageDirectory);
+        queue.setRetryDelay(50);
+        TestBean bean = new TestBean();
+        queue.enqueue(bean, null);
+        Thread.sleep(200);
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(1, storageDirectory.listFiles().length);
+
+        SaveQueue restartedQueue = new SaveQueue(service, storageDirectory);
+        LatchListener listener = new LatchListener(1);
+        restartedQueue.addListener(listener);
+        restartedQueue.start();
+        assertTrue(listener.saved.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(bean.getId()), service.getSavedBeans());
+    }
+}
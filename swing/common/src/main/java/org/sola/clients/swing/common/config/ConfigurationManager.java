@@ -48,14 +48,15 @@ public class ConfigurationManager {
      * Returns environmental parameters such as running mode 
      * ({@link EnvConfig#SOLA_RUNNING_MODE}). 
      */
-    private static Properties getEnvConfig() {
+    private static synchronized Properties getEnvConfig() {
         if (envConfig == null) {
             envConfig = new Properties();
-            // TODO: implement loading of evironment parameters
-            if (System.getProperty(EnvConfig.SOLA_RUNNING_MODE.toString()) != null) {
-                envConfig.setProperty(EnvConfig.SOLA_RUNNING_MODE.toString(),
-                        System.getProperty(EnvConfig.SOLA_RUNNING_MODE.toString()));
-            } else {
+            for (EnvConfig key : EnvConfig.values()) {
+                if (System.getProperty(key.toString()) != null) {
+                    envConfig.setProperty(key.toString(), System.getProperty(key.toString()));
+                }
+            }
+            if (envConfig.getProperty(EnvConfig.SOLA_RUNNING_MODE.toString()) == null) {
                 // Set default to debug. change in production environment to RUN
                 envConfig.setProperty(EnvConfig.SOLA_RUNNING_MODE.toString(),
                         EnvRunningModes.DEBUG.toString());
@@ -199,4 +200,21 @@ public class ConfigurationManager {
     public static String getEnvConfigValue(EnvConfig key) {
         return getEnvConfig().getProperty(key.toString());
     }
+
+    /**
+     * Returns environmental configuration value as integer.
+     * @param key The key of the value to return.
+     * @param defaultValue The value to return if the key is not set or is not a number.
+     */
+    public static int getEnvConfigValue(EnvConfig key, int defaultValue) {
+        String value = getEnvConfigValue(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
 }
@@ -28,8 +28,28 @@
 package org.sola.clients.swing.common.config;
 
 /**
- * Enumeration for the configuration key of the running mode.
+ * Enumeration of the environment configuration keys. The values are taken from the
+ * system properties with the same name.
  */
 public enum EnvConfig {
-    SOLA_RUNNING_MODE;
+    /** Running mode, see {@link EnvRunningModes}. */
+    SOLA_RUNNING_MODE,
+    /** Interval in seconds to refresh the dashboard automatically. 0 switches it off. */
+    SOLA_DASHBOARD_REFRESH_INTERVAL,
+    /** Number of subtasks of the {@code CompositeTask} running at the same time. */
+    SOLA_SUBTASK_POOL_SIZE,
+    /**
+     * Execution mode of the tasks: SWING_WORKER (default), PLATFORM_POOL, IO_POOL
+     * or VIRTUAL_THREAD.
+     */
+    SOLA_TASK_EXECUTOR,
+    /** Number of threads in the PLATFORM_POOL task execution mode. */
+    SOLA_TASK_POOL_SIZE,
+    /** Number of threads in the IO_POOL task execution mode. */
+    SOLA_TASK_IO_POOL_SIZE,
+    /**
+     * Maximum number of objects the map search queries return, 30 by default. Map search
+     * results are narrowed locally only below it. 0 switches the narrowing off.
+     */
+    SOLA_MAP_SEARCH_RESULT_LIMIT;
 }
@@ -30,17 +30,32 @@
  */
 package org.sola.clients.swing.common.controls;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
+import java.util.List;
+import java.util.UUID;
 import javax.swing.DefaultListModel;
 import javax.swing.JList;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 import javax.swing.event.ListSelectionEvent;
 import org.sola.clients.swing.common.LafManager;
+import org.sola.clients.swing.common.tasks.SolaTask;
+import org.sola.clients.swing.common.tasks.TaskManager;
 
 /**
+ * Text field with a drop down list of matching objects. The search is executed in the background
+ * after the user stops typing for {@link #getSearchDelay()} milliseconds by the {@link TaskManager}
+ * as a latest wins task. A search that is still running when a newer one starts is cancelled and
+ * its results are discarded, so the list always shows the results of the most recent search
+ * string.
+ * <p>If the search cache is enabled, repeated search strings are answered from the cache. The
+ * results of a search string are narrowed locally for longer search strings starting with it
+ * only if the server limit is known and was not reached, so the results were complete. Cached
+ * results expire after {@link #getSearchCacheMaxAge()} milliseconds.</p>
  *
  * @author Elton Manoku
  */
@@ -55,6 +70,16 @@ public class FreeTextSearch extends JTextField {
     private boolean listIsHosted = false;
     private boolean hideListIfNotNeeded = true;
     private boolean refreshTextInSelection = false;
+    private Integer searchDelay = 300;
+    private Timer searchTimer;
+    private String pendingSearchString;
+    private SolaTask<List, Void> searchTask;
+    private final String searchTaskKey = "FreeTextSearch.search:" + UUID.randomUUID().toString();
+    // Sequence number of the last started search. Only accessed on the EDT.
+    private long searchSequence = 0;
+    private SearchResultCache searchCache = null;
+    private Integer searchResultLimit = null;
+    private long searchCacheMaxAge = 60000;
 
     public FreeTextSearch() {
         this.addKeyListener(
@@ -66,6 +91,15 @@ public class FreeTextSearch extends JTextField {
                     }
                 });
 
+        this.searchTimer = new Timer(this.searchDelay, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                startSearch();
+            }
+        });
+        this.searchTimer.setRepeats(false);
+
         this.list = new JList(new DefaultListModel());
         this.list.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
         LafManager.getInstance().setListProperties(list);
@@ -99,6 +133,8 @@ public class FreeTextSearch extends JTextField {
         String tmpSearchString = tmp.getText();
         if (tmpSearchString.length() < this.minimalSearchStringLength
                 && this.listScroll != null) {
+            this.cancelSearch();
+            this.searchString = tmpSearchString;
             if (this.hideListIfNotNeeded) {
                 this.listScroll.setVisible(false);
             }
@@ -125,13 +161,109 @@ public class FreeTextSearch extends JTextField {
         }
 
         if (!this.searchString.equals(tmpSearchString)) {
-            DefaultListModel model = (DefaultListModel) this.list.getModel();
-            this.onNewSearchString(tmpSearchString, model);
-            this.listScroll.setVisible(true);
+            this.scheduleSearch(tmpSearchString);
         }
         this.searchString = tmpSearchString;
     }
 
+    /**
+     * Schedules the search for the given string. The search is started once the debounce
+     * window has passed without further input.
+     */
+    private void scheduleSearch(String searchString) {
+        this.pendingSearchString = searchString;
+        if (this.searchDelay == null || this.searchDelay <= 0) {
+            this.searchTimer.stop();
+            this.startSearch();
+        } else {
+            this.searchTimer.setInitialDelay(this.searchDelay);
+            this.searchTimer.restart();
+        }
+    }
+
+    /**
+     * Starts the background search for the pending search string. Any search still in
+     * progress is cancelled.
+     */
+    private void startSearch() {
+        final String text = this.pendingSearchString;
+        if (text == null) {
+            return;
+        }
+        this.pendingSearchString = null;
+        final long sequence = ++this.searchSequence;
+
+        if (this.searchCache != null) {
+            List cachedResult = this.searchCache.get(text, this);
+            if (cachedResult != null) {
+                if (this.searchTask != null && !this.searchTask.isDone()) {
+                    this.searchTask.cancel(true);
+                }
+                this.applySearchResult(text, cachedResult);
+                return;
+            }
+        }
+
+        // The task of the previous search string has the same key and is cancelled
+        // by the TaskManager in favour of this one.
+        this.searchTask = new SolaTask<List, Void>() {
+
+            @Override
+            protected List doTask() {
+                return search(text);
+            }
+
+            @Override
+            protected void taskDone() {
+                // Ignore responses that arrive after a newer search has been started.
+                if (sequence != searchSequence) {
+                    return;
+                }
+                List result = get();
+                if (searchCache != null && result != null) {
+                    searchCache.put(text, result, isResultTruncated(result));
+                }
+                applySearchResult(text, result);
+            }
+        };
+        this.searchTask.setTaskKey(this.searchTaskKey);
+        this.searchTask.setLatestWins(true);
+        TaskManager.getInstance().runTask(this.searchTask);
+    }
+
+    /**
+     * Stops the debounce timer and cancels the search in progress, if any.
+     */
+    private void cancelSearch() {
+        this.searchTimer.stop();
+        this.pendingSearchString = null;
+        // Moving the sequence on makes sure a result that is already on its way is ignored.
+        this.searchSequence++;
+        if (this.searchTask != null && !this.searchTask.isDone()) {
+            this.searchTask.cancel(true);
+        }
+        this.searchTask = null;
+    }
+
+    /**
+     * Populates a new list model with the search results and sets it on the list in one step,
+     * so the list is repainted only once. Called on the EDT.
+     */
+    private void applySearchResult(String searchString, List searchResult) {
+        DefaultListModel model = new DefaultListModel();
+        if (searchResult == null) {
+            this.onNewSearchString(searchString, model);
+        } else {
+            for (Object element : searchResult) {
+                model.addElement(element);
+            }
+        }
+        this.list.setModel(model);
+        if (this.listScroll != null) {
+            this.listScroll.setVisible(true);
+        }
+    }
+
     private void listValueChanged(ListSelectionEvent e) {
         if (e.getValueIsAdjusting() == false) {
 
@@ -167,10 +299,69 @@ public class FreeTextSearch extends JTextField {
         this.onSelectionConfirmed();
     }
 
+    @Override
+    public void removeNotify() {
+        this.cancelSearch();
+        super.removeNotify();
+    }
+
     public void onSelectionConfirmed() {
         System.out.println("Selected object:" + this.getSelectedElement());
     }
 
+    /**
+     * Executes the search for the given string. This method is called on a background thread
+     * and must not access Swing components. Subclasses querying web services should override
+     * this method and return the list of objects to display. If <code>null</code> is returned,
+     * {@link #onNewSearchString(String, DefaultListModel)} is called on the EDT instead.
+     *
+     * @param searchString The string to search for.
+     */
+    protected List search(String searchString) {
+        return null;
+    }
+
+    /**
+     * Checks if the element matches the search string. Used to narrow cached results of a
+     * shorter search string. The default implementation checks that every word of the search
+     * string is contained in the text of the element, ignoring case. Subclasses which set
+     * {@link #setSearchResultLimit(Integer)} must override it if the server matches differently,
+     * otherwise narrowing drops or keeps the wrong elements.
+     *
+     * @param element The element from the cached results.
+     * @param searchString The new search string.
+     */
+    protected boolean matchesSearchString(Object element, String searchString) {
+        if (element == null) {
+            return false;
+        }
+        String text = element.toString() == null ? "" : element.toString().toLowerCase();
+        for (String word : searchString.trim().toLowerCase().split("\\s+")) {
+            if (!text.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the server might have returned only a part of the matching objects.
+     * Such results are not narrowed locally for longer search strings. If the server limit is
+     * not known, the results can not be proven complete and are always treated as truncated.
+     *
+     * @param result The results returned by {@link #search(String)}.
+     */
+    protected boolean isResultTruncated(List result) {
+        return this.searchResultLimit == null || result.size() >= this.searchResultLimit;
+    }
+
+    /**
+     * Populates the list model with the results for the search string. Called on the EDT
+     * when {@link #search(String)} is not overridden.
+     *
+     * @param searchString The string to search for.
+     * @param listModel New empty list model to populate.
+     */
     public void onNewSearchString(String searchString, DefaultListModel listModel) {
         listModel.addElement(searchString);
     }
@@ -202,6 +393,97 @@ public class FreeTextSearch extends JTextField {
         this.minimalSearchStringLength = minimalSearchStringLength;
     }
 
+    /**
+     * Returns the time in milliseconds to wait after the last key stroke before the search
+     * is started.
+     */
+    public Integer getSearchDelay() {
+        return searchDelay;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait after the last key stroke before the search is
+     * started. Zero or <code>null</code> starts the search immediately.
+     */
+    public void setSearchDelay(Integer searchDelay) {
+        this.searchDelay = searchDelay;
+    }
+
+    /**
+     * Returns true if the results of the recent searches are cached and narrowed locally.
+     */
+    public boolean isSearchCacheEnabled() {
+        return searchCache != null;
+    }
+
+    /**
+     * Enables or disables caching of the search results. Only results returned by
+     * {@link #search(String)} are cached.
+     */
+    public void setSearchCacheEnabled(boolean searchCacheEnabled) {
+        if (!searchCacheEnabled) {
+            this.searchCache = null;
+        } else if (this.searchCache == null) {
+            this.searchCache = new SearchResultCache(
+                    this.getClass().getSimpleName(), 20, this.searchCacheMaxAge);
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds the search results are cached.
+     */
+    public long getSearchCacheMaxAge() {
+        return searchCacheMaxAge;
+    }
+
+    /**
+     * Sets the time in milliseconds the search results are cached, 1 minute by default.
+     * Results older than that are fetched from the server again.
+     */
+    public void setSearchCacheMaxAge(long searchCacheMaxAge) {
+        this.searchCacheMaxAge = searchCacheMaxAge;
+        if (this.searchCache != null) {
+            this.searchCache.setMaxAge(searchCacheMaxAge);
+        }
+    }
+
+    /**
+     * Returns the search cache with its hit rate statistics or <code>null</code> if caching
+     * is disabled.
+     */
+    public SearchResultCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * Removes the cached search results. Should be called when the search criteria other
+     * than the search string are changed.
+     */
+    public void clearSearchCache() {
+        if (this.searchCache != null) {
+            this.searchCache.clear();
+        }
+        // A search still running was started with the old criteria, its results are dropped.
+        this.searchSequence++;
+    }
+
+    /**
+     * Returns the maximum number of results the server returns for one search.
+     */
+    public Integer getSearchResultLimit() {
+        return searchResultLimit;
+    }
+
+    /**
+     * Sets the maximum number of results the server returns for one search. Results below
+     * this limit are complete and are narrowed locally for longer search strings, using
+     * {@link #matchesSearchString(Object, String)}. <code>null</code>, the default, means the
+     * limit is not known and results are never narrowed.
+     */
+    public void setSearchResultLimit(Integer searchResultLimit) {
+        this.searchResultLimit = searchResultLimit;
+    }
+
     public JScrollPane getListScroll() {
         return listScroll;
     }
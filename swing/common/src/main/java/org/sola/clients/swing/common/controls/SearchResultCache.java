@@ -0,0 +1,231 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.controls;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps the results of the recent searches of a {@link FreeTextSearch} control. If the results
+ * for a search string are not in the cache, the results of a shorter search string which is a
+ * prefix of it can be narrowed locally, as long as that result list was not truncated by the
+ * server. Results older than the maximum age are fetched again, so objects changed in the
+ * meantime are not shown as they were. Hit rate counters are kept to help tuning the minimal
+ * search string length, the counters of all caches in use are listed by
+ * {@link #getCaches()}.
+ * <p>The cache is not synchronized and must be used on the EDT only.</p>
+ */
+public class SearchResultCache {
+
+    private static final Map<SearchResultCache, Boolean> caches =
+            new WeakHashMap<SearchResultCache, Boolean>();
+    private String name;
+    private int maxEntries;
+    private long maxAge;
+    private Map<String, CachedResult> entries;
+    private int hits = 0;
+    private int narrowedHits = 0;
+    private int misses = 0;
+
+    /** Holds the results of one search string. */
+    private static class CachedResult {
+
+        private List result;
+        private boolean truncated;
+        private long time;
+
+        CachedResult(List result, boolean truncated, long time) {
+            this.result = result;
+            this.truncated = truncated;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param name The name of the cache, shown with its statistics.
+     * @param maxEntries Maximum number of search strings to keep. The least recently used
+     * search string is removed when this number is exceeded.
+     * @param maxAge Time in milliseconds the results are kept.
+     */
+    public SearchResultCache(String name, final int maxEntries, long maxAge) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+        this.entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > SearchResultCache.this.maxEntries;
+            }
+        };
+        caches.put(this, Boolean.TRUE);
+    }
+
+    /**
+     * Returns the caches of the search controls, which are still in use.
+     */
+    public static List<SearchResultCache> getCaches() {
+        return new ArrayList<SearchResultCache>(caches.keySet());
+    }
+
+    /**
+     * Returns the results for the search string from the cache or <code>null</code> if
+     * they must be fetched from the server.
+     *
+     * @param searchString The search string.
+     * @param search The control used to filter the results of a shorter search string.
+     */
+    public List get(String searchString, FreeTextSearch search) {
+        String key = normalize(searchString);
+        long now = currentTime();
+        CachedResult cached = getEntry(key, now);
+        if (cached != null) {
+            hits++;
+            return cached.result;
+        }
+
+        // Find the longest search string the new one starts with
+        CachedResult superset = null;
+        for (int length = key.length() - 1; length > 0 && superset == null; length--) {
+            CachedResult candidate = getEntry(key.substring(0, length), now);
+            if (candidate != null && !candidate.truncated) {
+                superset = candidate;
+            }
+        }
+        if (superset == null) {
+            misses++;
+            return null;
+        }
+
+        List narrowed = new ArrayList();
+        for (Object element : superset.result) {
+            if (search.matchesSearchString(element, searchString)) {
+                narrowed.add(element);
+            }
+        }
+        // The narrowed results are as old as the results they are taken from
+        entries.put(key, new CachedResult(narrowed, false, superset.time));
+        narrowedHits++;
+        return narrowed;
+    }
+
+    /**
+     * Puts the results for the search string into the cache.
+     *
+     * @param searchString The search string.
+     * @param result Results returned by the server.
+     * @param truncated Indicates that the server returned only part of the matching objects,
+     * in which case the results are not used to narrow longer search strings.
+     */
+    public void put(String searchString, List result, boolean truncated) {
+        if (result == null) {
+            return;
+        }
+        entries.put(normalize(searchString), new CachedResult(result, truncated, currentTime()));
+    }
+
+    /**
+     * Returns the entry for the search string or <code>null</code> if there is none or it is
+     * expired. Expired entry is removed.
+     */
+    private CachedResult getEntry(String key, long now) {
+        CachedResult cached = entries.get(key);
+        if (cached != null && now - cached.time > maxAge) {
+            entries.remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private static long currentTime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /** Removes all results from the cache. Statistics are kept. */
+    public void clear() {
+        entries.clear();
+    }
+
+    /** Returns the name of the cache. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the time in milliseconds the results are kept. */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /** Sets the time in milliseconds the results are kept. */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /** Resets hit rate counters. */
+    public void resetStatistics() {
+        hits = 0;
+        narrowedHits = 0;
+        misses = 0;
+    }
+
+    /** Returns the number of searches answered with the results of the same search string. */
+    public int getHits() {
+        return hits;
+    }
+
+    /** Returns the number of searches answered by narrowing the results of a shorter string. */
+    public int getNarrowedHits() {
+        return narrowedHits;
+    }
+
+    /** Returns the number of searches sent to the server. */
+    public int getMisses() {
+        return misses;
+    }
+
+    /** Returns the share of searches answered from the cache, between 0 and 1. */
+    public double getHitRate() {
+        int total = hits + narrowedHits + misses;
+        return total == 0 ? 0 : (double) (hits + narrowedHits) / total;
+    }
+
+    private String normalize(String searchString) {
+        return searchString == null ? "" : searchString.trim().toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: hits=%s, narrowed=%s, misses=%s, hit rate=%.2f",
+                name, hits, narrowedHits, misses, getHitRate());
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sola.clients.swing.common.config.ConfigurationManager;
+import org.sola.clients.swing.common.config.EnvConfig;
+
+/**
+ * Task, consisting of several subtasks. Subtasks, which dependencies are
+ * completed, run concurrently on the bounded pool. Progress of the subtasks is
+ * rolled up into the progress of the composite task, so it is shown as one entry
+ * on the {@link TaskPanel}. If any subtask fails, remaining subtasks are cancelled
+ * and the exception is handled as the failure of the composite task.
+ * <p>The size of the pool can be set with {@link EnvConfig#SOLA_SUBTASK_POOL_SIZE}.</p>
+ */
+public class CompositeTask extends SolaTask<Void, Void> {
+
+    /** Default number of subtasks running at the same time. */
+    public static final int DEFAULT_POOL_SIZE = 4;
+    private static ExecutorService subtaskExecutor;
+    private final List<Subtask> subtasks = new ArrayList<Subtask>();
+
+    /**
+     * Part of the {@link CompositeTask}. Subtask is started after all its
+     * dependencies are completed.
+     */
+    public abstract static class Subtask<T> {
+
+        private String name;
+        private List<Subtask> dependencies;
+        private CompositeTask owner;
+        private volatile int progress;
+        private volatile T result;
+
+        /**
+         * Creates subtask.
+         *
+         * @param name Name of the subtask, used for logging and diagnostics.
+         * @param dependencies Subtasks, which must be completed before this one.
+         */
+        public Subtask(String name, Subtask... dependencies) {
+            this.name = name;
+            this.dependencies = Arrays.asList(dependencies);
+        }
+
+        /** Code logic to be executed. */
+        protected abstract T doTask();
+
+        public String getName() {
+            return name;
+        }
+
+        /** Returns the result of the subtask or null if it is not completed. */
+        public T getResult() {
+            return result;
+        }
+
+        /** Returns subtask progress from 0 to 100. */
+        public int getProgress() {
+            return progress;
+        }
+
+        /** Sets subtask progress and updates the progress of the composite task. */
+        protected void setProgress(int progress) {
+            this.progress = progress;
+            if (owner != null) {
+                owner.updateProgress();
+            }
+        }
+
+        /** Sets the message of the composite task. */
+        protected void setMessage(String message) {
+            if (owner != null) {
+                owner.setMessage(message);
+            }
+        }
+
+        List<Subtask> getDependencies() {
+            return dependencies;
+        }
+
+        private void run() {
+            result = doTask();
+            progress = 100;
+        }
+    }
+
+    /**
+     * Adds subtask. Dependencies of the subtask must be added before it.
+     *
+     * @param subtask Subtask to add.
+     * @return The added subtask.
+     */
+    public <S extends Subtask> S addSubtask(S subtask) {
+        for (Subtask dependency : (List<Subtask>) subtask.getDependencies()) {
+            if (!subtasks.contains(dependency)) {
+                throw new IllegalArgumentException("Dependency " + dependency.getName()
+                        + " of subtask " + subtask.getName() + " is not added.");
+            }
+        }
+        ((Subtask) subtask).owner = this;
+        subtasks.add(subtask);
+        return subtask;
+    }
+
+    /** Returns the list of subtasks. */
+    public List<Subtask> getSubtasks() {
+        return subtasks;
+    }
+
+    /** Runs subtasks. */
+    @Override
+    protected Void doTask() {
+        runSubtasks();
+        return null;
+    }
+
+    /**
+     * Runs subtasks on the pool, starting each subtask as soon as its
+     * dependencies are completed.
+     */
+    protected void runSubtasks() {
+        CompletionService<Subtask> completionService =
+                new ExecutorCompletionService<Subtask>(getSubtaskExecutor());
+        Map<Future<Subtask>, Subtask> running = new HashMap<Future<Subtask>, Subtask>();
+        List<Subtask> pending = new ArrayList<Subtask>(subtasks);
+        List<Subtask> completed = new ArrayList<Subtask>();
+
+        try {
+            startReadySubtasks(completionService, running, pending, completed);
+            while (!running.isEmpty()) {
+                Future<Subtask> future = completionService.take();
+                Subtask subtask = running.remove(future);
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    cancelSubtasks(running);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+                completed.add(subtask);
+                updateProgress();
+                startReadySubtasks(completionService, running, pending, completed);
+            }
+        } catch (InterruptedException e) {
+            // The composite task is cancelled
+            cancelSubtasks(running);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startReadySubtasks(CompletionService<Subtask> completionService,
+            Map<Future<Subtask>, Subtask> running, List<Subtask> pending, List<Subtask> completed) {
+        for (Subtask subtask : new ArrayList<Subtask>(pending)) {
+            if (completed.containsAll(subtask.getDependencies())) {
+                pending.remove(subtask);
+                final Subtask readySubtask = subtask;
+                running.put(completionService.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        readySubtask.run();
+                    }
+                }, readySubtask), readySubtask);
+            }
+        }
+    }
+
+    private void cancelSubtasks(Map<Future<Subtask>, Subtask> running) {
+        for (Future<Subtask> future : running.keySet()) {
+            future.cancel(true);
+        }
+        running.clear();
+    }
+
+    /** Sets the progress of the composite task as average progress of the subtasks. */
+    private void updateProgress() {
+        if (subtasks.isEmpty()) {
+            return;
+        }
+        int total = 0;
+        for (Subtask subtask : subtasks) {
+            total += subtask.getProgress();
+        }
+        setProgress(total / subtasks.size());
+    }
+
+    private static synchronized ExecutorService getSubtaskExecutor() {
+        if (subtaskExecutor == null) {
+            int poolSize = ConfigurationManager.getEnvConfigValue(
+                    EnvConfig.SOLA_SUBTASK_POOL_SIZE, DEFAULT_POOL_SIZE);
+            subtaskExecutor = Executors.newFixedThreadPool(Math.max(1, poolSize), new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CompositeTask-subtask-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return subtaskExecutor;
+    }
+}
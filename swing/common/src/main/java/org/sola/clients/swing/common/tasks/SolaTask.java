@@ -31,6 +31,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import javax.swing.SwingWorker;
 import javax.swing.SwingWorker.StateValue;
 
@@ -49,9 +50,26 @@ public abstract class SolaTask<T, V> {
     public static final String TASK_DONE = "DONE";
     public static final String TASK_PENDING = "PENDING";
     public static final String REMOVE_TASK = "removeTask";
+    public static final int PRIORITY_LOW = -10;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 10;
     private int progress;
     private String message;
     private String id = UUID.randomUUID().toString();
+    private int priority = PRIORITY_NORMAL;
+    private String category = TaskScheduler.CATEGORY_DEFAULT;
+    private boolean exclusive = false;
+    private String taskKey;
+    private boolean latestWins = false;
+    private boolean writeOperation = false;
+    private volatile T result;
+    private volatile Throwable failure;
+    private boolean coalesced = false;
+    private boolean coalescedCancelled = false;
+    private volatile long submitTime;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile Thread workerThread;
 
     /** Code logic to be executed. */
     protected abstract T doTask();
@@ -70,14 +88,27 @@ public abstract class SolaTask<T, V> {
      */
     protected void taskFailed(Throwable e) {
     }
+
+    /** 
+     * Code logic to be executed if the task is cancelled, either while queued or running. 
+     * Neither {@link #taskDone()} nor {@link #taskFailed(Throwable)} is called for a 
+     * cancelled task, so state set when the task was started must be reset here.
+     */
+    protected void taskCancelled() {
+    }
     
     /** 
-     * Executes task. 
+     * Executes task on the executor provided by {@link TaskExecutors}.
      * @see SwingWorker
      */
     public final void execute() {
         try {
-            task.execute();
+            Executor executor = TaskExecutors.getExecutor();
+            if (executor == null) {
+                task.execute();
+            } else {
+                executor.execute(task);
+            }
         } catch (Throwable e) {
             propertySupport.firePropertyChange(EXCEPTION_RISED, null, e);
         }
@@ -85,12 +116,12 @@ public abstract class SolaTask<T, V> {
 
     /** See {@link SwingWorker#isDone()}. */
     public final boolean isDone() {
-        return task.isDone();
+        return coalesced || task.isDone();
     }
 
     /** See {@link SwingWorker#isCancelled()}. */
     public final boolean isCancelled() {
-        return task.isCancelled();
+        return coalescedCancelled || task.isCancelled();
     }
 
     /** See {@link SwingWorker#cancel(boolean)}. */
@@ -100,6 +131,9 @@ public abstract class SolaTask<T, V> {
 
     /** See {@link SwingWorker#get()}. */
     public final T get() {
+        if (coalesced) {
+            return result;
+        }
         try {
             return task.get();
         } catch (Throwable e) {
@@ -136,11 +170,123 @@ public abstract class SolaTask<T, V> {
         propertySupport.firePropertyChange(EVENT_MESSAGE, oldValue, this.message);
     }
 
+    /**
+     * Returns task priority. Tasks with higher priority are started first by
+     * {@link TaskManager}.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /** Sets task priority. Has effect only if set before the task is submitted. */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns task category. The number of tasks of the same category running at
+     * the same time is limited by the {@link TaskScheduler}.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /** Sets task category. Has effect only if set before the task is submitted. */
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    /** Returns true if the task must not run together with any other task. */
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * Sets the task to run alone. Has effect only if set before the task is submitted.
+     */
+    public void setExclusive(boolean exclusive) {
+        this.exclusive = exclusive;
+    }
+
     /** See {@link SwingWorker#getState()}. */
     public final StateValue getState() {
         return task.getState();
     }
 
+    /**
+     * Returns the key identifying the logical operation of the task, e.g. opening
+     * of a certain application. {@link TaskManager} runs only one task with the
+     * same key at a time. Returns <code>null</code> by default, meaning the task
+     * is always executed.
+     */
+    public String getTaskKey() {
+        return taskKey;
+    }
+
+    /** Sets the key identifying the logical operation of the task. */
+    public void setTaskKey(String taskKey) {
+        this.taskKey = taskKey;
+    }
+
+    /**
+     * Returns true if the task with the same key already submitted should be cancelled
+     * in favour of this task. Used by the refresh-style tasks. Otherwise this task is not
+     * executed but gets the result of the task already submitted.
+     */
+    public boolean isLatestWins() {
+        return latestWins;
+    }
+
+    /** Sets latest wins mode for the tasks with the same key. */
+    public void setLatestWins(boolean latestWins) {
+        this.latestWins = latestWins;
+    }
+
+    /** Returns true if the task saves data, see {@link #setWriteOperation(String, String)}. */
+    public boolean isWriteOperation() {
+        return writeOperation;
+    }
+
+    /**
+     * Marks the task as saving the given object. The task runs alone and a task of the
+     * same operation on the same object submitted meanwhile (e.g. double click on the
+     * Save button) is not executed but gets the result of this task. A running write
+     * task is not interrupted by {@link TaskManager#cancelAllTasks()}.
+     *
+     * @param operation Name of the operation, e.g. <code>ApplicationPanel.save</code>.
+     * @param objectId ID of the object being saved.
+     */
+    public void setWriteOperation(String operation, String objectId) {
+        this.writeOperation = true;
+        setExclusive(true);
+        setTaskKey(operation + ":" + objectId);
+    }
+
+    /**
+     * Completes this task with the outcome of the task with the same key, instead of
+     * executing it. Calls {@link #taskDone()} or {@link #taskFailed(Throwable)} as if the
+     * task was executed. Called by the {@link TaskManager} on the EDT.
+     */
+    void completeWith(SolaTask<T, ?> source) {
+        coalesced = true;
+        if (source.isCancelled()) {
+            coalescedCancelled = true;
+            taskCancelled();
+            return;
+        }
+        if (source.failure != null) {
+            taskFailed(source.failure);
+            return;
+        }
+        result = source.result;
+        taskDone();
+    }
+
+    /** Marks the time when the task is submitted to the {@link TaskManager}. */
+    void markSubmitted() {
+        submitTime = System.nanoTime();
+    }
+
     /** Registers property change listener. */
     public void addPropertyChangeListener(PropertyChangeListener listener) {
         propertySupport.addPropertyChangeListener(listener);
@@ -161,19 +307,31 @@ public abstract class SolaTask<T, V> {
             
             @Override
             protected T doInBackground() throws Exception {
+                startTime = System.nanoTime();
+                workerThread = Thread.currentThread();
                 try {
                     exception = null;
-                    return doTask();
+                    result = doTask();
+                    return result;
                 } catch (Throwable e) {
                     exception = e;
+                    failure = e;
                     return null;
+                } finally {
+                    endTime = System.nanoTime();
                 }
             }
 
             @Override
             protected void done() {
+                long doneStartTime = System.nanoTime();
                 try {
                     propertySupport.firePropertyChange(REMOVE_TASK, false, true);
+                    if (isCancelled()) {
+                        taskCancelled();
+                        return;
+                    }
+                    doneStartTime = System.nanoTime();
                     if(exception != null){
                         try {
                             propertySupport.firePropertyChange(EXCEPTION_RISED, null, exception);
@@ -185,6 +343,11 @@ public abstract class SolaTask<T, V> {
                     taskDone();
                 } catch (Throwable e) {
                     propertySupport.firePropertyChange(EXCEPTION_RISED, null, e);
+                } finally {
+                    if (!isCancelled()) {
+                        TaskStatistics.getInstance().record(SolaTask.this, submitTime, startTime,
+                                endTime, doneStartTime, System.nanoTime(), workerThread);
+                    }
                 }
             }
         };
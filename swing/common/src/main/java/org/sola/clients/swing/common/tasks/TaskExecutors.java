@@ -0,0 +1,178 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.sola.clients.swing.common.config.ConfigurationManager;
+import org.sola.clients.swing.common.config.EnvConfig;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Provides executors, running the background part of the {@link SolaTask}s. The
+ * execution mode is selected with {@link EnvConfig#SOLA_TASK_EXECUTOR} and can be
+ * changed with {@link #setMode(Mode)}.
+ */
+public class TaskExecutors {
+
+    /** Execution modes of the tasks. */
+    public enum Mode {
+
+        /** Tasks are executed by the shared {@link javax.swing.SwingWorker} pool of 10 threads. */
+        SWING_WORKER,
+        /** Tasks are executed by the bounded pool of platform threads. */
+        PLATFORM_POOL,
+        /** Tasks are executed by the bigger pool, dedicated to the tasks blocking on I/O. */
+        IO_POOL,
+        /**
+         * Each task is executed by the new virtual thread. Falls back to
+         * {@link #IO_POOL} if the runtime doesn't support virtual threads.
+         */
+        VIRTUAL_THREAD;
+    }
+    /** Default size of the {@link Mode#PLATFORM_POOL}. */
+    public static final int DEFAULT_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    /** Default size of the {@link Mode#IO_POOL}. */
+    public static final int DEFAULT_IO_POOL_SIZE = 64;
+    private static Mode mode;
+    private static ExecutorService platformPool;
+    private static ExecutorService ioPool;
+    private static ExecutorService virtualThreadExecutor;
+    private static boolean virtualThreadsChecked = false;
+
+    private TaskExecutors() {
+    }
+
+    /**
+     * Returns current execution mode. If not set, it is taken from the
+     * configuration, {@link Mode#SWING_WORKER} by default.
+     */
+    public static synchronized Mode getMode() {
+        if (mode == null) {
+            mode = Mode.SWING_WORKER;
+            String configuredMode = ConfigurationManager.getEnvConfigValue(EnvConfig.SOLA_TASK_EXECUTOR);
+            if (configuredMode != null && !configuredMode.trim().equals("")) {
+                try {
+                    mode = Mode.valueOf(configuredMode.trim().toUpperCase());
+                } catch (IllegalArgumentException ex) {
+                    LogUtility.log("Unknown task executor mode " + configuredMode
+                            + ", using " + Mode.SWING_WORKER, Level.WARNING);
+                }
+            }
+        }
+        return mode;
+    }
+
+    /** Sets execution mode for the tasks executed after the call. */
+    public static synchronized void setMode(Mode mode) {
+        TaskExecutors.mode = mode;
+    }
+
+    /** Returns true if the runtime supports virtual threads. */
+    public static synchronized boolean isVirtualThreadSupported() {
+        return getVirtualThreadExecutor() != null;
+    }
+
+    /**
+     * Returns the executor for the current mode or null if the task must be
+     * executed by the {@link javax.swing.SwingWorker} pool.
+     */
+    public static synchronized Executor getExecutor() {
+        switch (getMode()) {
+            case PLATFORM_POOL:
+                return getPlatformPool();
+            case IO_POOL:
+                return getIoPool();
+            case VIRTUAL_THREAD:
+                ExecutorService executor = getVirtualThreadExecutor();
+                return executor != null ? executor : getIoPool();
+            default:
+                return null;
+        }
+    }
+
+    private static ExecutorService getPlatformPool() {
+        if (platformPool == null) {
+            platformPool = createPool("SolaTask-pool-",
+                    ConfigurationManager.getEnvConfigValue(EnvConfig.SOLA_TASK_POOL_SIZE, DEFAULT_POOL_SIZE));
+        }
+        return platformPool;
+    }
+
+    private static ExecutorService getIoPool() {
+        if (ioPool == null) {
+            ioPool = createPool("SolaTask-io-",
+                    ConfigurationManager.getEnvConfigValue(EnvConfig.SOLA_TASK_IO_POOL_SIZE, DEFAULT_IO_POOL_SIZE));
+        }
+        return ioPool;
+    }
+
+    /**
+     * Creates executor with virtual thread per task, using reflection to run on
+     * the older runtimes.
+     */
+    private static ExecutorService getVirtualThreadExecutor() {
+        if (!virtualThreadsChecked) {
+            virtualThreadsChecked = true;
+            try {
+                virtualThreadExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception ex) {
+                LogUtility.log("Virtual threads are not supported by the runtime", Level.INFO);
+            }
+        }
+        return virtualThreadExecutor;
+    }
+
+    private static ExecutorService createPool(final String namePrefix, int size) {
+        size = Math.max(1, size);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
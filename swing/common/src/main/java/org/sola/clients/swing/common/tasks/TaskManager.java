@@ -33,19 +33,29 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker.StateValue;
 import org.sola.clients.swing.common.DefaultExceptionHandler;
-import org.sola.common.messaging.ClientMessage;
-import org.sola.common.messaging.MessageUtility;
 
 /**
  * This singleton class provides methods to run new tasks and monitor them to
- * indicate long running processes.
+ * indicate long running processes. Tasks are queued and started by the
+ * {@link TaskScheduler}, several tasks can run at the same time. Tasks having
+ * the same {@link SolaTask#getTaskKey() key} are coalesced, only one of them is
+ * executed at a time.
  */
 public class TaskManager {
 
+    /** Event fired when the number of active tasks is changed. */
+    public static final String EVENT_ACTIVE_TASKS = "activeTasks";
     private HashMap<String, SolaTask> tasks;
+    private HashMap<String, SolaTask> tasksByKey;
+    private HashMap<String, List<SolaTask>> waiters;
+    private TaskScheduler scheduler;
+    private PropertyChangeListener taskListener;
     protected final PropertyChangeSupport propertySupport = new PropertyChangeSupport(this);
 
     /**
@@ -53,6 +63,16 @@ public class TaskManager {
      */
     private TaskManager() {
         tasks = new HashMap<String, SolaTask>();
+        tasksByKey = new HashMap<String, SolaTask>();
+        waiters = new HashMap<String, List<SolaTask>>();
+        scheduler = new TaskScheduler();
+        taskListener = new PropertyChangeListener() {
+
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                handleTaskEvents(evt);
+            }
+        };
     }
 
     /**
@@ -71,48 +91,162 @@ public class TaskManager {
     }
 
     /**
-     * Runs new task.
+     * Runs new task. The task is queued if it can't be started immediately. If
+     * the task with the same key is already submitted, the new task either waits
+     * for its result or, in case of {@link SolaTask#isLatestWins() latest wins}
+     * mode, cancels it.
      *
      * @param task Task to run.
+     * @return false if the task is null or already submitted.
      */
     public boolean runTask(SolaTask task) {
-        if (task == null || isTaskRunning(task.getId())) {
+        if (task == null) {
             return false;
         }
+        int numberOfTasks;
+        SolaTask staleTask = null;
+        synchronized (this) {
+            if (tasks.containsKey(task.getId())) {
+                return false;
+            }
+            String key = task.getTaskKey();
+            if (key != null) {
+                SolaTask inFlightTask = tasksByKey.get(key);
+                if (inFlightTask != null && inFlightTask != task) {
+                    if (!task.isLatestWins()) {
+                        List<SolaTask> keyWaiters = waiters.get(key);
+                        if (keyWaiters == null) {
+                            keyWaiters = new ArrayList<SolaTask>();
+                            waiters.put(key, keyWaiters);
+                        }
+                        keyWaiters.add(task);
+                        return true;
+                    }
+                    staleTask = inFlightTask;
+                }
+                tasksByKey.put(key, task);
+            }
+            tasks.put(task.getId(), task);
+            numberOfTasks = tasks.size();
+        }
+        if (staleTask != null) {
+            staleTask.cancel(true);
+        }
+        task.markSubmitted();
+        task.addPropertyChangeListener(taskListener);
+        propertySupport.firePropertyChange(EVENT_ACTIVE_TASKS, numberOfTasks - 1, numberOfTasks);
+        startTasks(scheduler.submit(task));
+        return true;
+    }
 
-        if (getNumberOfActiveTasks() > 0) {
-            MessageUtility.displayMessage(ClientMessage.GENERAL_ACTIVE_TASKS_EXIST,
-                    new Object[]{getNumberOfActiveTasks()});
-            return false;
+    /**
+     * Cancels the task. A queued task is removed from the queue, a running task
+     * is interrupted.
+     *
+     * @param taskId The ID of the task to cancel.
+     */
+    public void cancelTask(String taskId) {
+        SolaTask task;
+        synchronized (this) {
+            task = tasks.get(taskId);
         }
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels all queued and running tasks, except the running
+     * {@link SolaTask#isWriteOperation() write tasks}, which are left to complete.
+     */
+    public void cancelAllTasks() {
+        List<SolaTask> activeTasks;
+        synchronized (this) {
+            activeTasks = new ArrayList<SolaTask>(tasks.values());
+        }
+        for (SolaTask task : activeTasks) {
+            if (task.isWriteOperation() && task.getState() != StateValue.PENDING) {
+                continue;
+            }
+            task.cancel(true);
+        }
+    }
+
+    private void startTasks(List<SolaTask> tasksToStart) {
+        for (SolaTask task : tasksToStart) {
+            task.execute();
+        }
+    }
+
+    /** Removes the task from the list of active tasks and starts queued tasks. */
+    private void removeTask(SolaTask task) {
+        if (task == null) {
+            return;
+        }
+        int numberOfTasks;
+        List<SolaTask> keyWaiters = null;
+        synchronized (this) {
+            if (tasks.remove(task.getId()) == null) {
+                return;
+            }
+            numberOfTasks = tasks.size();
+            String key = task.getTaskKey();
+            if (key != null && tasksByKey.get(key) == task) {
+                tasksByKey.remove(key);
+                keyWaiters = waiters.remove(key);
+            }
+        }
+        startTasks(scheduler.finished(task));
+        propertySupport.firePropertyChange(EVENT_ACTIVE_TASKS, numberOfTasks + 1, numberOfTasks);
+        if (keyWaiters != null) {
+            completeWaiters(task, keyWaiters);
+        }
+    }
 
-        task.addPropertyChangeListener(new PropertyChangeListener() {
+    /**
+     * Hands the outcome of the finished task to the tasks with the same key,
+     * waiting for it. Runs on the EDT after the task itself is completed.
+     */
+    private void completeWaiters(final SolaTask task, final List<SolaTask> keyWaiters) {
+        SwingUtilities.invokeLater(new Runnable() {
 
             @Override
-            public void propertyChange(PropertyChangeEvent evt) {
-                handleTaskEvents(evt);
+            public void run() {
+                for (SolaTask waiter : keyWaiters) {
+                    try {
+                        waiter.completeWith(task);
+                    } catch (Throwable e) {
+                        handleException(e);
+                    }
+                }
             }
         });
-        tasks.put(task.getId(), task);
-        task.execute();
-        return true;
+    }
+
+    private void handleException(Throwable e) {
+        UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        if (defaultHandler != null) {
+            defaultHandler.uncaughtException(Thread.currentThread(), e);
+        } else {
+            DefaultExceptionHandler.handleException(e);
+        }
     }
 
     private void handleTaskEvents(PropertyChangeEvent evt) {
-        String taskId = null;
+        SolaTask task = null;
         if (evt.getSource() instanceof SolaTask) {
-            taskId = ((SolaTask) evt.getSource()).getId();
+            task = (SolaTask) evt.getSource();
         }
 
         if (evt.getPropertyName().equals(SolaTask.EVENT_STATE)) {
             StateValue state = (StateValue) evt.getNewValue();
             if (state.name().equalsIgnoreCase(SolaTask.TASK_DONE)) {
-                tasks.remove(taskId);
+                removeTask(task);
             }
         }
 
         if (evt.getPropertyName().equals(SolaTask.REMOVE_TASK)) {
-            tasks.remove(taskId);
+            removeTask(task);
         }
 
         if (evt.getPropertyName().equals(SolaTask.EXCEPTION_RISED)) {
@@ -124,30 +258,82 @@ public class TaskManager {
                     DefaultExceptionHandler.handleException((Throwable)evt.getNewValue());
                 }
             }
-            if (taskId != null) {
-                tasks.remove(taskId);
-            }
+            removeTask(task);
         }
 
         propertySupport.firePropertyChange(evt);
     }
 
     /**
-     * Returns number of active tasks.
+     * Returns number of active tasks, both running and queued.
      */
-    public int getNumberOfActiveTasks() {
+    public synchronized int getNumberOfActiveTasks() {
         return tasks.size();
     }
 
     /**
-     * Returns true if task is already running.
+     * Returns number of tasks waiting for the result of the task with the same key.
+     */
+    public synchronized int getNumberOfCoalescedTasks() {
+        int count = 0;
+        for (List<SolaTask> keyWaiters : waiters.values()) {
+            count += keyWaiters.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of running tasks.
+     */
+    public int getNumberOfRunningTasks() {
+        return scheduler.getNumberOfRunningTasks();
+    }
+
+    /**
+     * Returns true if task is already running or queued.
      *
      * @param taskId The ID of the task to check.
      */
-    public boolean isTaskRunning(String taskId) {
+    public synchronized boolean isTaskRunning(String taskId) {
         return tasks.containsKey(taskId);
     }
 
+    /**
+     * Returns the average progress of the running tasks, reporting their progress,
+     * or -1 if none of them does.
+     */
+    public int getAggregateProgress() {
+        int total = 0;
+        int count = 0;
+        for (SolaTask task : scheduler.getRunningTasks()) {
+            if (task.getProgress() > 0) {
+                total += task.getProgress();
+                count++;
+            }
+        }
+        return count == 0 ? -1 : total / count;
+    }
+
+    /**
+     * Returns the message of the most recently started running task, which has a message.
+     */
+    public String getActiveTaskMessage() {
+        String message = null;
+        for (SolaTask task : scheduler.getRunningTasks()) {
+            if (task.getMessage() != null) {
+                message = task.getMessage();
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Returns the scheduler to configure category limits.
+     */
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * Registers property change listener.
      */
@@ -31,7 +31,9 @@ package org.sola.clients.swing.common.tasks;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.text.MessageFormat;
 import java.util.ResourceBundle;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -68,46 +70,90 @@ public class TaskPanel extends javax.swing.JPanel {
         statusAnimationLabel.setIcon(idleIcon);
         pnlProgressBar.setVisible(false);
 
+        activeTasksText = resourceBundle.getString("StatusBar.activeTasks");
+
         TaskManager.getInstance().addPropertyChangeListener(new java.beans.PropertyChangeListener() {
 
             @Override
-            public void propertyChange(java.beans.PropertyChangeEvent evt) {
-                String propertyName = evt.getPropertyName();
-
-                if (propertyName.equals(SolaTask.EVENT_STATE)) {
-                    StateValue state = (StateValue) evt.getNewValue();
-                    if (state.name().equals(SolaTask.TASK_STARTED)) {
-                        pnlProgressBar.setVisible(true);
-                        if (!busyIconTimer.isRunning()) {
-                            statusAnimationLabel.setIcon(busyIcons[0]);
-                            busyIconIndex = 0;
-                            busyIconTimer.start();
+            public void propertyChange(final java.beans.PropertyChangeEvent evt) {
+                // Tasks fire events from the background threads
+                if (SwingUtilities.isEventDispatchThread()) {
+                    handleTaskEvent(evt);
+                } else {
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            handleTaskEvent(evt);
                         }
-                        progressBar.setIndeterminate(true);
-                    }
-                    if (state.name().equals(SolaTask.TASK_DONE)) {
-                        stopAnimation();
-                    }
-                } else if (SolaTask.REMOVE_TASK.equals(propertyName)) {
-                    stopAnimation();
-                } else if (SolaTask.EVENT_MESSAGE.equals(propertyName)) {
-                    String text = (String) (evt.getNewValue());
-                    statusMessageLabel.setText((text == null) ? "" : text);
-                } else if (SolaTask.EVENT_PROGRESS.equals(propertyName)) {
-                    int value = (Integer) (evt.getNewValue());
-                    progressBar.setIndeterminate(false);
-                    progressBar.setValue(value);
+                    });
                 }
             }
+        });
+    }
 
-            private void stopAnimation() {
-                busyIconTimer.stop();
-                statusMessageLabel.setText(null);
-                statusAnimationLabel.setIcon(idleIcon);
-                pnlProgressBar.setVisible(false);
-                progressBar.setValue(0);
+    private void handleTaskEvent(java.beans.PropertyChangeEvent evt) {
+        String propertyName = evt.getPropertyName();
+
+        if (propertyName.equals(SolaTask.EVENT_STATE)) {
+            StateValue state = (StateValue) evt.getNewValue();
+            if (state.name().equals(SolaTask.TASK_STARTED)) {
+                pnlProgressBar.setVisible(true);
+                if (!busyIconTimer.isRunning()) {
+                    statusAnimationLabel.setIcon(busyIcons[0]);
+                    busyIconIndex = 0;
+                    busyIconTimer.start();
+                }
+                updateProgress();
             }
-        });
+            if (state.name().equals(SolaTask.TASK_DONE)) {
+                updateActiveTasks();
+            }
+        } else if (SolaTask.REMOVE_TASK.equals(propertyName)
+                || TaskManager.EVENT_ACTIVE_TASKS.equals(propertyName)) {
+            updateActiveTasks();
+        } else if (SolaTask.EVENT_MESSAGE.equals(propertyName)) {
+            String text = (String) (evt.getNewValue());
+            statusMessageLabel.setText((text == null) ? "" : text);
+        } else if (SolaTask.EVENT_PROGRESS.equals(propertyName)) {
+            updateProgress();
+        }
+    }
+
+    /**
+     * Shows the progress of the remaining tasks or stops animation if there are
+     * no more running tasks.
+     */
+    private void updateActiveTasks() {
+        TaskManager taskManager = TaskManager.getInstance();
+        progressBar.setToolTipText(MessageFormat.format(activeTasksText,
+                taskManager.getNumberOfActiveTasks()));
+        if (taskManager.getNumberOfRunningTasks() < 1) {
+            stopAnimation();
+        } else {
+            String text = taskManager.getActiveTaskMessage();
+            statusMessageLabel.setText((text == null) ? "" : text);
+            updateProgress();
+        }
+    }
+
+    /** Shows the average progress of the running tasks. */
+    private void updateProgress() {
+        int value = TaskManager.getInstance().getAggregateProgress();
+        if (value < 0) {
+            progressBar.setIndeterminate(true);
+        } else {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(value);
+        }
+    }
+
+    private void stopAnimation() {
+        busyIconTimer.stop();
+        statusMessageLabel.setText(null);
+        statusAnimationLabel.setIcon(idleIcon);
+        pnlProgressBar.setVisible(false);
+        progressBar.setValue(0);
     }
 
     @SuppressWarnings("unchecked")
@@ -117,6 +163,7 @@ public class TaskPanel extends javax.swing.JPanel {
         pnlProgressBar = new javax.swing.JPanel();
         statusAnimationLabel = new javax.swing.JLabel();
         progressBar = new javax.swing.JProgressBar();
+        btnCancel = new javax.swing.JButton();
         jPanel1 = new javax.swing.JPanel();
         statusMessageLabel = new javax.swing.JLabel();
 
@@ -131,6 +178,18 @@ public class TaskPanel extends javax.swing.JPanel {
 
         progressBar.setName("progressBar"); // NOI18N
 
+        java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/common/tasks/Bundle"); // NOI18N
+        btnCancel.setText(bundle.getString("TaskPanel.btnCancel.text")); // NOI18N
+        btnCancel.setToolTipText(bundle.getString("TaskPanel.btnCancel.toolTipText")); // NOI18N
+        btnCancel.setFocusable(false);
+        btnCancel.setMargin(new java.awt.Insets(0, 4, 0, 4));
+        btnCancel.setName("btnCancel"); // NOI18N
+        btnCancel.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnCancelActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout pnlProgressBarLayout = new javax.swing.GroupLayout(pnlProgressBar);
         pnlProgressBar.setLayout(pnlProgressBarLayout);
         pnlProgressBarLayout.setHorizontalGroup(
@@ -138,18 +197,20 @@ public class TaskPanel extends javax.swing.JPanel {
             .addGroup(pnlProgressBarLayout.createSequentialGroup()
                 .addComponent(progressBar, javax.swing.GroupLayout.PREFERRED_SIZE, 177, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(btnCancel)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(statusAnimationLabel, javax.swing.GroupLayout.DEFAULT_SIZE, 20, Short.MAX_VALUE))
         );
         pnlProgressBarLayout.setVerticalGroup(
             pnlProgressBarLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addComponent(statusAnimationLabel, javax.swing.GroupLayout.DEFAULT_SIZE, 14, Short.MAX_VALUE)
             .addComponent(progressBar, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+            .addComponent(btnCancel, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
         );
 
         jPanel1.setName("jPanel1"); // NOI18N
 
         statusMessageLabel.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
-        java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/common/tasks/Bundle"); // NOI18N
         statusMessageLabel.setText(bundle.getString("TaskPanel.statusMessageLabel.text")); // NOI18N
         statusMessageLabel.setHorizontalTextPosition(javax.swing.SwingConstants.RIGHT);
         statusMessageLabel.setName("statusMessageLabel"); // NOI18N
@@ -180,7 +241,13 @@ public class TaskPanel extends javax.swing.JPanel {
             .addComponent(pnlProgressBar, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
         );
     }// </editor-fold>//GEN-END:initComponents
+
+    private void btnCancelActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnCancelActionPerformed
+        TaskManager.getInstance().cancelAllTasks();
+    }//GEN-LAST:event_btnCancelActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton btnCancel;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JPanel pnlProgressBar;
     private javax.swing.JProgressBar progressBar;
@@ -191,4 +258,5 @@ public class TaskPanel extends javax.swing.JPanel {
     private final Icon idleIcon;
     private final Icon[] busyIcons = new Icon[15];
     private int busyIconIndex = 0;
+    private final String activeTasksText;
 }
@@ -0,0 +1,208 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Decides which of the submitted tasks can be started. Tasks are taken in the order of their
+ * priority and submission. The number of tasks running at the same time is limited per task
+ * category. An exclusive task starts only when no other task is running, and no other task
+ * starts while it runs or waits at the head of the queue.
+ * <p>The scheduler does not execute tasks itself. {@link #submit(SolaTask)} and
+ * {@link #finished(SolaTask)} return the tasks which must be started by the caller.</p>
+ */
+public class TaskScheduler {
+
+    /** Category of the tasks which don't specify any. */
+    public static final String CATEGORY_DEFAULT = "default";
+    /** Category of the tasks loading map data. */
+    public static final String CATEGORY_MAP = "map";
+    /** Category of the tasks running without user waiting for them. */
+    public static final String CATEGORY_BACKGROUND = "background";
+    private static final int DEFAULT_CATEGORY_LIMIT = 3;
+
+    /** Holds a task waiting in the queue. */
+    private static class QueuedTask {
+
+        private SolaTask task;
+        private long sequence;
+
+        QueuedTask(SolaTask task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+    private TreeSet<QueuedTask> queue;
+    private Map<String, SolaTask> running;
+    private Map<String, Integer> categoryLimits;
+    private Map<String, Integer> categoryCounts;
+    private int defaultCategoryLimit = DEFAULT_CATEGORY_LIMIT;
+    private SolaTask exclusiveTask;
+    private long sequence = 0;
+
+    public TaskScheduler() {
+        queue = new TreeSet<QueuedTask>(new Comparator<QueuedTask>() {
+
+            @Override
+            public int compare(QueuedTask t1, QueuedTask t2) {
+                if (t1.task.getPriority() != t2.task.getPriority()) {
+                    return t1.task.getPriority() > t2.task.getPriority() ? -1 : 1;
+                }
+                return t1.sequence < t2.sequence ? -1 : (t1.sequence == t2.sequence ? 0 : 1);
+            }
+        });
+        running = new HashMap<String, SolaTask>();
+        categoryCounts = new HashMap<String, Integer>();
+        categoryLimits = new HashMap<String, Integer>();
+        categoryLimits.put(CATEGORY_MAP, 2);
+        categoryLimits.put(CATEGORY_BACKGROUND, 2);
+    }
+
+    /**
+     * Adds the task to the queue.
+     *
+     * @return The list of tasks to start.
+     */
+    public synchronized List<SolaTask> submit(SolaTask task) {
+        queue.add(new QueuedTask(task, sequence++));
+        return dispatch();
+    }
+
+    /**
+     * Removes completed or cancelled task from the scheduler.
+     *
+     * @return The list of tasks to start.
+     */
+    public synchronized List<SolaTask> finished(SolaTask task) {
+        for (Iterator<QueuedTask> it = queue.iterator(); it.hasNext();) {
+            if (it.next().task == task) {
+                it.remove();
+                return dispatch();
+            }
+        }
+        if (running.remove(task.getId()) != null) {
+            String category = getCategory(task);
+            categoryCounts.put(category, getCategoryCount(category) - 1);
+            if (exclusiveTask == task) {
+                exclusiveTask = null;
+            }
+        }
+        return dispatch();
+    }
+
+    /** Takes the tasks which can be started from the queue. */
+    private List<SolaTask> dispatch() {
+        List<SolaTask> toStart = new ArrayList<SolaTask>();
+        if (exclusiveTask != null) {
+            return toStart;
+        }
+        for (Iterator<QueuedTask> it = queue.iterator(); it.hasNext();) {
+            SolaTask task = it.next().task;
+            if (task.isExclusive()) {
+                // Tasks queued after the exclusive one wait until it is completed
+                if (running.isEmpty()) {
+                    it.remove();
+                    exclusiveTask = task;
+                    markRunning(task);
+                    toStart.add(task);
+                }
+                break;
+            }
+            String category = getCategory(task);
+            if (getCategoryCount(category) < getCategoryLimit(category)) {
+                it.remove();
+                markRunning(task);
+                toStart.add(task);
+            }
+        }
+        return toStart;
+    }
+
+    private void markRunning(SolaTask task) {
+        String category = getCategory(task);
+        running.put(task.getId(), task);
+        categoryCounts.put(category, getCategoryCount(category) + 1);
+    }
+
+    private String getCategory(SolaTask task) {
+        return task.getCategory() == null ? CATEGORY_DEFAULT : task.getCategory();
+    }
+
+    private int getCategoryCount(String category) {
+        Integer count = categoryCounts.get(category);
+        return count == null ? 0 : count;
+    }
+
+    /** Returns the maximum number of tasks of the category running at the same time. */
+    public synchronized int getCategoryLimit(String category) {
+        Integer limit = categoryLimits.get(category);
+        return limit == null ? defaultCategoryLimit : limit;
+    }
+
+    /**
+     * Sets the maximum number of tasks of the category running at the same time.
+     * Queued tasks are not started before the next task is submitted or finished.
+     */
+    public synchronized void setCategoryLimit(String category, int limit) {
+        categoryLimits.put(category, Math.max(1, limit));
+    }
+
+    /** Returns the limit for the categories without explicit limit. */
+    public synchronized int getDefaultCategoryLimit() {
+        return defaultCategoryLimit;
+    }
+
+    /** Sets the limit for the categories without explicit limit. */
+    public synchronized void setDefaultCategoryLimit(int defaultCategoryLimit) {
+        this.defaultCategoryLimit = Math.max(1, defaultCategoryLimit);
+    }
+
+    /** Returns the list of running tasks. */
+    public synchronized List<SolaTask> getRunningTasks() {
+        return new ArrayList<SolaTask>(running.values());
+    }
+
+    /** Returns the number of running tasks. */
+    public synchronized int getNumberOfRunningTasks() {
+        return running.size();
+    }
+
+    /** Returns the number of tasks waiting in the queue. */
+    public synchronized int getNumberOfQueuedTasks() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects timings of the {@link SolaTask}s per task class. For each task the
+ * time waited in the queue, the time of {@link SolaTask#doTask()} and the time of
+ * {@link SolaTask#taskDone()} are recorded into {@link TaskHistogram}s. Recent tasks
+ * are also kept as trace events, which can be exported into the Chrome trace event
+ * format and opened in chrome://tracing.
+ */
+public class TaskStatistics {
+
+    /** Maximum number of trace events kept in memory. */
+    public static final int MAX_TRACE_EVENTS = 10000;
+    private final Map<String, TaskTimings> timings = new TreeMap<String, TaskTimings>();
+    private final LinkedList<TraceEvent> traceEvents = new LinkedList<TraceEvent>();
+    private final long startTime = System.nanoTime();
+    private volatile boolean enabled = true;
+    private long asyncIdSequence = 0;
+
+    /**
+     * Timings of one task class.
+     */
+    public static class TaskTimings {
+
+        private String taskName;
+        private TaskHistogram queueWait = new TaskHistogram();
+        private TaskHistogram execution = new TaskHistogram();
+        private TaskHistogram completion = new TaskHistogram();
+
+        TaskTimings(String taskName) {
+            this.taskName = taskName;
+        }
+
+        /** Returns the name of the task class. */
+        public String getTaskName() {
+            return taskName;
+        }
+
+        /** Returns histogram of the time spent in the queue, in microseconds. */
+        public TaskHistogram getQueueWait() {
+            return queueWait;
+        }
+
+        /** Returns histogram of the {@link SolaTask#doTask()} durations, in microseconds. */
+        public TaskHistogram getExecution() {
+            return execution;
+        }
+
+        /** Returns histogram of the {@link SolaTask#taskDone()} durations, in microseconds. */
+        public TaskHistogram getCompletion() {
+            return completion;
+        }
+    }
+
+    private static class TraceEvent {
+
+        String name;
+        String phase;
+        String threadName;
+        long threadId;
+        long timestamp;
+        long duration;
+        long asyncId;
+
+        TraceEvent(String name, String phase, Thread thread, long timestamp, long duration) {
+            this.name = name;
+            this.phase = phase;
+            this.threadName = thread.getName();
+            this.threadId = thread.getId();
+            this.timestamp = timestamp;
+            this.duration = duration;
+        }
+
+        TraceEvent(String name, String phase, Thread thread, long timestamp, long duration, long asyncId) {
+            this(name, phase, thread, timestamp, duration);
+            this.asyncId = asyncId;
+        }
+    }
+
+    private TaskStatistics() {
+    }
+
+    /**
+     * Returns the instance of the class.
+     */
+    public static TaskStatistics getInstance() {
+        return TaskStatisticsHolder.INSTANCE;
+    }
+
+    private static class TaskStatisticsHolder {
+
+        private static final TaskStatistics INSTANCE = new TaskStatistics();
+    }
+
+    /** Returns true if timings are collected. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Switches collection of timings on and off. */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records timings of the completed task. All times are taken from {@link System#nanoTime()}.
+     *
+     * @param task Completed task.
+     * @param submitTime Time when task was submitted to the {@link TaskManager} or 0
+     * if task was executed directly.
+     * @param startTime Time when {@link SolaTask#doTask()} was started.
+     * @param endTime Time when {@link SolaTask#doTask()} was finished.
+     * @param doneStartTime Time when {@link SolaTask#taskDone()} was started.
+     * @param doneEndTime Time when {@link SolaTask#taskDone()} was finished.
+     * @param workerThread The thread executed {@link SolaTask#doTask()}.
+     */
+    void record(SolaTask task, long submitTime, long startTime, long endTime,
+            long doneStartTime, long doneEndTime, Thread workerThread) {
+        if (!enabled || task == null || startTime == 0) {
+            return;
+        }
+        String taskName = task.getClass().getName();
+        if (submitTime == 0 || submitTime > startTime) {
+            submitTime = startTime;
+        }
+        TaskTimings taskTimings;
+        synchronized (timings) {
+            taskTimings = timings.get(taskName);
+            if (taskTimings == null) {
+                taskTimings = new TaskTimings(taskName);
+                timings.put(taskName, taskTimings);
+            }
+        }
+        taskTimings.getQueueWait().recordValue(toMicros(startTime - submitTime));
+        taskTimings.getExecution().recordValue(toMicros(endTime - startTime));
+        taskTimings.getCompletion().recordValue(toMicros(doneEndTime - doneStartTime));
+
+        synchronized (traceEvents) {
+            if (startTime > submitTime) {
+                // Queued tasks overlap, therefore async begin/end events are used
+                long asyncId = ++asyncIdSequence;
+                addTraceEvent(new TraceEvent(taskName, "b", workerThread,
+                        toMicros(submitTime - this.startTime), 0, asyncId));
+                addTraceEvent(new TraceEvent(taskName, "e", workerThread,
+                        toMicros(startTime - this.startTime), 0, asyncId));
+            }
+            addTraceEvent(new TraceEvent(taskName, "X", workerThread,
+                    toMicros(startTime - this.startTime), toMicros(endTime - startTime)));
+            addTraceEvent(new TraceEvent(taskName + ".taskDone", "X", Thread.currentThread(),
+                    toMicros(doneStartTime - this.startTime), toMicros(doneEndTime - doneStartTime)));
+        }
+    }
+
+    private void addTraceEvent(TraceEvent event) {
+        traceEvents.addLast(event);
+        while (traceEvents.size() > MAX_TRACE_EVENTS) {
+            traceEvents.removeFirst();
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1000;
+    }
+
+    /** Returns the timings of all recorded task classes, sorted by class name. */
+    public List<TaskTimings> getTaskTimings() {
+        synchronized (timings) {
+            return new ArrayList<TaskTimings>(timings.values());
+        }
+    }
+
+    /** Clears all recorded timings and trace events. */
+    public void reset() {
+        synchronized (timings) {
+            timings.clear();
+        }
+        synchronized (traceEvents) {
+            traceEvents.clear();
+        }
+    }
+
+    /**
+     * Exports recorded trace events into the file in the Chrome trace event format.
+     *
+     * @param file The file to write into.
+     * @throws IOException If the file can't be written.
+     */
+    public void exportTrace(File file) throws IOException {
+        List<TraceEvent> events;
+        synchronized (traceEvents) {
+            events = new ArrayList<TraceEvent>(traceEvents);
+        }
+        Map<Long, String> threads = new HashMap<Long, String>();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write("{\"traceEvents\":[");
+            boolean first = true;
+            for (TraceEvent event : events) {
+                threads.put(event.threadId, event.threadName);
+                if (!first) {
+                    writer.write(",");
+                }
+                first = false;
+                if (event.asyncId > 0) {
+                    writer.write("\n{\"name\":\"" + escape(event.name) + "\",\"cat\":\"queue\",\"ph\":\""
+                            + event.phase + "\",\"ts\":" + event.timestamp + ",\"id\":" + event.asyncId
+                            + ",\"pid\":1,\"tid\":" + event.threadId + "}");
+                } else {
+                    writer.write("\n{\"name\":\"" + escape(event.name) + "\",\"cat\":\"task\",\"ph\":\""
+                            + event.phase + "\",\"ts\":" + event.timestamp + ",\"dur\":" + event.duration
+                            + ",\"pid\":1,\"tid\":" + event.threadId + "}");
+                }
+            }
+            for (Map.Entry<Long, String> thread : threads.entrySet()) {
+                if (!first) {
+                    writer.write(",");
+                }
+                first = false;
+                writer.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":"
+                        + thread.getKey() + ",\"args\":{\"name\":\"" + escape(thread.getValue()) + "\"}}");
+            }
+            writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.ResourceBundle;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.WindowConstants;
+import javax.swing.table.AbstractTableModel;
+import org.sola.clients.swing.common.controls.JTableWithDefaultStyles;
+import org.sola.clients.swing.common.controls.SearchResultCache;
+import org.sola.clients.swing.common.tasks.TaskStatistics.TaskTimings;
+
+/**
+ * Diagnostics dialog, showing the percentiles of the task timings, collected by
+ * {@link TaskStatistics}, and the hit rates of the search result caches. Allows to export the
+ * timeline of the recent tasks as Chrome trace event file.
+ */
+public class TaskStatisticsForm extends JDialog {
+
+    private static final double[] PERCENTILES = new double[]{50, 95, 99};
+    private ResourceBundle bundle = ResourceBundle.getBundle("org/sola/clients/swing/common/tasks/Bundle");
+    private TimingsTableModel tableModel = new TimingsTableModel();
+    private SearchCachesTableModel searchCachesModel = new SearchCachesTableModel();
+
+    public TaskStatisticsForm(Frame parent, boolean modal) {
+        super(parent, modal);
+        initComponents();
+        setLocationRelativeTo(parent);
+    }
+
+    private void initComponents() {
+        setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle(bundle.getString("TaskStatisticsForm.title"));
+
+        JTableWithDefaultStyles table = new JTableWithDefaultStyles();
+        table.setModel(tableModel);
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(300);
+
+        JTableWithDefaultStyles searchCachesTable = new JTableWithDefaultStyles();
+        searchCachesTable.setModel(searchCachesModel);
+        searchCachesTable.getColumnModel().getColumn(0).setPreferredWidth(300);
+        JScrollPane searchCachesScroll = new JScrollPane(searchCachesTable);
+        searchCachesScroll.setPreferredSize(new Dimension(1000, 100));
+
+        JButton btnRefresh = new JButton(bundle.getString("TaskStatisticsForm.btnRefresh.text"));
+        btnRefresh.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                tableModel.refresh();
+                searchCachesModel.refresh();
+            }
+        });
+        JButton btnReset = new JButton(bundle.getString("TaskStatisticsForm.btnReset.text"));
+        btnReset.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                TaskStatistics.getInstance().reset();
+                for (SearchResultCache cache : SearchResultCache.getCaches()) {
+                    cache.resetStatistics();
+                }
+                tableModel.refresh();
+                searchCachesModel.refresh();
+            }
+        });
+        JButton btnExport = new JButton(bundle.getString("TaskStatisticsForm.btnExport.text"));
+        btnExport.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                exportTrace();
+            }
+        });
+        JButton btnClose = new JButton(bundle.getString("TaskStatisticsForm.btnClose.text"));
+        btnClose.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                dispose();
+            }
+        });
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.TRAILING));
+        buttonsPanel.add(btnRefresh);
+        buttonsPanel.add(btnReset);
+        buttonsPanel.add(btnExport);
+        buttonsPanel.add(btnClose);
+
+        getContentPane().setLayout(new BorderLayout());
+        JPanel tablesPanel = new JPanel(new BorderLayout());
+        tablesPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+        tablesPanel.add(searchCachesScroll, BorderLayout.SOUTH);
+        getContentPane().add(tablesPanel, BorderLayout.CENTER);
+        getContentPane().add(buttonsPanel, BorderLayout.SOUTH);
+        getRootPane().setDefaultButton(btnClose);
+        setSize(1000, 500);
+    }
+
+    private void exportTrace() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("sola-tasks-trace.json"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            TaskStatistics.getInstance().exportTrace(fileChooser.getSelectedFile());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, ex.getLocalizedMessage(),
+                    getTitle(), JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /** Table model, showing count and percentiles of each histogram in milliseconds. */
+    private class TimingsTableModel extends AbstractTableModel {
+
+        private List<TaskTimings> timings = TaskStatistics.getInstance().getTaskTimings();
+
+        public void refresh() {
+            timings = TaskStatistics.getInstance().getTaskTimings();
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return timings.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2 + 3 * PERCENTILES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            if (column == 0) {
+                return bundle.getString("TaskStatisticsForm.colTask");
+            }
+            if (column == 1) {
+                return bundle.getString("TaskStatisticsForm.colCount");
+            }
+            String[] histograms = new String[]{
+                bundle.getString("TaskStatisticsForm.colQueueWait"),
+                bundle.getString("TaskStatisticsForm.colDoTask"),
+                bundle.getString("TaskStatisticsForm.colTaskDone")};
+            return String.format("%s p%.0f", histograms[(column - 2) / PERCENTILES.length],
+                    PERCENTILES[(column - 2) % PERCENTILES.length]);
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            if (column == 0) {
+                return String.class;
+            }
+            return column == 1 ? Long.class : Double.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            TaskTimings taskTimings = timings.get(row);
+            if (column == 0) {
+                return taskTimings.getTaskName();
+            }
+            if (column == 1) {
+                return taskTimings.getExecution().getTotalCount();
+            }
+            TaskHistogram histogram;
+            switch ((column - 2) / PERCENTILES.length) {
+                case 0:
+                    histogram = taskTimings.getQueueWait();
+                    break;
+                case 1:
+                    histogram = taskTimings.getExecution();
+                    break;
+                default:
+                    histogram = taskTimings.getCompletion();
+            }
+            long micros = histogram.getValueAtPercentile(PERCENTILES[(column - 2) % PERCENTILES.length]);
+            return micros / 1000.0;
+        }
+    }
+
+    /** Table model, showing the hit rate counters of the search result caches. */
+    private class SearchCachesTableModel extends AbstractTableModel {
+
+        private List<SearchResultCache> caches = SearchResultCache.getCaches();
+
+        public void refresh() {
+            caches = SearchResultCache.getCaches();
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return caches.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 5;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            switch (column) {
+                case 0:
+                    return bundle.getString("TaskStatisticsForm.colSearch");
+                case 1:
+                    return bundle.getString("TaskStatisticsForm.colHits");
+                case 2:
+                    return bundle.getString("TaskStatisticsForm.colNarrowedHits");
+                case 3:
+                    return bundle.getString("TaskStatisticsForm.colMisses");
+                default:
+                    return bundle.getString("TaskStatisticsForm.colHitRate");
+            }
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            if (column == 0) {
+                return String.class;
+            }
+            return column == 4 ? Double.class : Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SearchResultCache cache = caches.get(row);
+            switch (column) {
+                case 0:
+                    return cache.getName();
+                case 1:
+                    return cache.getHits();
+                case 2:
+                    return cache.getNarrowedHits();
+                case 3:
+                    return cache.getMisses();
+                default:
+                    return cache.getHitRate();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import junit.framework.TestCase;
+
+/**
+ * Tests coalescing of the tasks with the same key by the {@link TaskManager}.
+ */
+public class TaskCoalescingTest extends TestCase {
+
+    private static final int BURST_SIZE = 20;
+
+    public TaskCoalescingTest(String testName) {
+        super(testName);
+    }
+
+    /** Burst of identical tasks must be executed once, all tasks get the result. */
+    public void testBurstExecutedOnce() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final AtomicInteger results = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(BURST_SIZE);
+
+        final List<SolaTask> burst = new ArrayList<SolaTask>();
+        for (int i = 0; i < BURST_SIZE; i++) {
+            SolaTask<Integer, Void> task = new SolaTask<Integer, Void>() {
+
+                @Override
+                protected Integer doTask() {
+                    executions.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                    }
+                    return 42;
+                }
+
+                @Override
+                protected void taskDone() {
+                    results.addAndGet(get());
+                    done.countDown();
+                }
+            };
+            task.setTaskKey("testBurstExecutedOnce");
+            burst.add(task);
+        }
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                for (SolaTask task : burst) {
+                    assertTrue(TaskManager.getInstance().runTask(task));
+                }
+            }
+        });
+        assertEquals(BURST_SIZE - 1, TaskManager.getInstance().getNumberOfCoalescedTasks());
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        assertEquals(42 * BURST_SIZE, results.get());
+        assertEquals(0, TaskManager.getInstance().getNumberOfCoalescedTasks());
+    }
+
+    /** In latest wins mode only the last task of the burst must complete. */
+    public void testLatestWins() throws Exception {
+        final AtomicInteger completed = new AtomicInteger();
+        // Exceptions thrown on the EDT are handled by the task, so the values are checked here
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<SolaTask> burst = new ArrayList<SolaTask>();
+
+        for (int i = 0; i < BURST_SIZE; i++) {
+            final int number = i;
+            SolaTask<Integer, Void> task = new SolaTask<Integer, Void>() {
+
+                @Override
+                protected Integer doTask() {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException ex) {
+                    }
+                    return number;
+                }
+
+                @Override
+                protected void taskDone() {
+                    completed.incrementAndGet();
+                    results.add(get());
+                    done.countDown();
+                }
+            };
+            task.setTaskKey("testLatestWins");
+            task.setLatestWins(true);
+            burst.add(task);
+        }
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                for (SolaTask task : burst) {
+                    assertTrue(TaskManager.getInstance().runTask(task));
+                }
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        assertEquals(1, completed.get());
+        assertEquals(Collections.singletonList(BURST_SIZE - 1), results);
+        for (int i = 0; i < BURST_SIZE - 1; i++) {
+            assertTrue(burst.get(i).isCancelled());
+        }
+    }
+
+    /**
+     * Repeated save of the same object must be executed once and the running save must
+     * not be cancelled by {@link TaskManager#cancelAllTasks()}.
+     */
+    public void testWriteOperation() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final List<SolaTask> saves = new ArrayList<SolaTask>();
+
+        for (int i = 0; i < 2; i++) {
+            SolaTask<Boolean, Void> task = new SolaTask<Boolean, Void>() {
+
+                @Override
+                protected Boolean doTask() {
+                    executions.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        return false;
+                    }
+                    return true;
+                }
+
+                @Override
+                protected void taskDone() {
+                    if (get()) {
+                        done.countDown();
+                    }
+                }
+            };
+            task.setWriteOperation("TaskCoalescingTest.save", "bean1");
+            saves.add(task);
+        }
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                assertTrue(TaskManager.getInstance().runTask(saves.get(0)));
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                assertTrue(TaskManager.getInstance().runTask(saves.get(1)));
+                TaskManager.getInstance().cancelAllTasks();
+            }
+        });
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        assertFalse(saves.get(0).isCancelled());
+        assertFalse(saves.get(1).isCancelled());
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.common.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import junit.framework.TestCase;
+import org.sola.clients.swing.common.tasks.TaskExecutors.Mode;
+
+/**
+ * Measures throughput of the {@link SolaTask}s, blocking on the stubbed web
+ * service call, in each {@link TaskExecutors.Mode}. Each mode is measured twice:
+ * executing the tasks directly, which shows the capacity of the executor, and
+ * through {@link TaskManager#runTask(SolaTask)}, as the application does. The
+ * second is capped by the {@link TaskScheduler} category limit, so the executor
+ * mode makes little difference there unless the limit is raised. The benchmark
+ * takes several seconds and runs only if <code>sola.benchmark</code> system
+ * property is set, e.g.
+ * <code>mvn test -Dtest=TaskExecutorBenchmark -Dsola.benchmark=true</code>.
+ */
+public class TaskExecutorBenchmark extends TestCase {
+
+    private static final int TASK_COUNT = 200;
+    private static final long CALL_DURATION_MS = 50;
+
+    public TaskExecutorBenchmark(String testName) {
+        super(testName);
+    }
+
+    public void testThroughput() throws Exception {
+        if (System.getProperty("sola.benchmark") == null) {
+            return;
+        }
+        Mode initialMode = TaskExecutors.getMode();
+        int limit = TaskManager.getInstance().getScheduler().getCategoryLimit(
+                TaskScheduler.CATEGORY_DEFAULT);
+        try {
+            System.out.println("Virtual threads supported: " + TaskExecutors.isVirtualThreadSupported());
+            System.out.println("TaskManager category limit: " + limit);
+            for (Mode mode : Mode.values()) {
+                // Warm up the pool before measuring
+                runTasks(mode, 20, false);
+                Result direct = runTasks(mode, TASK_COUNT, false);
+                Result managed = runTasks(mode, TASK_COUNT, true);
+                print(mode, "direct", direct);
+                print(mode, "TaskManager", managed);
+
+                // Through the TaskManager no more tasks than the limit run at a time,
+                // so the stubbed calls can not take less than this.
+                assertTrue(managed.maxConcurrent <= limit);
+                assertTrue(managed.time >= TASK_COUNT / limit * CALL_DURATION_MS);
+            }
+        } finally {
+            TaskExecutors.setMode(initialMode);
+        }
+    }
+
+    /** Outcome of one run. */
+    private static class Result {
+
+        long time;
+        int maxConcurrent;
+    }
+
+    private static void print(Mode mode, String path, Result result) {
+        System.out.println(String.format("%-15s %-12s %4d tasks in %6d ms, %8.1f tasks/s, %3d at once",
+                mode, path, TASK_COUNT, result.time, TASK_COUNT * 1000.0 / result.time,
+                result.maxConcurrent));
+    }
+
+    /**
+     * Runs tasks in the given mode, directly or through the {@link TaskManager},
+     * and returns the time in milliseconds and the highest number of tasks running
+     * at the same time.
+     */
+    private Result runTasks(Mode mode, int count, boolean managed) throws Exception {
+        TaskExecutors.setMode(mode);
+        final CountDownLatch done = new CountDownLatch(count);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<SolaTask> tasks = new ArrayList<SolaTask>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new SolaTask<Void, Void>() {
+
+                @Override
+                protected Void doTask() {
+                    int now = running.incrementAndGet();
+                    int max = maxRunning.get();
+                    while (now > max && !maxRunning.compareAndSet(max, now)) {
+                        max = maxRunning.get();
+                    }
+                    try {
+                        stubbedServiceCall();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void taskDone() {
+                    done.countDown();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        if (managed) {
+            SwingUtilities.invokeAndWait(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (SolaTask task : tasks) {
+                        TaskManager.getInstance().runTask(task);
+                    }
+                }
+            });
+        } else {
+            for (SolaTask task : tasks) {
+                task.execute();
+            }
+        }
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+        Result result = new Result();
+        result.time = (System.nanoTime() - start) / 1000000;
+        result.maxConcurrent = maxRunning.get();
+        return result;
+    }
+
+    /** Simulates web service call, blocking the thread. */
+    private static void stubbedServiceCall() {
+        try {
+            Thread.sleep(CALL_DURATION_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
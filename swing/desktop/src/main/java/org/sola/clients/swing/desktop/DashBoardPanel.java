@@ -30,10 +30,19 @@
 package org.sola.clients.swing.desktop;
 
 import java.awt.ComponentOrientation;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JOptionPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
 import org.sola.clients.swing.desktop.application.ApplicationAssignmentPanel;
 import org.sola.clients.beans.application.ApplicationBean;
+import org.sola.clients.beans.application.ApplicationBulkAction;
 import org.sola.clients.beans.application.ApplicationSummaryBean;
 import org.sola.clients.swing.ui.renderers.DateTimeRenderer;
 import org.sola.common.messaging.ClientMessage;
@@ -44,9 +53,16 @@ import org.sola.clients.swing.desktop.application.ApplicationPanel;
 import org.sola.clients.beans.application.ApplicationSearchResultBean;
 import org.sola.clients.beans.application.ApplicationSearchResultsListBean;
 import org.sola.clients.beans.security.SecurityBean;
+import org.sola.clients.beans.security.UserSearchResultBean;
+import org.sola.clients.beans.security.UserSearchResultListBean;
 import org.sola.clients.swing.common.LafManager;
+import org.sola.clients.swing.common.config.ConfigurationManager;
+import org.sola.clients.swing.common.config.EnvConfig;
+import org.sola.clients.swing.common.tasks.CompositeTask;
+import org.sola.clients.swing.common.tasks.CompositeTask.Subtask;
 import org.sola.clients.swing.common.tasks.SolaTask;
 import org.sola.clients.swing.common.tasks.TaskManager;
+import org.sola.clients.swing.common.tasks.TaskScheduler;
 import org.sola.clients.swing.ui.ContentPanel;
 import org.sola.clients.swing.ui.MainContentPanel;
 import org.sola.common.RolesConstants;
@@ -54,9 +70,18 @@ import org.sola.common.RolesConstants;
 /**
  * This panel displays assigned and unassigned applications.<br />
  * {@link ApplicationSummaryListBean} is used to bind the data on the panel.
+ * Both lists are loaded at the same time and merged into the existing lists, so only
+ * changed rows are repainted. If {@link EnvConfig#SOLA_DASHBOARD_REFRESH_INTERVAL} is set,
+ * the lists are refreshed automatically, less often while nothing changes, until the panel is
+ * closed.
  */
 public class DashBoardPanel extends ContentPanel {
 
+    /** Maximum factor the auto refresh interval is multiplied by while nothing changes. */
+    private static final int MAX_AUTO_REFRESH_BACKOFF = 8;
+    /** Task key of the refresh, a newer refresh cancels the one still running. */
+    private static final String REFRESH_TASK_KEY = "DashBoardPanel.refreshApplications";
+
     private class AssignmentPanelListener implements PropertyChangeListener {
 
         @Override
@@ -70,6 +95,9 @@ public class DashBoardPanel extends ContentPanel {
         }
     }
     private AssignmentPanelListener assignmentPanelListener;
+    private Timer autoRefreshTimer;
+    private int autoRefreshInterval;
+    private int autoRefreshBackoff = 1;
 
     /**
      * Panel constructor.
@@ -93,6 +121,7 @@ public class DashBoardPanel extends ContentPanel {
         menuRefreshAssignApplication.setEnabled(btnRefreshAssigned.isEnabled());
         menuRefreshUnassignApplication.setEnabled(btnRefreshUnassigned.isEnabled());
 
+        initAutoRefresh();
         refreshApplications();
         customizeAssignedAppButtons(null);
         customizeUnassignedAppButtons(null);
@@ -118,6 +147,39 @@ public class DashBoardPanel extends ContentPanel {
         });
     }
 
+    /**
+     * Creates the timer to refresh application lists automatically, if the refresh interval
+     * is configured.
+     */
+    private void initAutoRefresh() {
+        int seconds = ConfigurationManager.getEnvConfigValue(
+                EnvConfig.SOLA_DASHBOARD_REFRESH_INTERVAL, 0);
+        if (seconds <= 0) {
+            return;
+        }
+        autoRefreshInterval = seconds * 1000;
+        autoRefreshTimer = new Timer(autoRefreshInterval, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refreshApplications(true);
+            }
+        });
+        autoRefreshTimer.setRepeats(false);
+    }
+
+    /**
+     * Starts the timer for the next auto refresh, taking into account the back off factor.
+     * Nothing is scheduled once the panel is closed.
+     */
+    private void scheduleAutoRefresh() {
+        if (autoRefreshTimer == null || !isDisplayable()) {
+            return;
+        }
+        autoRefreshTimer.setInitialDelay(autoRefreshInterval * autoRefreshBackoff);
+        autoRefreshTimer.restart();
+    }
+
     /**
      * Enables or disables toolbar buttons for assigned applications list, .
      */
@@ -129,11 +191,7 @@ public class DashBoardPanel extends ContentPanel {
             isUnassignEnabled = false;
             isEditEnabled = false;
         } else {
-            if (SecurityBean.getCurrentUser().getId().equals(app.getAssigneeId())) {
-                isUnassignEnabled = SecurityBean.isInRole(RolesConstants.APPLICATION_UNASSIGN_FROM_YOURSELF);
-            } else {
-                isUnassignEnabled = SecurityBean.isInRole(RolesConstants.APPLICATION_UNASSIGN_FROM_OTHERS);
-            }
+            isUnassignEnabled = canUnassign(app);
             isEditEnabled = SecurityBean.isInRole(RolesConstants.APPLICATION_EDIT_APPS);
         }
 
@@ -146,6 +204,17 @@ public class DashBoardPanel extends ContentPanel {
     /**
      * Enables or disables toolbar buttons for unassigned applications list.
      */
+    /**
+     * Returns true if current user is allowed to unassign the application.
+     */
+    private boolean canUnassign(ApplicationSearchResultBean app) {
+        if (SecurityBean.getCurrentUser().getId().equals(app.getAssigneeId())) {
+            return SecurityBean.isInRole(RolesConstants.APPLICATION_UNASSIGN_FROM_YOURSELF);
+        } else {
+            return SecurityBean.isInRole(RolesConstants.APPLICATION_UNASSIGN_FROM_OTHERS);
+        }
+    }
+
     private void customizeUnassignedAppButtons(ApplicationSearchResultBean app) {
         boolean isAssignEnabled = true;
         boolean isEditEnabled = true;
@@ -196,6 +265,8 @@ public class DashBoardPanel extends ContentPanel {
                 return null;
             }
         };
+        // Double clicks on the same application are coalesced into one task
+        t.setTaskKey("openAssignment:" + appId);
         TaskManager.getInstance().runTask(t);
     }
 
@@ -209,29 +280,28 @@ public class DashBoardPanel extends ContentPanel {
             return;
         }
 
-        SolaTask t = new SolaTask<Void, Void>() {
+        final PropertyChangeListener listener = new PropertyChangeListener() {
 
             @Override
-            public Void doTask() {
-                setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_OPEN_APP));
-                PropertyChangeListener listener = new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent e) {
+                if (e.getPropertyName().equals(ApplicationPanel.APPLICATION_SAVED_PROPERTY)) {
+                    refreshApplications();
+                }
+            }
+        };
 
-                    @Override
-                    public void propertyChange(PropertyChangeEvent e) {
-                        if (e.getPropertyName().equals(ApplicationPanel.APPLICATION_SAVED_PROPERTY)) {
-                            refreshApplications();
-                        }
-                    }
-                };
+        SolaTask t = ApplicationPanel.createOpenTask(appBean.getId(), new ApplicationPanel.OpenListener() {
 
+            @Override
+            public void panelCreated(ApplicationPanel applicationPanel) {
                 if (getMainContentPanel() != null) {
-                    ApplicationPanel applicationPanel = new ApplicationPanel(appBean.getId());
                     applicationPanel.addPropertyChangeListener(ApplicationBean.APPLICATION_PROPERTY, listener);
                     getMainContentPanel().addPanel(applicationPanel, MainContentPanel.CARD_APPLICATION, true);
                 }
-                return null;
             }
-        };
+        });
+        t.setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_OPEN_APP));
+        t.setTaskKey("openApplication:" + appBean.getId());
         TaskManager.getInstance().runTask(t);
     }
 
@@ -354,7 +424,7 @@ public class DashBoardPanel extends ContentPanel {
         tbUnassigned.setComponentPopupMenu(popUpUnassignedApplications);
         tbUnassigned.setGridColor(new java.awt.Color(135, 127, 115));
         tbUnassigned.setName("tbUnassigned"); // NOI18N
-        tbUnassigned.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        tbUnassigned.setSelectionMode(javax.swing.ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         tbUnassigned.setShowVerticalLines(false);
 
         org.jdesktop.beansbinding.ELProperty eLProperty = org.jdesktop.beansbinding.ELProperty.create("${applicationSearchResultsList}");
@@ -541,7 +611,7 @@ public class DashBoardPanel extends ContentPanel {
         tbAssigned.setComponentPopupMenu(popUpAssignedApplications);
         tbAssigned.setGridColor(new java.awt.Color(135, 127, 115));
         tbAssigned.setName("tbAssigned"); // NOI18N
-        tbAssigned.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        tbAssigned.setSelectionMode(javax.swing.ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         tbAssigned.setShowVerticalLines(false);
 
         eLProperty = org.jdesktop.beansbinding.ELProperty.create("${applicationSearchResultsList}");
@@ -703,20 +773,97 @@ public class DashBoardPanel extends ContentPanel {
      * Refreshes assigned and unassigned application lists.
      */
     private void refreshApplications() {
-        SolaTask t = new SolaTask<Void, Void>() {
+        refreshApplications(false);
+    }
+
+    /**
+     * Loads assigned and unassigned applications at the same time and merges them into the
+     * lists on the panel. A refresh still running is cancelled in favour of the new one, so
+     * the lists always show the state after the latest change.
+     *
+     * @param autoRefresh Indicates the refresh is started by the auto refresh timer. Auto
+     * refresh is skipped while other tasks are running or the panel is hidden.
+     */
+    private void refreshApplications(final boolean autoRefresh) {
+        if (autoRefresh && (!isShowing() || TaskManager.getInstance().getNumberOfActiveTasks() > 0)) {
+            scheduleAutoRefresh();
+            return;
+        }
+
+        final Subtask<List<ApplicationSearchResultBean>> unassignedApps =
+                new Subtask<List<ApplicationSearchResultBean>>("loadUnassigned") {
+
+                    @Override
+                    protected List<ApplicationSearchResultBean> doTask() {
+                        setMessage(MessageUtility.getLocalizedMessageText(
+                                ClientMessage.APPLICATION_LOADING_UNASSIGNED));
+                        return ApplicationSearchResultsListBean.loadUnassigned();
+                    }
+                };
+        final Subtask<List<ApplicationSearchResultBean>> assignedApps =
+                new Subtask<List<ApplicationSearchResultBean>>("loadAssigned") {
+
+                    @Override
+                    protected List<ApplicationSearchResultBean> doTask() {
+                        setMessage(MessageUtility.getLocalizedMessageText(
+                                ClientMessage.APPLICATION_LOADING_ASSIGNED));
+                        return ApplicationSearchResultsListBean.loadAssigned();
+                    }
+                };
+        CompositeTask t = new CompositeTask() {
 
             @Override
-            public Void doTask() {
-                setMessage(MessageUtility.getLocalizedMessageText(
-                        ClientMessage.APPLICATION_LOADING_UNASSIGNED));
-                unassignedAppListBean.FillUnassigned();
-                setMessage(MessageUtility.getLocalizedMessageText(
-                        ClientMessage.APPLICATION_LOADING_ASSIGNED));
-                assignedAppListBean.FillAssigned();
-                return null;
+            protected void taskDone() {
+                boolean changed = unassignedAppListBean.mergeApplications(unassignedApps.getResult());
+                changed = assignedAppListBean.mergeApplications(assignedApps.getResult()) || changed;
+                if (changed || !autoRefresh) {
+                    autoRefreshBackoff = 1;
+                } else {
+                    autoRefreshBackoff = Math.min(autoRefreshBackoff * 2, MAX_AUTO_REFRESH_BACKOFF);
+                }
+                scheduleAutoRefresh();
+            }
+
+            @Override
+            protected void taskFailed(Throwable e) {
+                scheduleAutoRefresh();
+            }
+
+            @Override
+            protected void taskCancelled() {
+                scheduleAutoRefresh();
             }
         };
-        TaskManager.getInstance().runTask(t);
+        t.addSubtask(unassignedApps);
+        t.addSubtask(assignedApps);
+        t.setTaskKey(REFRESH_TASK_KEY);
+        t.setLatestWins(true);
+        if (autoRefresh) {
+            t.setCategory(TaskScheduler.CATEGORY_BACKGROUND);
+            t.setPriority(SolaTask.PRIORITY_LOW);
+        }
+        if (!TaskManager.getInstance().runTask(t)) {
+            scheduleAutoRefresh();
+        }
+    }
+
+    /**
+     * Resumes the automatic refresh when the panel is added again.
+     */
+    @Override
+    protected void panelAdded() {
+        scheduleAutoRefresh();
+    }
+
+    /**
+     * Stops the automatic refresh when the panel is closed.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        if (autoRefreshTimer != null) {
+            autoRefreshTimer.stop();
+        }
     }
 
     /**
@@ -730,7 +877,12 @@ public class DashBoardPanel extends ContentPanel {
      * Opens form to assign application.
      */
     private void assignApplication() {
-        openAssignmentForm(unassignedAppListBean.getSelectedApplication());
+        List<ApplicationSearchResultBean> applications = getSelectedApplications(tbUnassigned, unassignedAppListBean);
+        if (applications.size() > 1) {
+            assignApplications(applications);
+        } else {
+            openAssignmentForm(unassignedAppListBean.getSelectedApplication());
+        }
     }
 
     /**
@@ -744,7 +896,198 @@ public class DashBoardPanel extends ContentPanel {
      * Opens form to unassign application.
      */
     private void unassignApplication() {
-        openAssignmentForm(assignedAppListBean.getSelectedApplication());
+        List<ApplicationSearchResultBean> applications = getSelectedApplications(tbAssigned, assignedAppListBean);
+        if (applications.size() > 1) {
+            unassignApplications(applications);
+        } else {
+            openAssignmentForm(assignedAppListBean.getSelectedApplication());
+        }
+    }
+
+    /**
+     * Returns applications selected in the table.
+     */
+    private List<ApplicationSearchResultBean> getSelectedApplications(JTable table,
+            ApplicationSearchResultsListBean listBean) {
+        List<ApplicationSearchResultBean> applications = new ArrayList<ApplicationSearchResultBean>();
+        for (int row : table.getSelectedRows()) {
+            applications.add(listBean.getApplicationSearchResultsList().get(table.convertRowIndexToModel(row)));
+        }
+        return applications;
+    }
+
+    /**
+     * Asks for the user and assigns selected applications to the chosen user.
+     */
+    private void assignApplications(final List<ApplicationSearchResultBean> applications) {
+        for (ApplicationSearchResultBean application : applications) {
+            if (!application.isFeePaid()) {
+                MessageUtility.displayMessage(ClientMessage.CHECK_FEES_NOT_PAID);
+                return;
+            }
+        }
+
+        SolaTask<UserSearchResultListBean, Void> t = new SolaTask<UserSearchResultListBean, Void>() {
+
+            @Override
+            protected UserSearchResultListBean doTask() {
+                setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_OPEN_APPASSIGN));
+                return new UserSearchResultListBean();
+            }
+
+            @Override
+            protected void taskDone() {
+                // Without the right to assign to others, only current user can be chosen
+                List<UserSearchResultBean> users = new ArrayList<UserSearchResultBean>();
+                for (UserSearchResultBean user : get().getUsers()) {
+                    if (SecurityBean.isInRole(RolesConstants.APPLICATION_ASSIGN_TO_OTHERS)
+                            || (user.getId().equals(SecurityBean.getCurrentUser().getId())
+                            && SecurityBean.isInRole(RolesConstants.APPLICATION_ASSIGN_TO_YOURSELF))) {
+                        users.add(user);
+                    }
+                }
+                if (users.isEmpty()) {
+                    showBulkActionNotAllowed(applications);
+                    return;
+                }
+                String[] userNames = new String[users.size()];
+                int currentUser = 0;
+                for (int i = 0; i < users.size(); i++) {
+                    userNames[i] = users.get(i).getFullUserName();
+                    if (users.get(i).getId().equals(SecurityBean.getCurrentUser().getId())) {
+                        currentUser = i;
+                    }
+                }
+                java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+                Object selected = JOptionPane.showInputDialog(DashBoardPanel.this,
+                        MessageFormat.format(bundle.getString("DashBoardPanel.bulkAssignTo"), applications.size()),
+                        bundle.getString("DashBoardPanel.btnAssignApplication.text"),
+                        JOptionPane.QUESTION_MESSAGE, null, userNames, userNames[currentUser]);
+                for (int i = 0; selected != null && i < userNames.length; i++) {
+                    if (userNames[i].equals(selected)) {
+                        runBulkAction(ApplicationBulkAction.assign(users.get(i).getId()), applications);
+                        return;
+                    }
+                }
+            }
+        };
+        TaskManager.getInstance().runTask(t);
+    }
+
+    /**
+     * Unassigns selected applications after confirmation.
+     */
+    private void unassignApplications(List<ApplicationSearchResultBean> applications) {
+        List<ApplicationSearchResultBean> allowed = new ArrayList<ApplicationSearchResultBean>();
+        List<ApplicationSearchResultBean> notAllowed = new ArrayList<ApplicationSearchResultBean>();
+        for (ApplicationSearchResultBean application : applications) {
+            if (canUnassign(application)) {
+                allowed.add(application);
+            } else {
+                notAllowed.add(application);
+            }
+        }
+        if (allowed.isEmpty()) {
+            showBulkActionNotAllowed(notAllowed);
+            return;
+        }
+
+        java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+        String message = MessageFormat.format(bundle.getString("DashBoardPanel.bulkUnassignConfirm"), allowed.size());
+        if (!notAllowed.isEmpty()) {
+            message += "\n" + getBulkNotAllowedText(notAllowed);
+        }
+        if (JOptionPane.showConfirmDialog(this, message,
+                bundle.getString("DashBoardPanel.btnUnassignApplication.text"),
+                JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+            runBulkAction(ApplicationBulkAction.unassign(), allowed);
+        }
+    }
+
+    /**
+     * Returns the text listing applications, which current user is not allowed to change.
+     */
+    private String getBulkNotAllowedText(List<ApplicationSearchResultBean> applications) {
+        java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+        StringBuilder text = new StringBuilder(
+                MessageFormat.format(bundle.getString("DashBoardPanel.bulkNotAllowed"), applications.size()));
+        for (ApplicationSearchResultBean application : applications) {
+            text.append("\n").append(application.getNr());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Shows the list of applications, which current user is not allowed to change.
+     */
+    private void showBulkActionNotAllowed(List<ApplicationSearchResultBean> applications) {
+        JOptionPane.showMessageDialog(this, getBulkNotAllowedText(applications),
+                headerPanel.getTitleText(), JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Runs the action on the applications in one task, reports failed applications
+     * and refreshes the lists once at the end.
+     */
+    private void runBulkAction(final ApplicationBulkAction action,
+            final List<ApplicationSearchResultBean> applications) {
+        final java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+        SolaTask<List<ApplicationBulkAction.Result>, Void> t =
+                new SolaTask<List<ApplicationBulkAction.Result>, Void>() {
+
+                    @Override
+                    protected List<ApplicationBulkAction.Result> doTask() {
+                        setMessage(MessageFormat.format(bundle.getString("DashBoardPanel.bulkProgress"),
+                                0, applications.size()));
+                        return action.run(applications, new ApplicationBulkAction.Listener() {
+
+                            @Override
+                            public void applicationProcessed(ApplicationBulkAction.Result result,
+                                    int completed, int total) {
+                                setMessage(MessageFormat.format(bundle.getString("DashBoardPanel.bulkProgress"),
+                                        completed, total));
+                                setProgress(completed * 100 / total);
+                            }
+                        });
+                    }
+
+                    @Override
+                    protected void taskDone() {
+                        showBulkActionResults(get());
+                        refreshApplications();
+                    }
+
+                    @Override
+                    protected void taskFailed(Throwable e) {
+                        refreshApplications();
+                    }
+                };
+        t.setExclusive(true);
+        TaskManager.getInstance().runTask(t);
+    }
+
+    /**
+     * Shows the list of applications, which failed to process.
+     */
+    private void showBulkActionResults(List<ApplicationBulkAction.Result> results) {
+        if (results == null) {
+            return;
+        }
+        StringBuilder failures = new StringBuilder();
+        int failed = 0;
+        for (ApplicationBulkAction.Result result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+                failures.append("\n").append(result.getApplication().getNr()).append(": ")
+                        .append(result.getError().getLocalizedMessage());
+            }
+        }
+        if (failed > 0) {
+            java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+            JOptionPane.showMessageDialog(this,
+                    MessageFormat.format(bundle.getString("DashBoardPanel.bulkFailed"), failed, results.size())
+                    + failures.toString(), headerPanel.getTitleText(), JOptionPane.WARNING_MESSAGE);
+        }
     }
 
     /**
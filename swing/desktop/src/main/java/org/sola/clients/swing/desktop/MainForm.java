@@ -36,17 +36,27 @@ import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
 import java.util.Locale;
 import java.util.logging.Level;
 import javax.swing.ImageIcon;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import net.sf.jasperreports.engine.JasperPrint;
 import org.sola.clients.beans.AbstractBindingBean;
+import org.sola.clients.beans.AbstractIdBean;
+import org.sola.clients.beans.digitalarchive.DocumentBean;
+import org.sola.clients.beans.digitalarchive.ScanFolderWatcher;
+import org.sola.clients.beans.savequeue.SaveQueue;
+import org.sola.clients.beans.savequeue.SaveQueueEntry;
+import org.sola.clients.beans.savequeue.SaveQueueListener;
 import org.sola.clients.beans.security.SecurityBean;
 import org.sola.clients.swing.common.DefaultExceptionHandler;
 import org.sola.clients.swing.common.LafManager;
 import org.sola.clients.swing.common.LocalizationManager;
 import org.sola.clients.swing.common.tasks.SolaTask;
 import org.sola.clients.swing.common.tasks.TaskManager;
+import org.sola.clients.swing.common.tasks.TaskStatisticsForm;
 import org.sola.clients.swing.desktop.administrative.BaUnitSearchPanel;
 import org.sola.clients.swing.desktop.application.ApplicationPanel;
 import org.sola.clients.swing.desktop.application.ApplicationSearchPanel;
@@ -55,6 +65,7 @@ import org.sola.clients.swing.desktop.party.PartySearchPanelForm;
 import org.sola.clients.swing.desktop.reports.LodgementReportParamsForm;
 import org.sola.clients.swing.desktop.source.DocumentSearchPanel;
 import org.sola.clients.swing.ui.MainContentPanel;
+import org.sola.clients.swing.ui.source.DocumentPagesForm;
 import org.sola.common.RolesConstants;
 import org.sola.common.help.HelpUtility;
 import org.sola.common.logging.LogUtility;
@@ -112,6 +123,67 @@ public class MainForm extends javax.swing.JFrame {
         openDashBoard();
 
         txtUserName.setText(SecurityBean.getCurrentUser().getUserName());
+
+        if (DocumentPagesForm.isViewerEnabled()) {
+            DocumentBean.setDocumentOpener(DocumentPagesForm.createDocumentOpener());
+        }
+        if (ScanFolderWatcher.isEnabled()) {
+            ScanFolderWatcher.getInstance().start();
+        }
+
+        SaveQueue.getInstance().addListener(new SaveQueueListener() {
+
+            @Override
+            public void entrySaved(SaveQueueEntry entry, AbstractIdBean savedBean) {
+            }
+
+            @Override
+            public void entryConflict(final SaveQueueEntry entry) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        resolveSaveConflict(entry);
+                    }
+                });
+            }
+
+            @Override
+            public void entryFailed(final SaveQueueEntry entry) {
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        showSaveFailure(entry);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Asks the user whether to overwrite the bean, changed on the server by
+     * another user, with the queued changes or discard them.
+     */
+    private void resolveSaveConflict(SaveQueueEntry entry) {
+        java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+        int answer = JOptionPane.showConfirmDialog(this,
+                MessageFormat.format(bundle.getString("MainForm.saveQueueConflict"),
+                entry.getSnapshot().getClass().getSimpleName(), entry.getQueuedTime()),
+                bundle.getString("MainForm.saveQueueTitle"), JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+        SaveQueue.getInstance().resolveConflict(entry, answer == JOptionPane.YES_OPTION);
+    }
+
+    /** Shows the error of the queued save and removes it from the queue. */
+    private void showSaveFailure(SaveQueueEntry entry) {
+        java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/Bundle");
+        JOptionPane.showMessageDialog(this,
+                MessageFormat.format(bundle.getString("MainForm.saveQueueFailed"),
+                entry.getSnapshot().getClass().getSimpleName(), entry.getQueuedTime(),
+                entry.getErrorMessage()),
+                bundle.getString("MainForm.saveQueueTitle"), JOptionPane.ERROR_MESSAGE);
+        SaveQueue.getInstance().discard(entry);
     }
 
     private void setAllLogLevel() {
@@ -240,6 +312,12 @@ public class MainForm extends javax.swing.JFrame {
         aboutBox.setVisible(true);
     }
 
+    /** Shows timings of the tasks, executed during the session. */
+    private void showTaskStatistics() {
+        TaskStatisticsForm form = new TaskStatisticsForm(this, false);
+        form.setVisible(true);
+    }
+
     private void setLanguage(String code, String country) {
         LocalizationManager.setLanguage(DesktopApplication.class, code, country);
         MessageUtility.displayMessage(ClientMessage.GENERAL_UPDATE_LANG);
@@ -328,6 +406,7 @@ public class MainForm extends javax.swing.JFrame {
         menuAllLogLevel = new javax.swing.JMenuItem();
         menuDefaultLogLevel = new javax.swing.JMenuItem();
         menuOffLogLevel = new javax.swing.JMenuItem();
+        menuTaskStatistics = new javax.swing.JMenuItem();
         menuApplications = new javax.swing.JMenu();
         menuNewApplication = new javax.swing.JMenuItem();
         menuSearch = new javax.swing.JMenu();
@@ -539,6 +618,14 @@ public class MainForm extends javax.swing.JFrame {
 
         menuView.add(menuLogLevel);
 
+        menuTaskStatistics.setText(bundle.getString("MainForm.menuTaskStatistics.text")); // NOI18N
+        menuTaskStatistics.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menuTaskStatisticsActionPerformed(evt);
+            }
+        });
+        menuView.add(menuTaskStatistics);
+
         menuBar.add(menuView);
 
         menuApplications.setText(bundle.getString("MainForm.menuApplications.text")); // NOI18N
@@ -679,6 +766,10 @@ public class MainForm extends javax.swing.JFrame {
         setOffLogLevel();
     }//GEN-LAST:event_menuOffLogLevelActionPerformed
 
+    private void menuTaskStatisticsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menuTaskStatisticsActionPerformed
+        showTaskStatistics();
+    }//GEN-LAST:event_menuTaskStatisticsActionPerformed
+
     private void menuNewApplicationActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menuNewApplicationActionPerformed
         openNewApplicationForm();
     }//GEN-LAST:event_menuNewApplicationActionPerformed
@@ -790,6 +881,7 @@ public class MainForm extends javax.swing.JFrame {
     private javax.swing.JMenu menuSearch;
     private javax.swing.JMenuItem menuSearchApplication;
     private javax.swing.JMenuItem menuShowMap;
+    private javax.swing.JMenuItem menuTaskStatistics;
     private javax.swing.JMenu menuView;
     private org.sola.clients.swing.ui.MainContentPanel pnlContent;
     private javax.swing.JPanel statusPanel;
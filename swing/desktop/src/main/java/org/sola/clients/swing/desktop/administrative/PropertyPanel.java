@@ -856,6 +856,7 @@ public class PropertyPanel extends ContentPanel {
                 saveBaUnitState();
             }
         };
+        t.setWriteOperation("PropertyPanel.save", baUnitBean1.getId());
         TaskManager.getInstance().runTask(t);
     }
 
@@ -51,7 +51,6 @@ import org.sola.clients.beans.application.ApplicationPropertyBean;
 import org.sola.clients.beans.application.ApplicationServiceBean;
 import org.sola.clients.beans.cache.CacheManager;
 import org.sola.clients.beans.converters.TypeConverters;
-import org.sola.clients.beans.digitalarchive.DocumentBean;
 import org.sola.clients.beans.party.PartySummaryListBean;
 import org.sola.clients.beans.referencedata.*;
 import org.sola.clients.beans.security.SecurityBean;
@@ -60,6 +59,8 @@ import org.sola.clients.beans.validation.ValidationResultBean;
 import org.sola.clients.reports.ReportManager;
 import org.sola.clients.swing.common.LafManager;
 import org.sola.clients.swing.common.converters.DateConverter;
+import org.sola.clients.swing.common.tasks.CompositeTask;
+import org.sola.clients.swing.common.tasks.CompositeTask.Subtask;
 import org.sola.clients.swing.common.tasks.SolaTask;
 import org.sola.clients.swing.common.tasks.TaskManager;
 import org.sola.clients.swing.desktop.MainForm;
@@ -95,6 +96,9 @@ public class ApplicationPanel extends ContentPanel {
     private ControlsBundleForApplicationLocation mapControl = null;
     public static final String APPLICATION_SAVED_PROPERTY = "applicationSaved";
     private String applicationID;
+    private ApplicationBean preloadedApplication;
+    private PartySummaryListBean preloadedAgents;
+    private boolean applicationLogLoaded = false;
 
     /**
      * This method is used by the form designer to create {@link ApplicationBean}.
@@ -105,11 +109,10 @@ public class ApplicationPanel extends ContentPanel {
      * {@link ApplicationForm#initComponents} method call.
      */
     private ApplicationBean getApplicationBean() {
-        ApplicationBean applicationBean = new ApplicationBean();
+        ApplicationBean applicationBean = preloadedApplication;
 
-        if (applicationID != null && !applicationID.equals("")) {
-            ApplicationTO applicationTO = WSManager.getInstance().getCaseManagementService().getApplication(applicationID);
-            TypeConverters.TransferObjectToBean(applicationTO, ApplicationBean.class, applicationBean);
+        if (applicationBean == null) {
+            applicationBean = loadApplication(applicationID);
         }
 
         applicationBean.addPropertyChangeListener(new PropertyChangeListener() {
@@ -124,6 +127,30 @@ public class ApplicationPanel extends ContentPanel {
         return applicationBean;
     }
 
+    /**
+     * Loads application from the server. Returns empty {@link ApplicationBean}
+     * if <code>applicationId</code> is empty.
+     *
+     * @param applicationId ID of application to load.
+     */
+    public static ApplicationBean loadApplication(String applicationId) {
+        ApplicationBean applicationBean = new ApplicationBean();
+        if (applicationId != null && !applicationId.equals("")) {
+            ApplicationTO applicationTO = WSManager.getInstance().getCaseManagementService().getApplication(applicationId);
+            TypeConverters.TransferObjectToBean(applicationTO, ApplicationBean.class, applicationBean);
+        }
+        return applicationBean;
+    }
+
+    /**
+     * Loads the list of agents, used by the form.
+     */
+    public static PartySummaryListBean loadAgents() {
+        PartySummaryListBean agentsList = new PartySummaryListBean();
+        agentsList.FillAgents(true);
+        return agentsList;
+    }
+
     private CommunicationTypeListBean createCommunicationTypes() {
         if (communicationTypes == null) {
             String communicationCode = null;
@@ -155,6 +182,76 @@ public class ApplicationPanel extends ContentPanel {
         postInit();
     }
 
+    /**
+     * This constructor is used to open existing application, which is already
+     * loaded together with its log and the list of agents, e.g. by
+     * {@link #createOpenTask(String, OpenListener)}.
+     *
+     * @param applicationBean Loaded application.
+     * @param agents Loaded list of agents.
+     */
+    public ApplicationPanel(ApplicationBean applicationBean, PartySummaryListBean agents) {
+        this.preloadedApplication = applicationBean;
+        this.preloadedAgents = agents;
+        this.applicationID = applicationBean.getId();
+        this.applicationLogLoaded = true;
+        initComponents();
+        postInit();
+    }
+
+    /**
+     * Listener of the {@link ApplicationPanel} creation, called from the
+     * background thread.
+     */
+    public interface OpenListener {
+
+        /** Called when the panel is created. */
+        void panelCreated(ApplicationPanel panel);
+    }
+
+    /**
+     * Creates task opening existing application. The application, its log and
+     * the list of agents are loaded concurrently, then the panel is created and
+     * passed to the listener.
+     *
+     * @param applicationId ID of application to open.
+     * @param listener Listener, receiving created panel.
+     */
+    public static CompositeTask createOpenTask(final String applicationId, final OpenListener listener) {
+        CompositeTask task = new CompositeTask();
+        final Subtask<ApplicationBean> application = task.addSubtask(new Subtask<ApplicationBean>("application") {
+
+            @Override
+            protected ApplicationBean doTask() {
+                return loadApplication(applicationId);
+            }
+        });
+        final Subtask<Void> applicationLog = task.addSubtask(new Subtask<Void>("applicationLog", application) {
+
+            @Override
+            protected Void doTask() {
+                application.getResult().loadApplicationLogList();
+                return null;
+            }
+        });
+        final Subtask<PartySummaryListBean> agents = task.addSubtask(new Subtask<PartySummaryListBean>("agents") {
+
+            @Override
+            protected PartySummaryListBean doTask() {
+                return loadAgents();
+            }
+        });
+        task.addSubtask(new Subtask<Void>("panel", applicationLog, agents) {
+
+            @Override
+            protected Void doTask() {
+                listener.panelCreated(new ApplicationPanel(application.getResult(), agents.getResult()));
+                return null;
+            }
+        });
+        return task;
+    }
+
     /**
      * Runs post initialization actions to customize form elements.
      */
@@ -248,7 +345,11 @@ public class ApplicationPanel extends ContentPanel {
             java.util.ResourceBundle bundle = java.util.ResourceBundle.getBundle("org/sola/clients/swing/desktop/application/Bundle");
             pnlHeader.setTitleText(bundle.getString("ApplicationPanel.pnlHeader.titleText") + " #" + appBean.getNr());
             applicationDocumentsHelper.updateCheckList(appBean.getServiceList(), appBean.getSourceList());
-            appBean.loadApplicationLogList();
+            if (applicationLogLoaded) {
+                applicationLogLoaded = false;
+            } else {
+                appBean.loadApplicationLogList();
+            }
             if (appBean.getContactPerson() != null
                     && appBean.getContactPerson().getPreferredCommunicationCode() == null) {
                 cbxCommunicationWay.setSelectedIndex(-1);
@@ -440,9 +541,10 @@ public class ApplicationPanel extends ContentPanel {
      * This method is used by the form designer to create the list of agents.
      */
     private PartySummaryListBean createPartySummaryList() {
-        PartySummaryListBean agentsList = new PartySummaryListBean();
-        agentsList.FillAgents(true);
-        return agentsList;
+        if (preloadedAgents != null) {
+            return preloadedAgents;
+        }
+        return loadAgents();
     }
 
     private void openPropertyForm(final BaUnitBean baUnitBean, final boolean readOnly) {
@@ -820,6 +922,7 @@ public class ApplicationPanel extends ContentPanel {
                 firePropertyChange(APPLICATION_SAVED_PROPERTY, false, true);
             }
         };
+        t.setWriteOperation("ApplicationPanel.save", appBean.getId());
         TaskManager.getInstance().runTask(t);
     }
 
@@ -3058,7 +3161,7 @@ public class ApplicationPanel extends ContentPanel {
                 @Override
                 public Void doTask() {
                     setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_DOCUMENT_OPENING));
-                    DocumentBean.openDocument(appBean.getSelectedSource().getArchiveDocument().getId());
+                    appBean.getSelectedSource().getArchiveDocument().openDocument();
                     return null;
                 }
             };
@@ -3164,6 +3267,7 @@ public class ApplicationPanel extends ContentPanel {
                             saveAppState();
                         }
                     };
+            t.setWriteOperation("ApplicationPanel." + actionType, appBean.getId());
             TaskManager.getInstance().runTask(t);
         }
     }
@@ -3270,6 +3374,7 @@ public class ApplicationPanel extends ContentPanel {
                         }
                     }
                 };
+                t.setWriteOperation("ApplicationPanel.completeService", selectedService.getId());
                 TaskManager.getInstance().runTask(t);
             }
         }
@@ -3314,6 +3419,7 @@ public class ApplicationPanel extends ContentPanel {
                         }
                     }
                 };
+                t.setWriteOperation("ApplicationPanel.revertService", selectedService.getId());
                 TaskManager.getInstance().runTask(t);
             }
         }
@@ -3358,6 +3464,7 @@ public class ApplicationPanel extends ContentPanel {
                         }
                     }
                 };
+                t.setWriteOperation("ApplicationPanel.cancelService", selectedService.getId());
                 TaskManager.getInstance().runTask(t);
             }
         }
@@ -30,6 +30,8 @@
 package org.sola.clients.swing.desktop.application;
 
 import java.awt.ComponentOrientation;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.Locale;
@@ -76,6 +78,34 @@ public class ApplicationSearchPanel extends ContentPanel {
         });
         customizeOpenButton(null);
         btnFind.setEnabled(SecurityBean.isInRole(RolesConstants.APPLICATION_VIEW_APPS));
+        txtAppNumber.addKeyListener(new KeyAdapter() {
+
+            @Override
+            public void keyReleased(KeyEvent e) {
+                searchApplicationsLocally();
+            }
+        });
+    }
+
+    /**
+     * Shows the applications loaded earlier in this session, which match the typed application
+     * number, without calling the server. Only used while no other criteria are set, the
+     * server is queried by the Find button.
+     */
+    private void searchApplicationsLocally() {
+        if (!btnFind.isEnabled() || !isEmpty(txtAgentName) || !isEmpty(txtContactPerson)
+                || !isEmpty(txtDocumentNumber) || !isEmpty(txtDocumentReference)
+                || txtFromDate.getValue() != null || txtToDate.getValue() != null) {
+            return;
+        }
+        if (appList.searchApplicationsLocally(txtAppNumber.getText())) {
+            labResults.setText(String.format("(%s)", appList.getApplicationSearchResultsList().size()));
+            tbAppList.setVisible(true);
+        }
+    }
+
+    private boolean isEmpty(JTextField field) {
+        return field.getText() == null || field.getText().trim().length() == 0;
     }
 
     private void customizeOpenButton(ApplicationSearchResultBean searchResult) {
@@ -734,19 +764,18 @@ public class ApplicationSearchPanel extends ContentPanel {
             return;
         }
 
-        SolaTask t = new SolaTask<Void, Void>() {
+        String applicationId = appList.getSelectedApplication().getId();
+        SolaTask t = ApplicationPanel.createOpenTask(applicationId, new ApplicationPanel.OpenListener() {
 
             @Override
-            public Void doTask() {
-                setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_OPEN_APP));
+            public void panelCreated(ApplicationPanel applicationPanel) {
                 if (getMainContentPanel() != null) {
-                    ApplicationPanel applicationPanel = new ApplicationPanel(
-                            appList.getSelectedApplication().getId());
                     getMainContentPanel().addPanel(applicationPanel, MainContentPanel.CARD_APPLICATION, true);
                 }
-                return null;
             }
-        };
+        });
+        t.setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_OPEN_APP));
+        t.setTaskKey("openApplication:" + applicationId);
         TaskManager.getInstance().runTask(t);
     }
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -210,6 +210,7 @@ public class PartyPanelForm extends ContentPanel {
                     }
                 }
             };
+            t.setWriteOperation("PartyPanelForm.save", partyPanel.getPartyBean().getId());
             TaskManager.getInstance().runTask(t);
         } else {
             if (partyPanel.validateParty(true)) {
@@ -83,6 +83,7 @@ public class DocumentForm extends ContentPanel {
                 }
             }
         };
+        t.setWriteOperation("DocumentForm.save", documentPanel.getDocument().getId());
         TaskManager.getInstance().runTask(t);
     }
 
@@ -0,0 +1,187 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO). All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this list of conditions
+ * and the following disclaimer. 2. Redistributions in binary form must reproduce the above
+ * copyright notice,this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.gis.data;
+
+import com.vividsolutions.jts.geom.Envelope;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geotools.map.extended.layer.ExtendedLayer;
+import org.geotools.swing.event.MapPaneAdapter;
+import org.geotools.swing.event.MapPaneEvent;
+import org.geotools.swing.extended.Map;
+import org.sola.clients.swing.gis.layer.PojoLayer;
+
+/**
+ * Fetches the features of the visible pojo layers of the map in parallel, as soon as the display
+ * area of the map changes. Each layer puts its features in its tile cache when they arrive, so the
+ * renderer waits only for the fetch of the layer it is drawing. When the display area changes
+ * again, the fetches not yet started are cancelled. Optionally, when the map is idle, the area
+ * around the viewport and the viewport at the next zoom level are fetched in advance. The area
+ * around the viewport is fetched as four edge strips, so the tiles of the viewport are not
+ * requested again.
+ */
+public class FeatureFetchScheduler extends MapPaneAdapter {
+
+    /**
+     * System property with the number of the layers fetched at the same time.
+     */
+    public static final String THREADS_PROPERTY = "SOLA_MAP_FETCH_THREADS";
+    /**
+     * System property which, if true, enables fetching in advance while the map is idle.
+     */
+    public static final String PREFETCH_PROPERTY = "SOLA_MAP_PREFETCH";
+    private static final int DEFAULT_THREADS = 4;
+    private final Map map;
+    private final boolean prefetch;
+    private final List<Future<?>> fetches = new ArrayList<Future<?>>();
+
+    private static class ExecutorHolder {
+
+        private static final ExecutorService INSTANCE = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            int threads = DEFAULT_THREADS;
+            try {
+                threads = Integer.parseInt(System.getProperty(THREADS_PROPERTY,
+                        Integer.toString(DEFAULT_THREADS)));
+            } catch (NumberFormatException ex) {
+            }
+            return Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+
+                private final AtomicInteger number = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FeatureFetch-" + number.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param map The map whose layers are fetched
+     */
+    public FeatureFetchScheduler(Map map) {
+        this.map = map;
+        this.prefetch = Boolean.parseBoolean(System.getProperty(PREFETCH_PROPERTY));
+    }
+
+    /**
+     * Cancels the fetches of the previous display area and starts fetching the new one.
+     *
+     * @param ev
+     */
+    @Override
+    public void onDisplayAreaChanged(MapPaneEvent ev) {
+        this.cancelFetches();
+        this.fetch(this.map.getDisplayArea(), this.map.getPixelResolution());
+    }
+
+    /**
+     * If enabled, fetches in advance the ring around the display area and the display area at
+     * the next zoom level. The ring is fetched as its top, bottom, left and right strips, each in
+     * its own fetch.
+     *
+     * @param ev
+     */
+    @Override
+    public void onRenderingStopped(MapPaneEvent ev) {
+        if (!this.prefetch) {
+            return;
+        }
+        Envelope displayArea = this.map.getDisplayArea();
+        if (displayArea == null || displayArea.isNull()) {
+            return;
+        }
+        double pixelResolution = this.map.getPixelResolution();
+        for (Envelope strip : getRingStrips(displayArea)) {
+            this.fetch(strip, pixelResolution);
+        }
+        this.fetch(displayArea, pixelResolution / 2);
+    }
+
+    /**
+     * Gets the strips of the ring around the display area, half of its size wide. The top and
+     * bottom strips include the corners, the left and right strips span the display area only.
+     *
+     * @param displayArea The display area
+     * @return
+     */
+    static List<Envelope> getRingStrips(Envelope displayArea) {
+        double dx = displayArea.getWidth() / 2;
+        double dy = displayArea.getHeight() / 2;
+        double minX = displayArea.getMinX();
+        double maxX = displayArea.getMaxX();
+        double minY = displayArea.getMinY();
+        double maxY = displayArea.getMaxY();
+        List<Envelope> strips = new ArrayList<Envelope>();
+        strips.add(new Envelope(minX - dx, maxX + dx, maxY, maxY + dy));
+        strips.add(new Envelope(minX - dx, maxX + dx, minY - dy, minY));
+        strips.add(new Envelope(minX - dx, minX, minY, maxY));
+        strips.add(new Envelope(maxX, maxX + dx, minY, maxY));
+        return strips;
+    }
+
+    /**
+     * Cancels the fetches which are not started yet. The fetches already running complete, their
+     * tiles stay pending meanwhile and their features are kept only in the tile cache.
+     */
+    public void cancelFetches() {
+        synchronized (this.fetches) {
+            for (Future<?> fetch : this.fetches) {
+                fetch.cancel(false);
+            }
+            this.fetches.clear();
+        }
+    }
+
+    private void fetch(Envelope extent, double pixelResolution) {
+        if (extent == null || extent.isNull() || pixelResolution <= 0) {
+            return;
+        }
+        synchronized (this.fetches) {
+            for (ExtendedLayer solaLayer : this.map.getSolaLayers().values()) {
+                if (!(solaLayer instanceof PojoLayer) || !solaLayer.isVisible()) {
+                    continue;
+                }
+                Future<?> fetch = ((PojoLayer) solaLayer).getPojoFeatureSource().fetchTilesAsync(
+                        ExecutorHolder.INSTANCE, extent, pixelResolution);
+                if (fetch != null) {
+                    this.fetches.add(fetch);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO). All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this list of conditions
+ * and the following disclaimer. 2. Redistributions in binary form must reproduce the above
+ * copyright notice,this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.gis.data;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Cache of the features of one layer, split into tiles of a fixed grid. The grid is defined per
+ * zoom band, so tiles of the same band hold features generalized for about the same pixel
+ * resolution. Least recently used tiles are removed when the number of tiles exceeds the limit.
+ * Features crossing the tile borders are kept in all tiles they intersect.
+ */
+public class FeatureTileCache {
+
+    /**
+     * Size of the tile in pixels at the finest resolution of the zoom band.
+     */
+    public static final int TILE_PIXELS = 512;
+    /**
+     * Default maximum number of the cached tiles.
+     */
+    public static final int DEFAULT_MAX_TILES = 256;
+    private final Map<String, List<SimpleFeature>> tiles;
+
+    /**
+     * Constructor.
+     *
+     * @param maxTiles Maximum number of the tiles to keep
+     */
+    public FeatureTileCache(final int maxTiles) {
+        this.tiles = new LinkedHashMap<String, List<SimpleFeature>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<SimpleFeature>> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    /**
+     * Gets the zoom band of the pixel resolution. Resolutions between two powers of 2 share the
+     * band.
+     *
+     * @param pixelResolution Size of the pixel in map units
+     * @return
+     */
+    public static int getZoomBand(double pixelResolution) {
+        return (int) Math.floor(Math.log(pixelResolution) / Math.log(2));
+    }
+
+    /**
+     * Gets the size of the tile of the zoom band in map units
+     *
+     * @param zoomBand
+     * @return
+     */
+    public static double getTileSize(int zoomBand) {
+        return Math.pow(2, zoomBand) * TILE_PIXELS;
+    }
+
+    /**
+     * Gets the keys of the tiles covering the extent
+     *
+     * @param zoomBand The zoom band of the grid
+     * @param extent The extent to cover
+     * @return
+     */
+    public static List<String> getTileKeys(int zoomBand, Envelope extent) {
+        double tileSize = getTileSize(zoomBand);
+        long minX = (long) Math.floor(extent.getMinX() / tileSize);
+        long maxX = (long) Math.floor(extent.getMaxX() / tileSize);
+        long minY = (long) Math.floor(extent.getMinY() / tileSize);
+        long maxY = (long) Math.floor(extent.getMaxY() / tileSize);
+        List<String> keys = new ArrayList<String>();
+        for (long y = minY; y <= maxY; y++) {
+            for (long x = minX; x <= maxX; x++) {
+                keys.add(zoomBand + "/" + x + "/" + y);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the extent of the tile
+     *
+     * @param key The key of the tile
+     * @return
+     */
+    public static Envelope getTileExtent(String key) {
+        String[] parts = key.split("/");
+        double tileSize = getTileSize(Integer.parseInt(parts[0]));
+        double x = Long.parseLong(parts[1]) * tileSize;
+        double y = Long.parseLong(parts[2]) * tileSize;
+        return new Envelope(x, x + tileSize, y, y + tileSize);
+    }
+
+    /**
+     * Gets the extent covering all the tiles
+     *
+     * @param keys The keys of the tiles
+     * @return
+     */
+    public static Envelope getTilesExtent(Collection<String> keys) {
+        Envelope extent = new Envelope();
+        for (String key : keys) {
+            extent.expandToInclude(getTileExtent(key));
+        }
+        return extent;
+    }
+
+    /**
+     * Splits the tiles into blocks, each covering a rectangle of adjacent tiles. Runs of adjacent
+     * tiles in a row are joined with the runs over the same columns in the previous row. The
+     * extent of a block covers only its own tiles, so tiles fetched by blocks do not fetch the
+     * tiles between them again.
+     *
+     * @param keys The keys of the tiles
+     * @return The keys of the tiles of each block
+     */
+    public static List<List<String>> getTileBlocks(Collection<String> keys) {
+        Map<String, TreeMap<Long, TreeMap<Long, String>>> bands =
+                new LinkedHashMap<String, TreeMap<Long, TreeMap<Long, String>>>();
+        for (String key : keys) {
+            String[] parts = key.split("/");
+            TreeMap<Long, TreeMap<Long, String>> rows = bands.get(parts[0]);
+            if (rows == null) {
+                rows = new TreeMap<Long, TreeMap<Long, String>>();
+                bands.put(parts[0], rows);
+            }
+            Long y = Long.valueOf(parts[2]);
+            TreeMap<Long, String> row = rows.get(y);
+            if (row == null) {
+                row = new TreeMap<Long, String>();
+                rows.put(y, row);
+            }
+            row.put(Long.valueOf(parts[1]), key);
+        }
+        List<List<String>> blocks = new ArrayList<List<String>>();
+        for (TreeMap<Long, TreeMap<Long, String>> rows : bands.values()) {
+            // Blocks reaching the previous row, by the columns they span
+            Map<String, List<String>> openBlocks = new HashMap<String, List<String>>();
+            Long previousY = null;
+            for (Map.Entry<Long, TreeMap<Long, String>> row : rows.entrySet()) {
+                if (previousY == null || row.getKey() != previousY + 1) {
+                    openBlocks.clear();
+                }
+                previousY = row.getKey();
+                Map<String, List<String>> rowBlocks = new HashMap<String, List<String>>();
+                List<String> run = new ArrayList<String>();
+                long firstX = 0;
+                long lastX = 0;
+                for (Map.Entry<Long, String> tile : row.getValue().entrySet()) {
+                    long x = tile.getKey();
+                    if (!run.isEmpty() && x != lastX + 1) {
+                        addRun(run, firstX + ":" + lastX, openBlocks, rowBlocks, blocks);
+                        run = new ArrayList<String>();
+                    }
+                    if (run.isEmpty()) {
+                        firstX = x;
+                    }
+                    run.add(tile.getValue());
+                    lastX = x;
+                }
+                addRun(run, firstX + ":" + lastX, openBlocks, rowBlocks, blocks);
+                openBlocks = rowBlocks;
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Adds the run of the tiles to the block over the same columns in the previous row or to a
+     * new block
+     */
+    private static void addRun(List<String> run, String columns,
+            Map<String, List<String>> openBlocks, Map<String, List<String>> rowBlocks,
+            List<List<String>> blocks) {
+        List<String> block = openBlocks.get(columns);
+        if (block == null) {
+            block = new ArrayList<String>();
+            blocks.add(block);
+        }
+        block.addAll(run);
+        rowBlocks.put(columns, block);
+    }
+
+    /**
+     * Gets the keys of the tiles which are not in the cache
+     *
+     * @param keys The keys of the tiles to check
+     * @return
+     */
+    public synchronized List<String> getMissingTiles(Collection<String> keys) {
+        List<String> missing = new ArrayList<String>();
+        for (String key : keys) {
+            if (!this.tiles.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Gets the features of the tile or null if the tile is not in the cache
+     *
+     * @param key The key of the tile
+     * @return
+     */
+    public synchronized List<SimpleFeature> getTile(String key) {
+        return this.tiles.get(key);
+    }
+
+    /**
+     * Stores the features, fetched for the extent of the tiles, in the tiles they intersect. Tiles
+     * without features are stored empty, so they are not fetched again.
+     *
+     * @param keys The keys of the fetched tiles
+     * @param features The features fetched for the tiles
+     */
+    public synchronized void putTiles(Collection<String> keys, List<SimpleFeature> features) {
+        for (String key : keys) {
+            Envelope tileExtent = getTileExtent(key);
+            List<SimpleFeature> tileFeatures = new ArrayList<SimpleFeature>();
+            for (SimpleFeature feature : features) {
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                if (geometry != null && tileExtent.intersects(geometry.getEnvelopeInternal())) {
+                    tileFeatures.add(feature);
+                }
+            }
+            this.tiles.put(key, tileFeatures);
+        }
+    }
+
+    /**
+     * Removes all tiles from the cache. Used after features are changed locally.
+     */
+    public synchronized void clear() {
+        this.tiles.clear();
+    }
+
+    /**
+     * Gets the number of the cached tiles
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return this.tiles.size();
+    }
+}
@@ -29,7 +29,6 @@
  */
 package org.sola.clients.swing.gis.data;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,9 +62,8 @@ import org.sola.webservices.transferobjects.transaction.TransactionCadastreRedef
 public class PojoDataAccess {
 
     private WSManager wsManager = null;
-    private HashMap<String, ConfigMapLayerTO> mapLayerInfoList = null;
-    private MapDefinitionTO mapDefinition = null;
-    private static PojoDataAccess poJoDataAccess = null;
+    private volatile Map<String, ConfigMapLayerTO> mapLayerInfoList = null;
+    private volatile MapDefinitionTO mapDefinition = null;
 
     /**
      * Constructor. Use the singletone method instead of this constructor.
@@ -76,41 +74,57 @@ public class PojoDataAccess {
 
     /**
      * It gets the singletone instance of itself. Use this instead of using the constructor to get a
-     * reference to the object.
+     * reference to the object. The instance is created once, on first use, and safely shared
+     * among the threads.
      */
     public static PojoDataAccess getInstance() {
-        if (poJoDataAccess == null) {
-            poJoDataAccess = new PojoDataAccess();
-        }
-        return poJoDataAccess;
+        return PojoDataAccessHolder.INSTANCE;
+    }
+
+    private static class PojoDataAccessHolder {
+
+        private static final PojoDataAccess INSTANCE = new PojoDataAccess();
     }
 
     /**
      * Gets the map definition from the server. This object is used to define startup parameters for
-     * the map control
+     * the map control. It is retrieved only once, even if requested from several threads.
      *
      * @return
      */
     public MapDefinitionTO getMapDefinition() {
-        if (this.mapDefinition == null) {
-            this.mapDefinition = getSpatialService().getMapDefinition();
+        MapDefinitionTO definition = this.mapDefinition;
+        if (definition == null) {
+            synchronized (this) {
+                definition = this.mapDefinition;
+                if (definition == null) {
+                    definition = getSpatialService().getMapDefinition();
+                    this.mapDefinition = definition;
+                }
+            }
         }
-        return this.mapDefinition;
+        return definition;
     }
 
     /**
-     * Gets the list of layer definitions from server
+     * Gets the list of layer definitions from server. The list is built completely before it is
+     * published, so it can be read from any thread.
      */
     public Map<String, ConfigMapLayerTO> getMapLayerInfoList() {
-        if (this.mapLayerInfoList == null) {
-            List<ConfigMapLayerTO> configMapLayerList = new ArrayList<ConfigMapLayerTO>();
-            configMapLayerList = this.getMapDefinition().getLayers();
-            this.mapLayerInfoList = new HashMap<String, ConfigMapLayerTO>();
-            for (ConfigMapLayerTO configMapLayer : configMapLayerList) {
-                this.mapLayerInfoList.put(configMapLayer.getId(), configMapLayer);
+        Map<String, ConfigMapLayerTO> layerInfoList = this.mapLayerInfoList;
+        if (layerInfoList == null) {
+            synchronized (this) {
+                layerInfoList = this.mapLayerInfoList;
+                if (layerInfoList == null) {
+                    layerInfoList = new HashMap<String, ConfigMapLayerTO>();
+                    for (ConfigMapLayerTO configMapLayer : this.getMapDefinition().getLayers()) {
+                        layerInfoList.put(configMapLayer.getId(), configMapLayer);
+                    }
+                    this.mapLayerInfoList = layerInfoList;
+                }
             }
         }
-        return this.mapLayerInfoList;
+        return layerInfoList;
     }
 
     /**
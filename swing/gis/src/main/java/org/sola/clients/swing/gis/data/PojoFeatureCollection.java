@@ -31,19 +31,212 @@
  */
 package org.sola.clients.swing.gis.data;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.geometry.BoundingBox;
 
 /**
  * It is a ListFeatureCollection that is used for all features used to be drawn in the 
- * map control.
+ * map control. The features are held in a copy on write list. Every change builds a new list
+ * which is published at once, so the renderer iterating the collection always sees a
+ * consistent snapshot, even while the features are changed from another thread.
  * 
  * @author Elton Manoku
  */
 public class PojoFeatureCollection extends ListFeatureCollection{
         
     public PojoFeatureCollection(SimpleFeatureType type){
-        super(type);
+        super(type, new SnapshotList());
+    }
+
+    /**
+     * Gets the features of the collection as read only list. The list is a snapshot, it does not
+     * reflect later changes of the collection.
+     *
+     * @return
+     */
+    public List<SimpleFeature> getFeatureList() {
+        return this.getSnapshotList().getSnapshot().features;
+    }
+
+    /**
+     * Replaces the features of the collection with the given features, applying only the
+     * difference. Features which are already in the collection, by id and instance, are kept
+     * in place. The other features are removed and the new ones are added at the end. The new
+     * features are published at once.
+     *
+     * @param features The features the collection must hold
+     * @return True if the collection is changed
+     */
+    public boolean update(Collection<SimpleFeature> features) {
+        Map<String, SimpleFeature> toAdd = new LinkedHashMap<String, SimpleFeature>();
+        for (SimpleFeature feature : features) {
+            toAdd.put(feature.getID(), feature);
+        }
+        SnapshotList snapshotList = this.getSnapshotList();
+        synchronized (snapshotList) {
+            List<SimpleFeature> current = snapshotList.getSnapshot().features;
+            List<SimpleFeature> kept =
+                    new ArrayList<SimpleFeature>(current.size() + toAdd.size());
+            for (SimpleFeature feature : current) {
+                if (toAdd.get(feature.getID()) == feature) {
+                    toAdd.remove(feature.getID());
+                    kept.add(feature);
+                }
+            }
+            if (kept.size() == current.size() && toAdd.isEmpty()) {
+                return false;
+            }
+            kept.addAll(toAdd.values());
+            snapshotList.publish(kept);
+            return true;
+        }
+    }
+
+    /**
+     * Gets the bounds of the features in the current snapshot. The bounds are calculated once
+     * per snapshot.
+     *
+     * @return
+     */
+    @Override
+    public ReferencedEnvelope getBounds() {
+        Snapshot snapshot = this.getSnapshotList().getSnapshot();
+        ReferencedEnvelope bounds = snapshot.bounds;
+        if (bounds == null) {
+            bounds = new ReferencedEnvelope(this.getSchema().getCoordinateReferenceSystem());
+            for (SimpleFeature feature : snapshot.features) {
+                BoundingBox featureBounds = feature.getBounds();
+                if (!featureBounds.isEmpty()) {
+                    bounds.include(featureBounds);
+                }
+            }
+            snapshot.bounds = bounds;
+        }
+        return new ReferencedEnvelope(bounds);
+    }
+
+    private SnapshotList getSnapshotList() {
+        return (SnapshotList) this.list;
+    }
+
+    /**
+     * Features of the collection at one moment, with their bounds once calculated.
+     */
+    private static class Snapshot {
+
+        private final List<SimpleFeature> features;
+        private volatile ReferencedEnvelope bounds;
+
+        private Snapshot(List<SimpleFeature> features) {
+            this.features = Collections.unmodifiableList(features);
+        }
+    }
+
+    /**
+     * List which is read from the published snapshot without locking. The changes are
+     * serialized, each of them copies the snapshot and publishes the changed copy.
+     */
+    private static class SnapshotList extends AbstractList<SimpleFeature> {
+
+        private volatile Snapshot snapshot =
+                new Snapshot(new ArrayList<SimpleFeature>());
+
+        private Snapshot getSnapshot() {
+            return this.snapshot;
+        }
+
+        private void publish(List<SimpleFeature> features) {
+            this.snapshot = new Snapshot(features);
+        }
+
+        private List<SimpleFeature> copy() {
+            return new ArrayList<SimpleFeature>(this.snapshot.features);
+        }
+
+        @Override
+        public SimpleFeature get(int index) {
+            return this.snapshot.features.get(index);
+        }
+
+        @Override
+        public int size() {
+            return this.snapshot.features.size();
+        }
+
+        @Override
+        public Iterator<SimpleFeature> iterator() {
+            return this.snapshot.features.iterator();
+        }
+
+        @Override
+        public synchronized SimpleFeature set(int index, SimpleFeature element) {
+            List<SimpleFeature> features = this.copy();
+            SimpleFeature previous = features.set(index, element);
+            this.publish(features);
+            return previous;
+        }
+
+        @Override
+        public synchronized void add(int index, SimpleFeature element) {
+            List<SimpleFeature> features = this.copy();
+            features.add(index, element);
+            this.publish(features);
+        }
+
+        @Override
+        public synchronized SimpleFeature remove(int index) {
+            List<SimpleFeature> features = this.copy();
+            SimpleFeature previous = features.remove(index);
+            this.publish(features);
+            return previous;
+        }
+
+        @Override
+        public synchronized boolean remove(Object o) {
+            List<SimpleFeature> features = this.copy();
+            boolean changed = features.remove(o);
+            this.publish(features);
+            return changed;
+        }
+
+        @Override
+        public synchronized boolean addAll(Collection<? extends SimpleFeature> c) {
+            List<SimpleFeature> features = this.copy();
+            boolean changed = features.addAll(c);
+            this.publish(features);
+            return changed;
+        }
+
+        @Override
+        public synchronized boolean removeAll(Collection<?> c) {
+            List<SimpleFeature> features = this.copy();
+            boolean changed = features.removeAll(c);
+            this.publish(features);
+            return changed;
+        }
+
+        @Override
+        public synchronized boolean retainAll(Collection<?> c) {
+            List<SimpleFeature> features = this.copy();
+            boolean changed = features.retainAll(c);
+            this.publish(features);
+            return changed;
+        }
+
+        @Override
+        public synchronized void clear() {
+            this.publish(new ArrayList<SimpleFeature>());
+        }
     }
-    
 }
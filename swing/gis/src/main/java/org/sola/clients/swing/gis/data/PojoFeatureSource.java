@@ -31,15 +31,24 @@ package org.sola.clients.swing.gis.data;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKBReader;
 import java.awt.RenderingHints.Key;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import org.geotools.data.DataAccess;
 import org.geotools.data.DataUtilities;
@@ -78,13 +87,22 @@ public class PojoFeatureSource implements SimpleFeatureSource {
     private QueryCapabilities capabilities;
     private Set<Key> hints;
     private PojoDataAccess dataSource;
-    private static WKBReader wkbReader = new WKBReader();
-    private SimpleFeatureBuilder builder;
+    private static ThreadLocal<WKBReader> wkbReader = new ThreadLocal<WKBReader>() {
+
+        @Override
+        protected WKBReader initialValue() {
+            return new WKBReader();
+        }
+    };
     private double lastWest;
     private double lastSouth;
     private double lastEast;
     private double lastNorth;
+    private int lastZoomBand = Integer.MIN_VALUE;
     private PojoLayer layer;
+    private FeatureTileCache tileCache = new FeatureTileCache(FeatureTileCache.DEFAULT_MAX_TILES);
+    private final Map<String, Future<?>> pendingTiles = new HashMap<String, Future<?>>();
+    private int cacheGeneration;
 
     /**
      * Constructor.
@@ -101,16 +119,16 @@ public class PojoFeatureSource implements SimpleFeatureSource {
                 this.dataSource.getMapLayerInfoList().get(
                 this.layer.getLayerName()).getPojoStructure());
         this.collection = new PojoFeatureCollection(type);
-        this.builder = new SimpleFeatureBuilder(type);
     }
 
     /**
-     * The WKB reader used to translate the WKB geometries into geotools geometries
+     * The WKB reader used to translate the WKB geometries into geotools geometries. The reader is
+     * not thread safe so each thread gets its own.
      *
      * @return
      */
     public static WKBReader getWkbReader() {
-        return wkbReader;
+        return wkbReader.get();
     }
 
     private SimpleFeatureType getNewFeatureType(String name, String structure)
@@ -246,72 +264,311 @@ public class PojoFeatureSource implements SimpleFeatureSource {
     }
 
     /**
-     * Given the extent, modifies the feature collection
+     * Given the extent, modifies the feature collection. The extent is split in tiles of the
+     * {@link FeatureTileCache} and only the tiles which are not in the cache are requested from
+     * the server. Tiles being fetched in the background by {@link #fetchTilesAsync} are waited for
+     * instead of requested again. If the layer is marked to be forcibly refreshed, as it is after
+     * the features are changed locally, the cache is cleared first. The new features are
+     * published to the collection at once, renderers already drawing it keep their snapshot.
      *
      * @param west
      * @param south
      * @param east
      * @param north
      */
-    private void ModifyFeatureCollection(double west, double south, double east, double north) {
-        if (!this.layer.isForceRefresh()) {
+    private synchronized void ModifyFeatureCollection(double west, double south, double east, double north) {
+        boolean forceRefresh = this.layer.isForceRefresh();
+        if (!forceRefresh) {
             if (this.lastWest == west && this.lastSouth == south
                     && this.lastEast == east && this.lastNorth == north) {
                 return;
             }
         } else {
             this.layer.setForceRefresh(false);
+            this.clearTileCache();
         }
         this.lastWest = west;
         this.lastSouth = south;
         this.lastEast = east;
         this.lastNorth = north;
-        try {
-            ResultForNavigationInfo resultInfo = this.dataSource.GetQueryData(
-                    this.getSchema().getTypeName(), west, south, east, north,
-                    this.getLayer().getSrid(), this.getLayer().getMapControl().getPixelResolution());
-            if (this.getLayer().getLayerName().equals("parcels")) {
-                System.out.println("layer name:" + this.getLayer().getLayerName());
-                System.out.println("west:" + west);
-                System.out.println("south:" + south);
-                System.out.println("east:" + east);
-                System.out.println("north:" + north);
-                System.out.println("srid:" + this.getLayer().getSrid());
-                System.out.println("pixelTolerance:" + this.getLayer().getMapControl().getPixelResolution());
-                System.out.println("NR Features Returned:" + resultInfo.getToAdd().size());
-                System.out.println("-----------------------------------");
+        double pixelResolution = this.getLayer().getMapControl().getPixelResolution();
+        int zoomBand = FeatureTileCache.getZoomBand(pixelResolution);
+        // Features drawn at the same zoom band can be reused, unless they are changed locally
+        boolean reuseDrawnFeatures = !forceRefresh && zoomBand == this.lastZoomBand;
+        this.lastZoomBand = zoomBand;
+        List<String> tileKeys = FeatureTileCache.getTileKeys(
+                zoomBand, new Envelope(west, east, south, north));
+        if (!forceRefresh) {
+            this.waitForPendingTiles(tileKeys);
+        }
+        List<String> missingTiles = this.tileCache.getMissingTiles(tileKeys);
+        Map<String, SimpleFeature> features = this.getCachedFeatures(tileKeys);
+        if (!missingTiles.isEmpty()) {
+            Map<String, SimpleFeature> heldFeatures = new HashMap<String, SimpleFeature>();
+            if (reuseDrawnFeatures) {
+                for (SimpleFeature feature : this.collection.getFeatureList()) {
+                    heldFeatures.put(feature.getID(), feature);
+                }
+            }
+            heldFeatures.putAll(features);
+            try {
+                for (SimpleFeature feature : this.fetchTiles(missingTiles, pixelResolution,
+                        heldFeatures, this.getCacheGeneration())) {
+                    features.put(feature.getID(), feature);
+                }
+            } catch (WebServiceClientException ex) {
+                LogUtility.log(
+                        String.format(GisMessage.GENERAL_RETRIEVE_FEATURES_ERROR,
+                        this.getLayer().getTitle()), ex);
+                Messaging.getInstance().show(
+                        GisMessage.GENERAL_RETRIEVE_FEATURES_ERROR, this.getLayer().getTitle());
+                return;
             }
-            List<SimpleFeature> featuresToAdd = this.getFeaturesFromData(resultInfo.getToAdd());
-            this.collection.clear();
-            this.collection.addAll(featuresToAdd);
-        } catch (WebServiceClientException ex) {
-            LogUtility.log(
-                    String.format(GisMessage.GENERAL_RETRIEVE_FEATURES_ERROR,
-                    this.getLayer().getTitle()), ex);
-            Messaging.getInstance().show(
-                    GisMessage.GENERAL_RETRIEVE_FEATURES_ERROR, this.getLayer().getTitle());
         }
+        this.collection.update(features.values());
     }
 
     /**
-     * It translates the result retrieved from the server to features recognized by map control
+     * Starts fetching the tiles covering the extent, which are neither cached nor being fetched
+     * already. The features are stored in the tile cache and drawn by the next rendering of the
+     * layer, unless the cache is cleared while they are fetched. Cancelling the returned future
+     * succeeds only if the fetch is not started yet, a running fetch keeps its tiles pending until
+     * it completes.
+     *
+     * @param executor The executor to fetch the tiles on
+     * @param extent The extent to fetch
+     * @param pixelResolution The pixel resolution to fetch the extent for
+     * @return The future of the fetch or null if there is nothing to fetch
+     */
+    public Future<?> fetchTilesAsync(
+            Executor executor, Envelope extent, final double pixelResolution) {
+        synchronized (this.pendingTiles) {
+            final List<String> tileKeys = this.tileCache.getMissingTiles(
+                    FeatureTileCache.getTileKeys(
+                    FeatureTileCache.getZoomBand(pixelResolution), extent));
+            tileKeys.removeAll(this.pendingTiles.keySet());
+            if (tileKeys.isEmpty()) {
+                return null;
+            }
+            final int generation = this.cacheGeneration;
+            FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        fetchTiles(tileKeys, pixelResolution,
+                                new HashMap<String, SimpleFeature>(), generation);
+                    } catch (WebServiceClientException ex) {
+                        LogUtility.log(
+                                String.format(GisMessage.GENERAL_RETRIEVE_FEATURES_ERROR,
+                                getLayer().getTitle()), ex);
+                    }
+                }
+            }, null) {
+
+                private final AtomicBoolean started = new AtomicBoolean();
+
+                @Override
+                public void run() {
+                    if (started.compareAndSet(false, true)) {
+                        super.run();
+                    }
+                }
+
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    // A running fetch is not abandoned, its tiles stay pending until it completes
+                    return started.compareAndSet(false, true) && super.cancel(false);
+                }
+
+                @Override
+                protected void done() {
+                    synchronized (pendingTiles) {
+                        for (String tileKey : tileKeys) {
+                            if (pendingTiles.get(tileKey) == this) {
+                                pendingTiles.remove(tileKey);
+                            }
+                        }
+                    }
+                }
+            };
+            for (String tileKey : tileKeys) {
+                this.pendingTiles.put(tileKey, task);
+            }
+            executor.execute(task);
+            return task;
+        }
+    }
+
+    /**
+     * Clears the tile cache. The fetches still running were started for the cleared cache, so
+     * their tiles are no longer pending and their features are not stored.
+     */
+    private void clearTileCache() {
+        synchronized (this.pendingTiles) {
+            this.cacheGeneration++;
+            this.pendingTiles.clear();
+            this.tileCache.clear();
+        }
+    }
+
+    private int getCacheGeneration() {
+        synchronized (this.pendingTiles) {
+            return this.cacheGeneration;
+        }
+    }
+
+    /**
+     * Waits until the tiles being fetched in the background are fetched or cancelled
+     *
+     * @param tileKeys The tiles to wait for
+     */
+    private void waitForPendingTiles(List<String> tileKeys) {
+        Set<Future<?>> tasks = new HashSet<Future<?>>();
+        synchronized (this.pendingTiles) {
+            for (String tileKey : tileKeys) {
+                Future<?> task = this.pendingTiles.get(tileKey);
+                if (task != null) {
+                    tasks.add(task);
+                }
+            }
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (CancellationException ex) {
+                // The missing tiles are fetched directly
+            } catch (ExecutionException ex) {
+                // The missing tiles are fetched directly
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the features of the cached tiles, by feature id
+     *
+     * @param tileKeys The tiles to get the features of
+     * @return
+     */
+    private Map<String, SimpleFeature> getCachedFeatures(List<String> tileKeys) {
+        Map<String, SimpleFeature> features = new LinkedHashMap<String, SimpleFeature>();
+        for (String tileKey : tileKeys) {
+            List<SimpleFeature> tileFeatures = this.tileCache.getTile(tileKey);
+            if (tileFeatures != null) {
+                for (SimpleFeature feature : tileFeatures) {
+                    features.put(feature.getID(), feature);
+                }
+            }
+        }
+        return features;
+    }
+
+    /**
+     * Requests the features of the tiles from the server and stores them in the tile cache. The
+     * tiles are requested by blocks of adjacent tiles, so the cached tiles between them, as the
+     * centre of an L-shape left by a diagonal pan, are not requested again. The features are not
+     * stored if the cache was cleared since the fetch started, as they might predate the local
+     * changes.
+     *
+     * @param tileKeys The tiles to fetch
+     * @param pixelResolution The pixel resolution to fetch the tiles for
+     * @param heldFeatures The features already held by the source, by id
+     * @param generation The generation of the tile cache when the fetch started
+     * @return The fetched features
+     */
+    private List<SimpleFeature> fetchTiles(List<String> tileKeys, double pixelResolution,
+            Map<String, SimpleFeature> heldFeatures, int generation) {
+        // Features crossing the block borders are returned for each block they intersect
+        Map<String, SimpleFeature> features = new LinkedHashMap<String, SimpleFeature>();
+        Map<String, SimpleFeature> reusedFeatures = new HashMap<String, SimpleFeature>(heldFeatures);
+        for (List<String> block : FeatureTileCache.getTileBlocks(tileKeys)) {
+            for (SimpleFeature feature : this.fetchBlock(
+                    block, pixelResolution, reusedFeatures, generation)) {
+                features.put(feature.getID(), feature);
+                reusedFeatures.put(feature.getID(), feature);
+            }
+        }
+        return new ArrayList<SimpleFeature>(features.values());
+    }
+
+    /**
+     * Requests the features of the extent of the block of tiles from the server and stores them
+     * in the tile cache, unless the cache was cleared since the fetch started.
+     *
+     * @param tileKeys The tiles of the block
+     * @param pixelResolution The pixel resolution to fetch the tiles for
+     * @param heldFeatures The features already held by the source, by id
+     * @param generation The generation of the tile cache when the fetch started
+     * @return The fetched features
+     */
+    private List<SimpleFeature> fetchBlock(List<String> tileKeys, double pixelResolution,
+            Map<String, SimpleFeature> heldFeatures, int generation) {
+        Envelope extent = FeatureTileCache.getTilesExtent(tileKeys);
+        double west = extent.getMinX();
+        double south = extent.getMinY();
+        double east = extent.getMaxX();
+        double north = extent.getMaxY();
+        ResultForNavigationInfo resultInfo = this.dataSource.GetQueryData(
+                this.getSchema().getTypeName(), west, south, east, north,
+                this.getLayer().getSrid(), pixelResolution);
+        if (this.getLayer().getLayerName().equals("parcels")) {
+            System.out.println("layer name:" + this.getLayer().getLayerName());
+            System.out.println("west:" + west);
+            System.out.println("south:" + south);
+            System.out.println("east:" + east);
+            System.out.println("north:" + north);
+            System.out.println("srid:" + this.getLayer().getSrid());
+            System.out.println("pixelTolerance:" + pixelResolution);
+            System.out.println("NR Features Returned:" + resultInfo.getToAdd().size());
+            System.out.println("-----------------------------------");
+        }
+        List<SimpleFeature> features = this.getFeaturesFromData(resultInfo.getToAdd(), heldFeatures);
+        synchronized (this.pendingTiles) {
+            if (generation == this.cacheGeneration) {
+                this.tileCache.putTiles(tileKeys, features);
+            }
+        }
+        return features;
+    }
+
+    /**
+     * It translates the result retrieved from the server to features recognized by map control.
+     * Features which are already held are reused instead of decoding their geometry again. The
+     * other geometries are decoded by the {@link WkbDecoder}.
      *
      * @param spatialResultList
+     * @param heldFeatures The features already held by the source, by id
      * @return
      */
-    private List<SimpleFeature> getFeaturesFromData(List<SpatialResult> spatialResultList) {
+    private List<SimpleFeature> getFeaturesFromData(List<SpatialResult> spatialResultList,
+            Map<String, SimpleFeature> heldFeatures) {
+        // The builder is not thread safe, features are built also on the fetching threads
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(this.getSchema());
+        List<byte[]> wkbList = new ArrayList<byte[]>();
+        for (SpatialResult spatialResult : spatialResultList) {
+            if (!heldFeatures.containsKey(spatialResult.getId())) {
+                wkbList.add(spatialResult.getTheGeom());
+            }
+        }
+        Iterator<Geometry> geometries = WkbDecoder.decode(wkbList).iterator();
         List<SimpleFeature> features = new ArrayList<SimpleFeature>();
         for (SpatialResult spatialResult : spatialResultList) {
-            try {
-                Geometry geomValue = getWkbReader().read(spatialResult.getTheGeom());
-                String fid = spatialResult.getId();
-                this.builder.set("theGeom", geomValue);
-                this.builder.set("label", spatialResult.getLabel());
-                features.add(this.builder.buildFeature(fid));
-            } catch (ParseException ex) {
-                org.sola.common.logging.LogUtility.log(
-                        "Error converting row to feature", ex);
+            SimpleFeature heldFeature = heldFeatures.get(spatialResult.getId());
+            if (heldFeature != null) {
+                features.add(heldFeature);
+                continue;
+            }
+            Geometry geomValue = geometries.next();
+            if (geomValue == null) {
+                continue;
             }
+            String fid = spatialResult.getId();
+            builder.set("theGeom", geomValue);
+            builder.set("label", spatialResult.getLabel());
+            features.add(builder.buildFeature(fid));
         }
         return features;
     }
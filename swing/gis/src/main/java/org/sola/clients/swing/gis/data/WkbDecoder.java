@@ -0,0 +1,165 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO). All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this list of conditions
+ * and the following disclaimer. 2. Redistributions in binary form must reproduce the above
+ * copyright notice,this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.gis.data;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Decodes the WKB geometries of the features drawn in the map. The coordinates are kept in packed
+ * coordinate sequences, which hold all vertices of a geometry in one array of doubles instead of
+ * one object per vertex. Large lists are split in chunks and decoded in parallel.
+ * <p>
+ * The geometries are meant only for drawing. Coordinates taken from packed sequences are copies
+ * so they cannot be modified in place.
+ * </p>
+ */
+public class WkbDecoder {
+
+    /**
+     * Minimum number of geometries for which decoding is split across threads.
+     */
+    public static final int PARALLEL_THRESHOLD = 2000;
+    /**
+     * Number of geometries decoded by one thread at a time.
+     */
+    public static final int CHUNK_SIZE = 1000;
+    private static final GeometryFactory PACKED_GEOMETRY_FACTORY = new GeometryFactory(
+            new PackedCoordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE, 2));
+    private static ThreadLocal<WKBReader> packedReader = new ThreadLocal<WKBReader>() {
+
+        @Override
+        protected WKBReader initialValue() {
+            return new WKBReader(PACKED_GEOMETRY_FACTORY);
+        }
+    };
+
+    private static class ExecutorHolder {
+
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "WkbDecoder-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private WkbDecoder() {
+    }
+
+    /**
+     * Gets the geometry factory of the decoded geometries
+     *
+     * @return
+     */
+    public static GeometryFactory getGeometryFactory() {
+        return PACKED_GEOMETRY_FACTORY;
+    }
+
+    /**
+     * Decodes the WKB geometries. Lists longer than {@link #PARALLEL_THRESHOLD} are decoded in
+     * parallel; the calling thread decodes the first chunk itself.
+     *
+     * @param wkbList The geometries in WKB format
+     * @return The geometries in the same order. A geometry which cannot be decoded is null.
+     */
+    public static List<Geometry> decode(List<byte[]> wkbList) {
+        if (wkbList.size() < PARALLEL_THRESHOLD
+                || Runtime.getRuntime().availableProcessors() < 2) {
+            return decodeChunk(wkbList);
+        }
+        List<Future<List<Geometry>>> chunks = new ArrayList<Future<List<Geometry>>>();
+        for (int start = CHUNK_SIZE; start < wkbList.size(); start += CHUNK_SIZE) {
+            final List<byte[]> chunk =
+                    wkbList.subList(start, Math.min(start + CHUNK_SIZE, wkbList.size()));
+            chunks.add(ExecutorHolder.INSTANCE.submit(new Callable<List<Geometry>>() {
+
+                @Override
+                public List<Geometry> call() {
+                    return decodeChunk(chunk);
+                }
+            }));
+        }
+        List<Geometry> geometries = new ArrayList<Geometry>(wkbList.size());
+        geometries.addAll(decodeChunk(wkbList.subList(0, CHUNK_SIZE)));
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                geometries.addAll(chunks.get(i).get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                for (Future<List<Geometry>> chunk : chunks) {
+                    chunk.cancel(false);
+                }
+                int start = (i + 1) * CHUNK_SIZE;
+                geometries.addAll(decodeChunk(wkbList.subList(start, wkbList.size())));
+                break;
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return geometries;
+    }
+
+    /**
+     * Decodes the WKB geometries in the calling thread.
+     *
+     * @param wkbList The geometries in WKB format
+     * @return The geometries in the same order. A geometry which cannot be decoded is null.
+     */
+    public static List<Geometry> decodeChunk(List<byte[]> wkbList) {
+        WKBReader reader = packedReader.get();
+        List<Geometry> geometries = new ArrayList<Geometry>(wkbList.size());
+        for (byte[] wkb : wkbList) {
+            Geometry geometry = null;
+            try {
+                geometry = reader.read(wkb);
+            } catch (ParseException ex) {
+                LogUtility.log("Error converting row to feature", ex);
+            }
+            geometries.add(geometry);
+        }
+        return geometries;
+    }
+}
@@ -29,7 +29,6 @@
  */
 package org.sola.clients.swing.gis.layer;
 
-import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.feature.SchemaException;
 import org.sola.clients.swing.gis.data.PojoDataAccess;
 import org.sola.clients.swing.gis.data.PojoFeatureSource;
@@ -48,6 +47,7 @@ public class PojoLayer extends ExtendedFeatureLayer {
     public static final String CONFIG_PENDING_PARCELS_LAYER_NAME = "pending-parcels";
     private PojoDataAccess dataAccess;
     private boolean forceRefresh = false;
+    private PojoFeatureSource pojoFeatureSource;
 
     /**
      * Constructor. Sets the Pojo Layer to visible by default.
@@ -80,8 +80,8 @@ public class PojoLayer extends ExtendedFeatureLayer {
         this.setLayerName(name);
         this.setTitle(this.getConfig().getTitle());
         String styleResource = this.getConfig().getStyle();
-        SimpleFeatureSource featureSource = new PojoFeatureSource(this.dataAccess, this);
-        this.initialize(name, featureSource, styleResource);
+        this.pojoFeatureSource = new PojoFeatureSource(this.dataAccess, this);
+        this.initialize(name, this.pojoFeatureSource, styleResource);
         this.setVisible(visible);
     }
 
@@ -103,6 +103,15 @@ public class PojoLayer extends ExtendedFeatureLayer {
         this.forceRefresh = forceRefresh;
     }
 
+    /**
+     * Gets the feature source from where the features of the layer are drawn
+     *
+     * @return
+     */
+    public PojoFeatureSource getPojoFeatureSource() {
+        return pojoFeatureSource;
+    }
+
     /**
      * Gets the configuration of the layer
      *
@@ -34,11 +34,12 @@ import com.vividsolutions.jts.io.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import javax.swing.DefaultListModel;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.swing.extended.Map;
 import org.geotools.swing.extended.util.Messaging;
+import org.sola.clients.swing.common.config.ConfigurationManager;
+import org.sola.clients.swing.common.config.EnvConfig;
 import org.sola.clients.swing.common.controls.FreeTextSearch;
 import org.sola.clients.swing.gis.beans.SpatialSearchOptionBean;
 import org.sola.clients.swing.gis.beans.SpatialSearchResultBean;
@@ -57,6 +58,10 @@ import org.sola.webservices.transferobjects.search.SpatialSearchResultTO;
  */
 public class MapObjectSearch extends FreeTextSearch {
 
+    /**
+     * The number of rows the map search queries on the server are limited to.
+     */
+    public static final int DEFAULT_SEARCH_RESULT_LIMIT = 30;
     private Map map;
     private SearchClient dataSource;
     private SpatialSearchOptionBean searchByObject;
@@ -66,6 +71,31 @@ public class MapObjectSearch extends FreeTextSearch {
         this.setHideListIfNotNeeded(false);
         this.setMinimalSearchStringLength(3);
         this.setRefreshTextInSelection(false);
+        this.setSearchCacheEnabled(true);
+        int searchResultLimit = ConfigurationManager.getEnvConfigValue(
+                EnvConfig.SOLA_MAP_SEARCH_RESULT_LIMIT, DEFAULT_SEARCH_RESULT_LIMIT);
+        if (searchResultLimit > 0) {
+            this.setSearchResultLimit(searchResultLimit);
+        }
+    }
+
+    /**
+     * Checks if the label of the found object matches the search string as the map search
+     * queries do. Every word of the search string, split on the characters other than letters
+     * and digits, must be contained in the label, ignoring case.
+     */
+    @Override
+    protected boolean matchesSearchString(Object element, String searchString) {
+        if (element == null || element.toString() == null) {
+            return false;
+        }
+        String label = element.toString().toLowerCase();
+        for (String word : searchString.toLowerCase().split("[^\\p{L}\\p{Nd}]+")) {
+            if (!word.isEmpty() && !label.contains(word)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -78,43 +108,39 @@ public class MapObjectSearch extends FreeTextSearch {
     }
 
     /**
-     * Executes the spatial search using the search string provided.
+     * Executes the spatial search using the search string provided. It is called in the
+     * background by the {@link FreeTextSearch}.
      *
      * @param searchString
-     * @param listModel
+     * @return The sorted list of found objects
      */
     @Override
-    public void onNewSearchString(String searchString, DefaultListModel listModel) {
+    protected List search(String searchString) {
         if (this.dataSource == null) {
             this.dataSource = WSManager.getInstance().getSearchService();
         }
 
-        if (this.searchByObject == null) {
-            return;
+        SpatialSearchOptionBean searchOption = this.searchByObject;
+        List<SpatialSearchResultBean> beanList = new ArrayList<SpatialSearchResultBean>();
+        if (searchOption == null) {
+            return beanList;
         }
 
         // Execute the query
         List<SpatialSearchResultTO> searchResults =
-                this.dataSource.searchSpatialObjects(this.searchByObject.getQueryName(), searchString);
+                this.dataSource.searchSpatialObjects(searchOption.getQueryName(), searchString);
 
-        listModel.clear();
-        
         if (searchResults != null && searchResults.size() > 0) {
             // Convert the TOs to Beans
-            List<SpatialSearchResultBean> beanList = new ArrayList<SpatialSearchResultBean>();
             for (SpatialSearchResultTO searchResult : searchResults) {
                 beanList.add(MappingManager.getMapper().map(searchResult,
                         SpatialSearchResultBean.class));
 
             }   
-            // Sort the beans and then display them in the list. 
+            // Sort the beans before they are displayed in the list. 
             Collections.sort(beanList);
-            for (SpatialSearchResultBean bean : beanList) {
-                listModel.addElement(bean); 
-            }
         }
-        
-
+        return beanList;
     }
 
     /**
@@ -153,6 +179,8 @@ public class MapObjectSearch extends FreeTextSearch {
      */
     public void setSearchByObject(SpatialSearchOptionBean searchByObject) {
         this.searchByObject = searchByObject;
+        // Cached results belong to the previous search option
+        this.clearSearchCache();
         if (searchByObject != null) {
             this.setMinimalSearchStringLength(searchByObject.getMinSearchStrLen());
         }
@@ -39,6 +39,7 @@ import org.geotools.swing.extended.ControlsBundle;
 import org.geotools.swing.extended.exception.InitializeLayerException;
 import org.geotools.swing.extended.exception.InitializeMapException;
 import org.sola.clients.swing.gis.Messaging;
+import org.sola.clients.swing.gis.data.FeatureFetchScheduler;
 import org.sola.clients.swing.gis.data.PojoDataAccess;
 import org.sola.clients.swing.gis.layer.PojoLayer;
 import org.sola.clients.swing.gis.tool.InformationTool;
@@ -118,6 +119,7 @@ public abstract class SolaControlsBundle extends ControlsBundle {
                 this.addLayerConfig(configMapLayer);
             }
             this.getMap().initializeSelectionLayer();
+            this.getMap().addMapPaneListener(new FeatureFetchScheduler(this.getMap()));
             this.getMap().zoomToFullExtent();
         } catch (InitializeLayerException ex) {
             Messaging.getInstance().show(GisMessage.GENERAL_CONTROLBUNDLE_ERROR);
@@ -0,0 +1,164 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO). All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this list of conditions
+ * and the following disclaimer. 2. Redistributions in binary form must reproduce the above
+ * copyright notice,this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.gis.data;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Pans the {@link PojoFeatureCollection} rapidly from one thread while other threads render it,
+ * checking that every rendering sees the complete features of one pan.
+ */
+public class PojoFeatureCollectionStressTest extends TestCase {
+
+    private static final int FEATURE_COUNT = 5000;
+    private static final int WINDOW = 400;
+    private static final int PANS = 3000;
+    private static final int RENDERERS = 3;
+
+    public PojoFeatureCollectionStressTest(String testName) {
+        super(testName);
+    }
+
+    public void testPanWhileRendering() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("parcels", "theGeom:Point,label:String");
+        final PojoFeatureCollection collection = new PojoFeatureCollection(type);
+        List<SimpleFeature> features = createFeatures(type);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean panning = new AtomicBoolean(true);
+        List<Thread> renderers = new ArrayList<Thread>();
+        for (int i = 0; i < RENDERERS; i++) {
+            Thread renderer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (panning.get()) {
+                            render(collection);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            renderer.start();
+            renderers.add(renderer);
+        }
+        Random random = new Random(1);
+        try {
+            for (int i = 0; i < PANS && failure.get() == null; i++) {
+                int start = random.nextInt(FEATURE_COUNT - WINDOW);
+                collection.update(features.subList(start, start + WINDOW));
+            }
+        } finally {
+            panning.set(false);
+        }
+        for (Thread renderer : renderers) {
+            renderer.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(WINDOW, collection.size());
+    }
+
+    public void testRemoveFeature() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("parcels", "theGeom:Point,label:String");
+        PojoFeatureCollection collection = new PojoFeatureCollection(type);
+        List<SimpleFeature> features = createFeatures(type).subList(0, WINDOW);
+        collection.update(features);
+        SimpleFeatureIterator iterator = collection.features();
+        try {
+            assertTrue(collection.remove(features.get(0)));
+            assertFalse(collection.remove(features.get(0)));
+            // The iteration started before the removal keeps its snapshot
+            int count = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            assertEquals(WINDOW, count);
+        } finally {
+            iterator.close();
+        }
+        assertEquals(WINDOW - 1, collection.size());
+    }
+
+    /**
+     * Iterates the collection as the renderer does. The features of one pan have consecutive
+     * numbers, so a consistent snapshot holds a full window of them.
+     */
+    private static void render(PojoFeatureCollection collection) {
+        Set<Integer> numbers = new HashSet<Integer>();
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        SimpleFeatureIterator iterator = collection.features();
+        try {
+            while (iterator.hasNext()) {
+                int number = Integer.parseInt(iterator.next().getID().substring(1));
+                assertTrue(numbers.add(number));
+                min = Math.min(min, number);
+                max = Math.max(max, number);
+            }
+        } finally {
+            iterator.close();
+        }
+        if (numbers.isEmpty()) {
+            return;
+        }
+        assertEquals(WINDOW, numbers.size());
+        assertEquals(WINDOW - 1, max - min);
+        // The bounds are of a snapshot taken later, but every pan spans the same width
+        ReferencedEnvelope bounds = collection.getBounds();
+        assertEquals(WINDOW - 1, bounds.getWidth(), 0);
+    }
+
+    private static List<SimpleFeature> createFeatures(SimpleFeatureType type) {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>(FEATURE_COUNT);
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            builder.set("theGeom", geometryFactory.createPoint(new Coordinate(i, 0)));
+            builder.set("label", Integer.toString(i));
+            features.add(builder.buildFeature("f" + i));
+        }
+        return features;
+    }
+}
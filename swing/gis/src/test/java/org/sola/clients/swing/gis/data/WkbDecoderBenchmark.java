@@ -0,0 +1,165 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO). All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this list of conditions
+ * and the following disclaimer. 2. Redistributions in binary form must reproduce the above
+ * copyright notice,this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.gis.data;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Compares decoding of the WKB geometries with the plain {@link WKBReader}, as done before, with
+ * the {@link WkbDecoder} decoding in one thread and in parallel. Reports the throughput, the
+ * bytes allocated during decoding and the heap retained by the decoded geometries. The benchmark
+ * takes several seconds and runs only if <code>sola.benchmark</code> system property is set, e.g.
+ * <code>mvn test -Dtest=WkbDecoderBenchmark -Dsola.benchmark=true</code>.
+ */
+public class WkbDecoderBenchmark extends TestCase {
+
+    private static final int GEOMETRY_COUNT = 20000;
+    private static final int VERTEX_COUNT = 24;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private interface Decoder {
+
+        List<Geometry> decode(List<byte[]> wkbList) throws ParseException;
+    }
+
+    public WkbDecoderBenchmark(String testName) {
+        super(testName);
+    }
+
+    public void testThroughput() throws Exception {
+        if (System.getProperty("sola.benchmark") == null) {
+            return;
+        }
+        List<byte[]> wkbList = createParcels(GEOMETRY_COUNT);
+        measure("WKBReader", wkbList, new Decoder() {
+
+            @Override
+            public List<Geometry> decode(List<byte[]> wkbList) throws ParseException {
+                WKBReader reader = new WKBReader();
+                List<Geometry> geometries = new ArrayList<Geometry>(wkbList.size());
+                for (byte[] wkb : wkbList) {
+                    geometries.add(reader.read(wkb));
+                }
+                return geometries;
+            }
+        });
+        measure("Packed", wkbList, new Decoder() {
+
+            @Override
+            public List<Geometry> decode(List<byte[]> wkbList) {
+                return WkbDecoder.decodeChunk(wkbList);
+            }
+        });
+        measure("Packed parallel", wkbList, new Decoder() {
+
+            @Override
+            public List<Geometry> decode(List<byte[]> wkbList) {
+                return WkbDecoder.decode(wkbList);
+            }
+        });
+    }
+
+    private void measure(String name, List<byte[]> wkbList, Decoder decoder)
+            throws ParseException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            decoder.decode(wkbList);
+        }
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            decoder.decode(wkbList);
+        }
+        long time = (System.nanoTime() - start) / 1000000;
+        long allocated = (getAllocatedBytes() - allocatedBefore) / ROUNDS;
+        long usedBefore = getUsedMemory();
+        List<Geometry> geometries = decoder.decode(wkbList);
+        long retained = getUsedMemory() - usedBefore;
+        assertEquals(wkbList.size(), geometries.size());
+        System.out.println(String.format(
+                "%-16s %10.1f geometries/s, allocated %6d KB, retained %6d KB per %d geometries",
+                name, wkbList.size() * ROUNDS * 1000.0 / Math.max(1, time),
+                allocated / 1024, retained / 1024, wkbList.size()));
+    }
+
+    /**
+     * Creates parcel like polygons in WKB format.
+     */
+    private static List<byte[]> createParcels(int count) {
+        GeometryFactory factory = new GeometryFactory();
+        WKBWriter writer = new WKBWriter();
+        List<byte[]> wkbList = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            double x = 1780000 + (i % 200) * 50;
+            double y = 5920000 + (i / 200) * 50;
+            Coordinate[] ring = new Coordinate[VERTEX_COUNT + 1];
+            for (int v = 0; v < VERTEX_COUNT; v++) {
+                double angle = 2 * Math.PI * v / VERTEX_COUNT;
+                ring[v] = new Coordinate(x + 20 * Math.cos(angle), y + 20 * Math.sin(angle));
+            }
+            ring[VERTEX_COUNT] = ring[0];
+            wkbList.add(writer.write(
+                    factory.createPolygon(factory.createLinearRing(ring), null)));
+        }
+        return wkbList;
+    }
+
+    /**
+     * Gets the bytes allocated by all threads so far or 0 if the JVM does not report them.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long allocated = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(
+                threadBean.getAllThreadIds())) {
+            if (bytes > 0) {
+                allocated += bytes;
+            }
+        }
+        return allocated;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
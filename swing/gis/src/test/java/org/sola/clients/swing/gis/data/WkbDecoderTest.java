@@ -0,0 +1,75 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations (FAO). All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this list of conditions
+ * and the following disclaimer. 2. Redistributions in binary form must reproduce the above
+ * copyright notice,this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.gis.data;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link WkbDecoder} decodes the geometries as the plain {@link WKBReader} does.
+ */
+public class WkbDecoderTest extends TestCase {
+
+    public WkbDecoderTest(String testName) {
+        super(testName);
+    }
+
+    public void testDecodeMatchesWkbReader() throws Exception {
+        List<byte[]> wkbList = createParcels(WkbDecoder.PARALLEL_THRESHOLD + 500);
+        wkbList.add(new byte[]{0, 0, 0, 0, 99});
+        List<Geometry> geometries = WkbDecoder.decode(wkbList);
+        assertEquals(wkbList.size(), geometries.size());
+        WKBReader reader = new WKBReader();
+        for (int i = 0; i < wkbList.size() - 1; i++) {
+            assertTrue(reader.read(wkbList.get(i)).equalsExact(geometries.get(i)));
+        }
+        assertNull(geometries.get(wkbList.size() - 1));
+    }
+
+    /**
+     * Creates square polygons in WKB format.
+     */
+    private static List<byte[]> createParcels(int count) {
+        GeometryFactory factory = new GeometryFactory();
+        WKBWriter writer = new WKBWriter();
+        List<byte[]> wkbList = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            double x = 1780000 + (i % 200) * 50;
+            double y = 5920000 + (i / 200) * 50;
+            Coordinate[] ring = new Coordinate[]{new Coordinate(x, y), new Coordinate(x + 40, y),
+                new Coordinate(x + 40, y + 40), new Coordinate(x, y + 40), new Coordinate(x, y)};
+            wkbList.add(writer.write(
+                    factory.createPolygon(factory.createLinearRing(ring), null)));
+        }
+        return wkbList;
+    }
+}
@@ -32,15 +32,54 @@ import java.beans.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import org.sola.common.FileUtility;
 
-/** This component provides preview capability for the {@link JFileChooser} component. */ 
+/**
+ * This component provides preview capability for the {@link JFileChooser} component.
+ * Preview is decoded in the background thread. Formats supported by ImageIO are
+ * read with source subsampling, so only every n-th pixel of the big scan is
+ * decoded. Decoding of the previous file is cancelled when selection changes.
+ */
 public class ImagePreview extends JComponent implements PropertyChangeListener {
     
+    private static final int CACHE_SIZE = 20;
+    private static final ExecutorService decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ImagePreview-decoder");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /** Recent previews by file path, modification time and width. */
+    private static final Map<String, Image> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Image>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
     Image thumbnail = null;
     File file = null;
     private int imageWidth;
     private int imageHeight;
+    private Future<?> decoding;
+    private volatile ImageReader activeReader;
 
     public ImagePreview(JFileChooser fc, int imageWidth, int imageHeight) {
         this.imageWidth = imageWidth;
@@ -50,20 +89,125 @@ public class ImagePreview extends JComponent implements PropertyChangeListener {
         fc.addPropertyChangeListener(this);
     }
 
-    /** Creates thumbnail of the selected file.*/
+    /**
+     * Creates thumbnail of the selected file. Thumbnail is taken from the cache
+     * or decoded in the background and painted when ready.
+     */
     public void loadImage() {
+        cancelDecoding();
         if (file == null) {
             thumbnail = null;
             return;
         }
 
-        BufferedImage image = FileUtility.createImageThumbnail(file.getPath(), imageWidth, -1);
-        
-        if(image == null){
-            thumbnail = null;
+        final File imageFile = file;
+        final String key = imageFile.getPath() + "|" + imageFile.lastModified() + "|" + imageWidth;
+        thumbnail = cache.get(key);
+        if (thumbnail != null) {
             return;
         }
-        thumbnail = Toolkit.getDefaultToolkit().createImage(image.getSource());
+        decoding = decoder.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                final Image image = decodeImage(imageFile);
+                if (image == null || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                cache.put(key, image);
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (imageFile.equals(file)) {
+                            thumbnail = image;
+                            repaint();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /** Stops decoding of the previous file. */
+    private void cancelDecoding() {
+        if (decoding != null) {
+            decoding.cancel(true);
+            decoding = null;
+        }
+        ImageReader reader = activeReader;
+        if (reader != null) {
+            reader.abort();
+        }
+    }
+
+    /**
+     * Decodes preview of the image, scaled to the preview width. Returns null if
+     * the file is not an image or decoding was cancelled.
+     */
+    private Image decodeImage(File imageFile) {
+        BufferedImage image = null;
+        try {
+            image = readSubsampled(imageFile);
+        } catch (IOException ex) {
+            image = null;
+        }
+        if (image == null) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            // Format is not supported by ImageIO readers
+            image = FileUtility.createImageThumbnail(imageFile.getPath(), imageWidth, -1);
+            return image == null ? null : Toolkit.getDefaultToolkit().createImage(image.getSource());
+        }
+        if (image.getWidth() <= imageWidth) {
+            return image;
+        }
+        int height = Math.max(1, image.getHeight() * imageWidth / image.getWidth());
+        BufferedImage scaled = new BufferedImage(imageWidth, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, imageWidth, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Reads the first image of the file with source subsampling, so that decoded
+     * image is not much bigger than the preview. Returns null if there is no
+     * ImageIO reader for the file.
+     */
+    private BufferedImage readSubsampled(File imageFile) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(imageFile);
+        if (in == null) {
+            return null;
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                activeReader = reader;
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                int step = Math.max(1, reader.getWidth(0) / imageWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                activeReader = null;
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
     }
 
     /** 
@@ -99,7 +243,7 @@ public class ImagePreview extends JComponent implements PropertyChangeListener {
     /** Paints the preview icon.*/
     @Override
     protected void paintComponent(Graphics g) {
-        if (thumbnail == null) {
+        if (thumbnail == null && file != null && decoding == null) {
             loadImage();
         }
         if (thumbnail != null) {
@@ -116,4 +260,4 @@ public class ImagePreview extends JComponent implements PropertyChangeListener {
             g.drawImage(thumbnail, x, y, null);
         }
     }
-}
\ No newline at end of file
+}
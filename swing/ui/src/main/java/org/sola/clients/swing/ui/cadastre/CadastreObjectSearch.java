@@ -33,7 +33,6 @@ package org.sola.clients.swing.ui.cadastre;
 import org.sola.clients.swing.common.controls.FreeTextSearch;
 import java.util.LinkedList;
 import java.util.List;
-import javax.swing.DefaultListModel;
 import org.sola.services.boundary.wsclients.WSManager;
 import org.sola.clients.beans.cadastre.CadastreObjectBean;
 import org.sola.clients.beans.converters.TypeConverters;
@@ -48,7 +47,7 @@ public class CadastreObjectSearch extends FreeTextSearch {
     private CadastreClient dataSource;
 
     @Override
-    public void onNewSearchString(String searchString, DefaultListModel listModel) {
+    protected List search(String searchString) {
         if (this.dataSource == null) {
             this.dataSource = WSManager.getInstance().getCadastreService();
         }
@@ -57,11 +56,6 @@ public class CadastreObjectSearch extends FreeTextSearch {
         TypeConverters.TransferObjectListToBeanList(
                 this.dataSource.getCadastreObjectByParts(searchString), 
                 CadastreObjectBean.class, (List)searchResult);
-        
-        listModel.clear();
-        
-        for (CadastreObjectBean cadastreObject : searchResult) {
-            listModel.addElement(cadastreObject);
-        }
+        return searchResult;
     }
 }
@@ -30,11 +30,12 @@ package org.sola.clients.swing.ui.party;
 import org.sola.clients.swing.common.controls.FreeTextSearch;
 import java.util.LinkedList;
 import java.util.List;
-import javax.swing.DefaultListModel;
 import org.sola.services.boundary.wsclients.WSManager;
+import org.sola.clients.beans.cache.CacheManager;
 import org.sola.clients.beans.converters.TypeConverters;
 import org.sola.clients.beans.party.PartySearchParamsBean;
 import org.sola.clients.beans.party.PartySearchResultBean;
+import org.sola.clients.beans.party.PartySummaryBean;
 import org.sola.services.boundary.wsclients.SearchClient;
 import org.sola.webservices.transferobjects.search.PartySearchParamsTO;
 
@@ -42,6 +43,7 @@ import org.sola.webservices.transferobjects.search.PartySearchParamsTO;
  * Quick search control for parties
  */
 public class PartyQuickSearch extends FreeTextSearch {
+    private static final int LOCAL_SEARCH_MAX_RESULTS = 100;
     private SearchClient searchClient;
     private PartySearchParamsBean searchParams;
     
@@ -50,8 +52,31 @@ public class PartyQuickSearch extends FreeTextSearch {
         searchParams = new PartySearchParamsBean();
     }
     
+    /**
+     * Looks the parties up in the local index first and returns them without calling the
+     * server if any are found. The server is queried only if nothing is found locally, or if
+     * the search is restricted to party or role types, which the index doesn't hold. Parties
+     * drop out of the index some time after they were loaded, so the ones changed or removed
+     * by other users are fetched from the server again.
+     */
     @Override
-    public void onNewSearchString(String searchString, DefaultListModel listModel) {
+    protected List search(String searchString) {
+        if (searchParams.getTypeCode() == null && searchParams.getRoleTypeCode() == null) {
+            List<PartySummaryBean> localResult = CacheManager.getPartySearchIndex().search(
+                    searchString, LOCAL_SEARCH_MAX_RESULTS);
+            if (!localResult.isEmpty()) {
+                List<PartySearchResultBean> searchResult = new LinkedList<PartySearchResultBean>();
+                for (PartySummaryBean party : localResult) {
+                    searchResult.add(toSearchResult(party));
+                }
+                return searchResult;
+            }
+        }
+        return searchServer(searchString);
+    }
+
+    /** Queries the server for the parties and adds them to the local index. */
+    private List<PartySearchResultBean> searchServer(String searchString) {
         if (this.searchClient == null) {
             this.searchClient = WSManager.getInstance().getSearchService();
         }
@@ -63,12 +88,26 @@ public class PartyQuickSearch extends FreeTextSearch {
         
         TypeConverters.TransferObjectListToBeanList(searchClient.searchParties(params), 
                 PartySearchResultBean.class, (List)searchResult);
-        
-        listModel.clear();
-        
-        for (PartySearchResultBean party : searchResult) {
-            listModel.addElement(party);
+        CacheManager.getPartySearchIndex().putAll(searchResult);
+        return searchResult;
+    }
+
+    /** Returns the party from the local index as a search result. */
+    private PartySearchResultBean toSearchResult(PartySummaryBean party) {
+        if (party instanceof PartySearchResultBean) {
+            return (PartySearchResultBean) party;
+        }
+        PartySearchResultBean result = new PartySearchResultBean();
+        result.setId(party.getId());
+        result.setRowVersion(party.getRowVersion());
+        result.setName(party.getName());
+        result.setLastName(party.getLastName());
+        result.setExtId(party.getExtId());
+        result.setRightHolder(party.isRightHolder());
+        if (party.getTypeCode() != null) {
+            result.setTypeCode(party.getTypeCode());
         }
+        return result;
     }
 
     public PartySearchParamsBean getSearchParams() {
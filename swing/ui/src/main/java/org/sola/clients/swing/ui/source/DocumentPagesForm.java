@@ -0,0 +1,158 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import java.awt.BorderLayout;
+import java.awt.Desktop;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ResourceBundle;
+import java.util.logging.Level;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.WindowConstants;
+import org.sola.clients.beans.digitalarchive.DocumentOpener;
+import org.sola.common.logging.LogUtility;
+import org.sola.common.messaging.ClientMessage;
+import org.sola.common.messaging.MessageUtility;
+
+/**
+ * Shows PDF and image documents inside the application, using {@link DocumentPagesPanel}.
+ */
+public class DocumentPagesForm extends JFrame {
+
+    /** System property, set to false to open all documents by the external application. */
+    public static final String EMBEDDED_VIEWER_PROPERTY = "SOLA_EMBEDDED_VIEWER";
+    private final File file;
+    private final DocumentPagesPanel pagesPanel;
+
+    public DocumentPagesForm(File file, PageSource pageSource) {
+        this.file = file;
+        ResourceBundle bundle = ResourceBundle.getBundle("org/sola/clients/swing/ui/source/Bundle");
+        setTitle(file.getName());
+        setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        pagesPanel = new DocumentPagesPanel();
+        pagesPanel.setPageSource(pageSource);
+
+        JButton btnOpenExternal = new JButton(bundle.getString("DocumentPagesForm.btnOpenExternal.text"));
+        btnOpenExternal.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openExternal();
+            }
+        });
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonsPanel.add(btnOpenExternal);
+
+        getContentPane().add(pagesPanel, BorderLayout.CENTER);
+        getContentPane().add(buttonsPanel, BorderLayout.SOUTH);
+        addWindowListener(new WindowAdapter() {
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                pagesPanel.setPageSource(null);
+            }
+        });
+        setSize(800, 900);
+        setLocationRelativeTo(null);
+    }
+
+    private void openExternal() {
+        try {
+            Desktop.getDesktop().open(file);
+        } catch (IOException ex) {
+            MessageUtility.displayMessage(ClientMessage.ERR_FAILED_OPEN_FILE,
+                    new Object[]{file.getName()});
+        }
+    }
+
+    /** Returns true unless the embedded viewer is switched off by {@link #EMBEDDED_VIEWER_PROPERTY}. */
+    public static boolean isViewerEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(EMBEDDED_VIEWER_PROPERTY));
+    }
+
+    /** Returns true if the file can be shown by the form. */
+    public static boolean isSupported(File file) {
+        return file.getName().toLowerCase().endsWith(".pdf") || ImagePageSource.isSupported(file);
+    }
+
+    /** Creates page source for the PDF or image file. */
+    public static PageSource createPageSource(File file) throws IOException {
+        if (file.getName().toLowerCase().endsWith(".pdf")) {
+            return new PdfPageSource(file);
+        }
+        return new ImagePageSource(file);
+    }
+
+    /**
+     * Creates opener of the digital archive documents, showing supported
+     * documents in the form. Other documents and documents which can't be read
+     * are left to the external application.
+     */
+    public static DocumentOpener createDocumentOpener() {
+        return new DocumentOpener() {
+
+            @Override
+            public boolean open(final File file) {
+                if (!isSupported(file)) {
+                    return false;
+                }
+                final PageSource pageSource;
+                try {
+                    pageSource = createPageSource(file);
+                } catch (IOException ex) {
+                    LogUtility.log("Failed to read " + file.getName() + ": " + ex.getMessage(), Level.WARNING);
+                    return false;
+                } catch (RuntimeException ex) {
+                    LogUtility.log("Failed to read " + file.getName() + ": " + ex.getMessage(), Level.WARNING);
+                    return false;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        DocumentPagesForm form = new DocumentPagesForm(file, pageSource);
+                        form.setVisible(true);
+                        form.pagesPanel.fitWidth();
+                    }
+                });
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,361 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.sola.common.logging.LogUtility;
+
+/**
+ * Shows pages of the document in the scrollable list. Only visible pages are
+ * rendered, on the background pool, and the next pages are prefetched. Rendered
+ * pages are kept in the cache, limited by the memory they take.
+ */
+public class DocumentPagesPanel extends JPanel {
+
+    /** Number of pages after the visible ones to render in advance. */
+    private static final int PREFETCH_PAGES = 2;
+    private static final int CACHE_SIZE_BYTES = 64 * 1024 * 1024;
+    private static final int PAGE_GAP = 10;
+    private static final double ZOOM_STEP = 1.25;
+    private static final double MIN_ZOOM = 0.1;
+    private static final double MAX_ZOOM = 4;
+    private static final ExecutorService renderer = Executors.newFixedThreadPool(2, new ThreadFactory() {
+
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "DocumentPages-renderer-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ResourceBundle bundle = ResourceBundle.getBundle("org/sola/clients/swing/ui/source/Bundle");
+    private final PageCache cache = new PageCache();
+    private final Map<Integer, Future<?>> renderings = new HashMap<Integer, Future<?>>();
+    private PageSource pageSource;
+    private double zoom = 1;
+    private JPanel pagesPanel;
+    private JScrollPane scrollPane;
+    private JLabel lblPage;
+    private PageView[] pageViews = new PageView[0];
+
+    public DocumentPagesPanel() {
+        super(new BorderLayout());
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        JButton btnZoomOut = new JButton(bundle.getString("DocumentPagesPanel.btnZoomOut.text"));
+        btnZoomOut.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setZoom(zoom / ZOOM_STEP);
+            }
+        });
+        JButton btnZoomIn = new JButton(bundle.getString("DocumentPagesPanel.btnZoomIn.text"));
+        btnZoomIn.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setZoom(zoom * ZOOM_STEP);
+            }
+        });
+        lblPage = new JLabel();
+        toolBar.add(btnZoomOut);
+        toolBar.add(btnZoomIn);
+        toolBar.addSeparator();
+        toolBar.add(lblPage);
+        add(toolBar, BorderLayout.NORTH);
+
+        pagesPanel = new JPanel();
+        pagesPanel.setLayout(new BoxLayout(pagesPanel, BoxLayout.Y_AXIS));
+        pagesPanel.setBackground(Color.GRAY);
+        scrollPane = new JScrollPane(pagesPanel);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(20);
+        scrollPane.getViewport().addChangeListener(new ChangeListener() {
+
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                updateVisiblePages();
+            }
+        });
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    public PageSource getPageSource() {
+        return pageSource;
+    }
+
+    /** Sets the document to show. The previous source is closed. */
+    public void setPageSource(PageSource pageSource) {
+        cancelRenderings(-1, -1);
+        cache.clear();
+        if (this.pageSource != null) {
+            this.pageSource.close();
+        }
+        this.pageSource = pageSource;
+        pagesPanel.removeAll();
+        int count = pageSource == null ? 0 : pageSource.getPageCount();
+        pageViews = new PageView[count];
+        for (int i = 0; i < count; i++) {
+            pageViews[i] = new PageView(i);
+            pagesPanel.add(Box.createVerticalStrut(PAGE_GAP));
+            pagesPanel.add(pageViews[i]);
+        }
+        pagesPanel.add(Box.createVerticalStrut(PAGE_GAP));
+        updatePageSizes();
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    /** Sets zoom factor, 1 for 100%. */
+    public void setZoom(double zoom) {
+        this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        cancelRenderings(-1, -1);
+        updatePageSizes();
+    }
+
+    /** Sets zoom to fit page width into the viewer. */
+    public void fitWidth() {
+        if (pageViews.length > 0) {
+            int width = scrollPane.getViewport().getWidth() - 2 * PAGE_GAP;
+            if (width > 0) {
+                setZoom((double) width / pageSource.getPageSize(0).width);
+            }
+        }
+    }
+
+    private void updatePageSizes() {
+        for (PageView pageView : pageViews) {
+            pageView.updateSize();
+        }
+        pagesPanel.revalidate();
+        pagesPanel.repaint();
+    }
+
+    /**
+     * Requests rendering of the visible pages and the pages after them, cancels
+     * rendering of the pages scrolled away.
+     */
+    private void updateVisiblePages() {
+        if (pageViews.length == 0) {
+            lblPage.setText(null);
+            return;
+        }
+        Rectangle viewRect = scrollPane.getViewport().getViewRect();
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < pageViews.length; i++) {
+            if (pageViews[i].getBounds().intersects(viewRect)) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first < 0) {
+            return;
+        }
+        lblPage.setText(MessageFormat.format(bundle.getString("DocumentPagesPanel.pageOf"),
+                first + 1, pageViews.length));
+        int prefetchLast = Math.min(pageViews.length - 1, last + PREFETCH_PAGES);
+        cancelRenderings(first, prefetchLast);
+        for (int i = first; i <= prefetchLast; i++) {
+            requestPage(i);
+        }
+    }
+
+    /** Cancels renderings of the pages outside of the range. */
+    private void cancelRenderings(int first, int last) {
+        for (Iterator<Map.Entry<Integer, Future<?>>> it = renderings.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Integer, Future<?>> rendering = it.next();
+            if (rendering.getKey() < first || rendering.getKey() > last) {
+                rendering.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+    /** Starts rendering of the page, if it's not cached or being rendered. */
+    private void requestPage(final int pageIndex) {
+        final double pageZoom = zoom;
+        final PageSource source = pageSource;
+        if (cache.get(pageIndex, pageZoom) != null || renderings.containsKey(pageIndex)) {
+            return;
+        }
+        renderings.put(pageIndex, renderer.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                BufferedImage image = null;
+                try {
+                    image = source.renderPage(pageIndex, pageZoom);
+                } catch (IOException ex) {
+                    LogUtility.log("Failed to render page " + (pageIndex + 1) + ": " + ex.getMessage(),
+                            Level.WARNING);
+                } catch (RuntimeException ex) {
+                    LogUtility.log("Failed to render page " + (pageIndex + 1) + ": " + ex.getMessage(),
+                            Level.WARNING);
+                }
+                final BufferedImage renderedImage = image;
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (source != pageSource) {
+                            return;
+                        }
+                        renderings.remove(pageIndex);
+                        if (renderedImage != null && pageZoom == zoom) {
+                            cache.put(pageIndex, pageZoom, renderedImage);
+                            pageViews[pageIndex].repaint();
+                        } else if (renderedImage == null) {
+                            pageViews[pageIndex].failed = true;
+                            pageViews[pageIndex].repaint();
+                        }
+                    }
+                });
+            }
+        }));
+    }
+
+    /** Component of one page, painting rendered page or placeholder. */
+    private class PageView extends JComponent {
+
+        private final int pageIndex;
+        private boolean failed;
+
+        PageView(int pageIndex) {
+            this.pageIndex = pageIndex;
+            setAlignmentX(Component.CENTER_ALIGNMENT);
+            setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        }
+
+        void updateSize() {
+            Dimension pageSize = pageSource.getPageSize(pageIndex);
+            Dimension size = new Dimension((int) Math.round(pageSize.width * zoom),
+                    (int) Math.round(pageSize.height * zoom));
+            setPreferredSize(size);
+            setMaximumSize(size);
+            setMinimumSize(size);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            BufferedImage image = cache.get(pageIndex, zoom);
+            if (image != null) {
+                g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+                return;
+            }
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setColor(Color.GRAY);
+            String text = failed ? bundle.getString("DocumentPagesPanel.pageFailed")
+                    : MessageFormat.format(bundle.getString("DocumentPagesPanel.pageLoading"), pageIndex + 1);
+            g.drawString(text, 10, 20);
+            if (!failed) {
+                requestPage(pageIndex);
+            }
+        }
+    }
+
+    /** Cache of the rendered pages, limited by the size of the images in bytes. */
+    private static class PageCache {
+
+        private final LinkedHashMap<String, BufferedImage> pages =
+                new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+        private long size = 0;
+
+        BufferedImage get(int pageIndex, double zoom) {
+            return pages.get(getKey(pageIndex, zoom));
+        }
+
+        void put(int pageIndex, double zoom, BufferedImage image) {
+            BufferedImage old = pages.put(getKey(pageIndex, zoom), image);
+            if (old != null) {
+                size -= getSize(old);
+            }
+            size += getSize(image);
+            Iterator<BufferedImage> it = pages.values().iterator();
+            while (size > CACHE_SIZE_BYTES && pages.size() > 1 && it.hasNext()) {
+                size -= getSize(it.next());
+                it.remove();
+            }
+        }
+
+        void clear() {
+            pages.clear();
+            size = 0;
+        }
+
+        private String getKey(int pageIndex, double zoom) {
+            return pageIndex + "@" + zoom;
+        }
+
+        private long getSize(BufferedImage image) {
+            return (long) image.getWidth() * image.getHeight() * 4;
+        }
+    }
+}
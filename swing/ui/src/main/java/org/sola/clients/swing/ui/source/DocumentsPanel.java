@@ -34,7 +34,6 @@ import java.beans.PropertyChangeListener;
 import java.util.List;
 import javax.swing.JPopupMenu;
 import org.sola.clients.beans.controls.SolaList;
-import org.sola.clients.beans.digitalarchive.DocumentBean;
 import org.sola.clients.beans.source.SourceBean;
 import org.sola.clients.beans.source.SourceListBean;
 import org.sola.clients.swing.common.tasks.SolaTask;
@@ -172,7 +171,7 @@ public class DocumentsPanel extends javax.swing.JPanel {
                 @Override
                 public Void doTask() {
                     setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_DOCUMENT_OPENING));
-                    DocumentBean.openDocument(sourceListBean.getSelectedSource().getArchiveDocument().getId());
+                    sourceListBean.getSelectedSource().getArchiveDocument().openDocument();
                     return null;
                 }
             };
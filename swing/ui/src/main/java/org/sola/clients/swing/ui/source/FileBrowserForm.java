@@ -31,18 +31,27 @@ package org.sola.clients.swing.ui.source;
 
 import java.awt.ComponentOrientation;
 import java.awt.Desktop;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.Date;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.UUID;
 import javax.swing.ImageIcon;
-import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.sola.clients.beans.digitalarchive.ChunkedUploader;
 import org.sola.clients.beans.digitalarchive.DocumentBean;
 import org.sola.clients.beans.digitalarchive.FileBinaryBean;
+import org.sola.clients.beans.digitalarchive.FileInfoBean;
 import org.sola.clients.beans.digitalarchive.FileInfoListBean;
+import org.sola.clients.beans.digitalarchive.ThumbnailService;
 import org.sola.clients.beans.source.SourceBean;
 import org.sola.clients.swing.common.tasks.SolaTask;
 import org.sola.clients.swing.common.tasks.TaskManager;
@@ -74,6 +83,18 @@ public class FileBrowserForm extends javax.swing.JDialog {
     public static final String ATTACHED_DOCUMENT = "AttachedDocumentId";
     private ResourceBundle formBundle = ResourceBundle.getBundle("org/sola/clients/swing/ui/source/Bundle");
     private AttachAction attachAction = AttachAction.CLOSE_WINDOW;
+    /** Number of rows above and below the selected one to prefetch thumbnails for. */
+    private static final int PREFETCH_ROWS = 3;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    /** Properties of the {@link FileInfoBean} to sort the remote files by, in the order of the columns. */
+    private static final String[] SORT_PROPERTIES = new String[]{FileInfoBean.NAME_PROPERTY,
+        FileInfoBean.MODIFICATION_DATE_PROPERTY, FileInfoBean.FILE_SIZE_PROPERTY};
+    private boolean loadingRemoteFiles = false;
+    /**
+     * Key of the tasks loading the remote files. A refresh cancels the load in
+     * progress, a next page requested during the refresh gets the refreshed list.
+     */
+    private final String remoteFilesTaskKey = "FileBrowserForm.remoteFiles:" + UUID.randomUUID().toString();
 
     public FileBrowserForm(java.awt.Frame parent, boolean modal, AttachAction attachAction) {
         super(parent, modal);
@@ -85,7 +106,24 @@ public class FileBrowserForm extends javax.swing.JDialog {
     private void postInit() {
         serverFiles.loadServerFileInfoList();
         serverFiles.addPropertyChangeListener(serverFilesListener());
+        jScrollPane1.getViewport().addChangeListener(new ChangeListener() {
+
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                prefetchVisibleThumbnails();
+                loadMoreRemoteFiles();
+            }
+        });
+        tbServerFiles.getTableHeader().addMouseListener(new MouseAdapter() {
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                sortRemoteFiles(tbServerFiles.columnAtPoint(e.getPoint()));
+            }
+        });
         localFileChooser.setControlButtonsAreShown(false);
+        // Several selected scans are combined into one document
+        localFileChooser.setMultiSelectionEnabled(ScanProcessor.isEnabled());
         localFileChooser.setAccessory(new ImagePreview(localFileChooser, 225, 300));
         documentSearchPanel.addPropertyChangeListener(new PropertyChangeListener() {
 
@@ -111,28 +149,26 @@ public class FileBrowserForm extends javax.swing.JDialog {
                 if (e.getPropertyName().equals(FileInfoListBean.SELECTED_FILE_INFO_BEAN_PROPERTY)) {
                     customizeRemoteFileButtons();
                     // Bind thumbnail
-                    if (serverFiles.getSelectedFileInfoBean() != null) {
-
-                        lblServerPreview.setIcon(null);
-                        lblServerPreview.setText(formBundle.getString("FileBrowser.LoadingThumbnailMsg"));
-                        lblServerPreview.repaint();
-
-                        Runnable loadingThumbnail = new Runnable() {
-
-                            @Override
-                            public void run() {
-                                ImageIcon thumbnail = serverFiles.getSelectedFileInfoBean().getThumbnailIcon();
-                                if (thumbnail != null) {
-                                    lblServerPreview.setIcon(thumbnail);
-                                    lblServerPreview.setText(null);
-                                } else {
-                                    lblServerPreview.setIcon(null);
-                                    lblServerPreview.setText(formBundle.getString("FileBrowser.FormatForThumbnailNotSupportedMsg"));
-                                }
-                            }
-                        };
-                        SwingUtilities.invokeLater(loadingThumbnail);
-
+                    FileInfoBean selectedFile = serverFiles.getSelectedFileInfoBean();
+                    if (selectedFile != null) {
+                        ThumbnailService thumbnails = ThumbnailService.getInstance();
+                        if (thumbnails.isThumbnailLoaded(selectedFile)) {
+                            showThumbnail(thumbnails.getCachedThumbnail(selectedFile));
+                        } else {
+                            lblServerPreview.setIcon(null);
+                            lblServerPreview.setText(formBundle.getString("FileBrowser.LoadingThumbnailMsg"));
+                            thumbnails.requestThumbnail(selectedFile, ThumbnailService.PRIORITY_SELECTED,
+                                    new ThumbnailService.ThumbnailListener() {
+
+                                        @Override
+                                        public void thumbnailLoaded(FileInfoBean file, ImageIcon thumbnail) {
+                                            if (file == serverFiles.getSelectedFileInfoBean()) {
+                                                showThumbnail(thumbnail);
+                                            }
+                                        }
+                                    });
+                        }
+                        prefetchThumbnails(serverFiles.getFileInfoList().indexOf(selectedFile));
                     } else {
                         lblServerPreview.setIcon(null);
                         lblServerPreview.setText(formBundle.getString("FileBrowser.ThumbnailPreviewCaption"));
@@ -143,6 +179,114 @@ public class FileBrowserForm extends javax.swing.JDialog {
         return listener;
     }
 
+    private void showThumbnail(ImageIcon thumbnail) {
+        if (thumbnail != null) {
+            lblServerPreview.setIcon(thumbnail);
+            lblServerPreview.setText(null);
+        } else {
+            lblServerPreview.setIcon(null);
+            lblServerPreview.setText(formBundle.getString("FileBrowser.FormatForThumbnailNotSupportedMsg"));
+        }
+    }
+
+    /**
+     * Requests thumbnails of the files around the selected one, so that moving
+     * through the list shows them without waiting. Neighbours are taken in the
+     * table order, which can differ from the list order when the table is sorted.
+     */
+    private void prefetchThumbnails(int selectedIndex) {
+        if (selectedIndex < 0) {
+            return;
+        }
+        int selectedRow = tbServerFiles.convertRowIndexToView(selectedIndex);
+        if (selectedRow < 0) {
+            return;
+        }
+        for (int i = 1; i <= PREFETCH_ROWS; i++) {
+            prefetchThumbnail(selectedRow + i);
+            prefetchThumbnail(selectedRow - i);
+        }
+    }
+
+    /** Requests thumbnail of the file in the given table row. */
+    private void prefetchThumbnail(int row) {
+        if (row < 0 || row >= tbServerFiles.getRowCount()) {
+            return;
+        }
+        int index = tbServerFiles.convertRowIndexToModel(row);
+        if (index < serverFiles.getFileInfoList().size()) {
+            ThumbnailService.getInstance().requestThumbnail(serverFiles.getFileInfoList().get(index),
+                    ThumbnailService.PRIORITY_PREFETCH, null);
+        }
+    }
+
+    /** Requests thumbnails of the files, visible in the table. */
+    private void prefetchVisibleThumbnails() {
+        Rectangle visibleRect = tbServerFiles.getVisibleRect();
+        int firstRow = tbServerFiles.rowAtPoint(visibleRect.getLocation());
+        if (firstRow < 0) {
+            return;
+        }
+        int lastRow = tbServerFiles.rowAtPoint(new Point(visibleRect.x,
+                visibleRect.y + visibleRect.height - 1));
+        if (lastRow < 0) {
+            lastRow = tbServerFiles.getRowCount() - 1;
+        }
+        ThumbnailService thumbnails = ThumbnailService.getInstance();
+        // Rows scrolled out of view are not needed anymore
+        thumbnails.cancelRequests(ThumbnailService.PRIORITY_SELECTED);
+        for (int row = firstRow; row <= lastRow; row++) {
+            int index = tbServerFiles.convertRowIndexToModel(row);
+            if (index < serverFiles.getFileInfoList().size()) {
+                thumbnails.requestThumbnail(serverFiles.getFileInfoList().get(index),
+                        ThumbnailService.PRIORITY_VISIBLE, null);
+            }
+        }
+    }
+
+    /**
+     * Loads the next page of the remote folder files when the table is
+     * scrolled to the last rows.
+     */
+    private void loadMoreRemoteFiles() {
+        if (loadingRemoteFiles || !serverFiles.hasMoreServerFiles()) {
+            return;
+        }
+        Rectangle visibleRect = tbServerFiles.getVisibleRect();
+        int lastRow = tbServerFiles.rowAtPoint(new Point(visibleRect.x,
+                visibleRect.y + visibleRect.height - 1));
+        if (lastRow >= 0 && lastRow < tbServerFiles.getRowCount() - PREFETCH_ROWS) {
+            return;
+        }
+        loadingRemoteFiles = true;
+        SolaTask t = new SolaTask<Void, Void>() {
+
+            @Override
+            public Void doTask() {
+                setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_DOCUMENT_GETTING_LIST));
+                serverFiles.loadNextServerFileInfoPage();
+                return null;
+            }
+
+            @Override
+            protected void taskDone() {
+                loadingRemoteFiles = false;
+            }
+
+            @Override
+            protected void taskFailed(Throwable e) {
+                loadingRemoteFiles = false;
+            }
+
+            @Override
+            protected void taskCancelled() {
+                loadingRemoteFiles = false;
+            }
+        };
+        t.setTaskKey(remoteFilesTaskKey);
+        loadingRemoteFiles = TaskManager.getInstance().runTask(t);
+    }
+
     private void customizeRemoteFileButtons() {
         boolean enabled = serverFiles.getSelectedFileInfoBean() != null;
         btnAttachFromServer.setEnabled(enabled);
@@ -155,17 +299,60 @@ public class FileBrowserForm extends javax.swing.JDialog {
 
     private void refreshRemoteFiles() {
         if (serverFiles.getSelectedFileInfoBean() != null) {
-            SolaTask t = new SolaTask<Void, Void>() {
+            loadRemoteFiles();
+        }
+    }
 
-                @Override
-                public Void doTask() {
-                    setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_DOCUMENT_GETTING_LIST));
-                    serverFiles.loadServerFileInfoList();
-                    return null;
-                }
-            };
-            TaskManager.getInstance().runTask(t);
+    /** Reloads the remote files list, replacing the load in progress. */
+    private void loadRemoteFiles() {
+        SolaTask t = new SolaTask<Void, Void>() {
+
+            @Override
+            public Void doTask() {
+                setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.PROGRESS_MSG_DOCUMENT_GETTING_LIST));
+                serverFiles.loadServerFileInfoList();
+                return null;
+            }
+        };
+        t.setTaskKey(remoteFilesTaskKey);
+        t.setLatestWins(true);
+        TaskManager.getInstance().runTask(t);
+    }
+
+    /**
+     * Sets the name and modification date filter on the remote files list and
+     * reloads it. The files are filtered by the listing endpoint.
+     */
+    private void applyRemoteFilter() {
+        serverFiles.setNameFilter(txtNameFilter.getText().trim());
+        serverFiles.setModifiedFrom((Date) txtModifiedFrom.getValue());
+        Date modifiedTo = (Date) txtModifiedTo.getValue();
+        if (modifiedTo != null) {
+            // The whole last day is included
+            modifiedTo = new Date(modifiedTo.getTime() + DAY_MILLIS - 1);
+        }
+        serverFiles.setModifiedTo(modifiedTo);
+        loadRemoteFiles();
+    }
+
+    /**
+     * Sorts the remote files list by the clicked column. The files are sorted by
+     * the listing endpoint, so the loaded pages stay in order. Repeated click on
+     * the same column changes the sort direction.
+     */
+    private void sortRemoteFiles(int column) {
+        int modelColumn = tbServerFiles.convertColumnIndexToModel(column);
+        if (modelColumn < 0 || modelColumn >= SORT_PROPERTIES.length) {
+            return;
+        }
+        String sortBy = SORT_PROPERTIES[modelColumn];
+        if (sortBy.equals(serverFiles.getSortBy())) {
+            serverFiles.setSortDescending(!serverFiles.isSortDescending());
+        } else {
+            serverFiles.setSortBy(sortBy);
+            serverFiles.setSortDescending(false);
         }
+        loadRemoteFiles();
     }
 
     private void openRemoteFile() {
@@ -241,6 +428,8 @@ public class FileBrowserForm extends javax.swing.JDialog {
     private void attachLocalFile() {
         File selectedFile = localFileChooser.getSelectedFile();
         if (selectedFile != null) {
+            File[] files = localFileChooser.getSelectedFiles();
+            final File[] selectedFiles = files != null && files.length > 0 ? files : new File[]{selectedFile};
             SolaTask<Void, Void> task = new SolaTask<Void, Void>() {
 
                 DocumentBean document = null;
@@ -248,8 +437,22 @@ public class FileBrowserForm extends javax.swing.JDialog {
                 @Override
                 protected Void doTask() {
                     setMessage(MessageUtility.getLocalizedMessageText(ClientMessage.SOURCE_LOAD_DOC_ON_SERVER));
+                    File file = selectedFiles[0];
+                    if (ScanProcessor.isEnabled()) {
+                        try {
+                            file = ScanProcessor.getInstance().process(selectedFiles);
+                        } catch (IOException ex) {
+                            throw new RuntimeException(ex.getLocalizedMessage(), ex);
+                        }
+                    }
                     document = DocumentBean.createDocumentFromLocalFile(
-                            localFileChooser.getSelectedFile());
+                            file, new ChunkedUploader.ProgressListener() {
+
+                        @Override
+                        public void progressChanged(long uploadedBytes, long totalBytes) {
+                            setProgress((int) (uploadedBytes * 100 / Math.max(1, totalBytes)));
+                        }
+                    });
                     return null;
                 }
 
@@ -284,6 +487,14 @@ public class FileBrowserForm extends javax.swing.JDialog {
         tbServerFiles = new javax.swing.JTable();
         lblServerPreview = new javax.swing.JLabel();
         jToolBar1 = new javax.swing.JToolBar();
+        pnlServerFilter = new javax.swing.JPanel();
+        lblNameFilter = new javax.swing.JLabel();
+        txtNameFilter = new javax.swing.JTextField();
+        lblModifiedFrom = new javax.swing.JLabel();
+        txtModifiedFrom = new javax.swing.JFormattedTextField();
+        lblModifiedTo = new javax.swing.JLabel();
+        txtModifiedTo = new javax.swing.JFormattedTextField();
+        btnApplyFilter = new javax.swing.JButton();
         btnRefreshServerList = new javax.swing.JButton();
         btnOpenServerFile = new javax.swing.JButton();
         btnDeleteServerFile = new javax.swing.JButton();
@@ -411,7 +622,6 @@ public class FileBrowserForm extends javax.swing.JDialog {
         jScrollPane1.setName("jScrollPane1"); // NOI18N
         jScrollPane1.setComponentOrientation(ComponentOrientation.getOrientation(Locale.getDefault()));
 
-        tbServerFiles.setAutoCreateRowSorter(true);
         tbServerFiles.setComponentPopupMenu(popupRemoteFiles);
         tbServerFiles.setName("tbServerFiles"); // NOI18N
         tbServerFiles.setSelectionBackground(new java.awt.Color(185, 227, 185));
@@ -513,6 +723,52 @@ public class FileBrowserForm extends javax.swing.JDialog {
         });
         jToolBar1.add(btnAttachFromServer);
 
+        pnlServerFilter.setName("pnlServerFilter"); // NOI18N
+        pnlServerFilter.setLayout(new java.awt.FlowLayout(java.awt.FlowLayout.LEADING, 3, 0));
+
+        lblNameFilter.setText(bundle.getString("FileBrowserForm.lblNameFilter.text")); // NOI18N
+        lblNameFilter.setName("lblNameFilter"); // NOI18N
+        pnlServerFilter.add(lblNameFilter);
+
+        txtNameFilter.setColumns(8);
+        txtNameFilter.setName("txtNameFilter"); // NOI18N
+        txtNameFilter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                txtNameFilterActionPerformed(evt);
+            }
+        });
+        pnlServerFilter.add(txtNameFilter);
+
+        lblModifiedFrom.setText(bundle.getString("FileBrowserForm.lblModifiedFrom.text")); // NOI18N
+        lblModifiedFrom.setName("lblModifiedFrom"); // NOI18N
+        pnlServerFilter.add(lblModifiedFrom);
+
+        txtModifiedFrom.setColumns(6);
+        txtModifiedFrom.setFormatterFactory(new javax.swing.text.DefaultFormatterFactory(new javax.swing.text.DateFormatter(java.text.DateFormat.getDateInstance(java.text.DateFormat.SHORT))));
+        txtModifiedFrom.setName("txtModifiedFrom"); // NOI18N
+        pnlServerFilter.add(txtModifiedFrom);
+
+        lblModifiedTo.setText(bundle.getString("FileBrowserForm.lblModifiedTo.text")); // NOI18N
+        lblModifiedTo.setName("lblModifiedTo"); // NOI18N
+        pnlServerFilter.add(lblModifiedTo);
+
+        txtModifiedTo.setColumns(6);
+        txtModifiedTo.setFormatterFactory(new javax.swing.text.DefaultFormatterFactory(new javax.swing.text.DateFormatter(java.text.DateFormat.getDateInstance(java.text.DateFormat.SHORT))));
+        txtModifiedTo.setName("txtModifiedTo"); // NOI18N
+        pnlServerFilter.add(txtModifiedTo);
+
+        btnApplyFilter.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/common/search.png"))); // NOI18N
+        btnApplyFilter.setToolTipText(bundle.getString("FileBrowserForm.btnApplyFilter.toolTipText")); // NOI18N
+        btnApplyFilter.setFocusable(false);
+        btnApplyFilter.setMargin(new java.awt.Insets(0, 2, 0, 2));
+        btnApplyFilter.setName("btnApplyFilter"); // NOI18N
+        btnApplyFilter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnApplyFilterActionPerformed(evt);
+            }
+        });
+        pnlServerFilter.add(btnApplyFilter);
+
         javax.swing.GroupLayout jPanel2Layout = new javax.swing.GroupLayout(jPanel2);
         jPanel2.setLayout(jPanel2Layout);
         jPanel2Layout.setHorizontalGroup(
@@ -521,7 +777,8 @@ public class FileBrowserForm extends javax.swing.JDialog {
                 .addContainerGap()
                 .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 419, Short.MAX_VALUE)
-                    .addComponent(jToolBar1, javax.swing.GroupLayout.DEFAULT_SIZE, 393, Short.MAX_VALUE))
+                    .addComponent(jToolBar1, javax.swing.GroupLayout.DEFAULT_SIZE, 393, Short.MAX_VALUE)
+                    .addComponent(pnlServerFilter, javax.swing.GroupLayout.DEFAULT_SIZE, 419, Short.MAX_VALUE))
                 .addGap(17, 17, 17)
                 .addComponent(lblServerPreview, javax.swing.GroupLayout.PREFERRED_SIZE, 225, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addContainerGap())
@@ -535,7 +792,9 @@ public class FileBrowserForm extends javax.swing.JDialog {
                     .addGroup(jPanel2Layout.createSequentialGroup()
                         .addComponent(jToolBar1, javax.swing.GroupLayout.PREFERRED_SIZE, 25, javax.swing.GroupLayout.PREFERRED_SIZE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                        .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 298, javax.swing.GroupLayout.PREFERRED_SIZE)))
+                        .addComponent(pnlServerFilter, javax.swing.GroupLayout.PREFERRED_SIZE, 24, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 268, javax.swing.GroupLayout.PREFERRED_SIZE)))
                 .addGap(42, 42, 42))
         );
 
@@ -675,7 +934,16 @@ public class FileBrowserForm extends javax.swing.JDialog {
     private void menuRemoteAttachActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menuRemoteAttachActionPerformed
         attachRemoteFile();
     }//GEN-LAST:event_menuRemoteAttachActionPerformed
+
+    private void txtNameFilterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_txtNameFilterActionPerformed
+        applyRemoteFilter();
+    }//GEN-LAST:event_txtNameFilterActionPerformed
+
+    private void btnApplyFilterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnApplyFilterActionPerformed
+        applyRemoteFilter();
+    }//GEN-LAST:event_btnApplyFilterActionPerformed
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton btnApplyFilter;
     private javax.swing.JButton btnAttachFromServer;
     private javax.swing.JButton btnAttachLocal;
     private javax.swing.JButton btnDeleteServerFile;
@@ -691,16 +959,23 @@ public class FileBrowserForm extends javax.swing.JDialog {
     private javax.swing.JTabbedPane jTabbedPane1;
     private javax.swing.JToolBar jToolBar1;
     private javax.swing.JToolBar jToolBar2;
+    private javax.swing.JLabel lblModifiedFrom;
+    private javax.swing.JLabel lblModifiedTo;
+    private javax.swing.JLabel lblNameFilter;
     private javax.swing.JLabel lblServerPreview;
     private javax.swing.JFileChooser localFileChooser;
     private javax.swing.JMenuItem menuRemoteAttach;
     private javax.swing.JMenuItem menuRemoteDelete;
     private javax.swing.JMenuItem menuRemoteOpen;
     private javax.swing.JMenuItem menuRemoteRefresh;
+    private javax.swing.JPanel pnlServerFilter;
     private javax.swing.JPopupMenu popupRemoteFiles;
     private org.sola.clients.beans.digitalarchive.FileInfoListBean serverFiles;
     private org.sola.clients.swing.common.tasks.TaskPanel taskPanel1;
     private javax.swing.JTable tbServerFiles;
+    private javax.swing.JFormattedTextField txtModifiedFrom;
+    private javax.swing.JFormattedTextField txtModifiedTo;
+    private javax.swing.JTextField txtNameFilter;
     private org.jdesktop.beansbinding.BindingGroup bindingGroup;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,138 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Pages of the image file, one page per image in the file. Pages are decoded with
+ * source subsampling when zoomed out.
+ */
+public class ImagePageSource implements PageSource {
+
+    private File file;
+    private Dimension[] pageSizes;
+
+    public ImagePageSource(File file) throws IOException {
+        this.file = file;
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) {
+            throw new IOException("Can't read " + file.getName());
+        }
+        try {
+            ImageReader reader = getReader(in);
+            try {
+                pageSizes = new Dimension[reader.getNumImages(true)];
+                for (int i = 0; i < pageSizes.length; i++) {
+                    pageSizes[i] = new Dimension(reader.getWidth(i), reader.getHeight(i));
+                }
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Returns true if the file can be shown by this source. */
+    public static boolean isSupported(File file) {
+        String name = file.getName();
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        return ImageIO.getImageReadersBySuffix(extension).hasNext();
+    }
+
+    @Override
+    public int getPageCount() {
+        return pageSizes.length;
+    }
+
+    @Override
+    public Dimension getPageSize(int pageIndex) {
+        return pageSizes[pageIndex];
+    }
+
+    @Override
+    public BufferedImage renderPage(int pageIndex, double zoom) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        try {
+            ImageReader reader = getReader(in);
+            try {
+                int step = Math.max(1, (int) (1 / zoom));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(pageIndex, param);
+
+                int width = Math.max(1, (int) Math.round(pageSizes[pageIndex].width * zoom));
+                int height = Math.max(1, (int) Math.round(pageSizes[pageIndex].height * zoom));
+                if (image.getWidth() == width && image.getHeight() == height) {
+                    return image;
+                }
+                BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = result.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(image, 0, 0, width, height, null);
+                } finally {
+                    g.dispose();
+                }
+                return result;
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private ImageReader getReader(ImageInputStream in) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format of " + file.getName());
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, false, true);
+        return reader;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPage;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Pages of the PDF file, rendered by PDF Renderer. The file is memory mapped, so
+ * pages are read from the disk only when they are rendered. Renderer is not safe
+ * for concurrent use of the same file, so pages of one file are rendered one by one.
+ */
+public class PdfPageSource implements PageSource {
+
+    private RandomAccessFile file;
+    private PDFFile pdfFile;
+
+    public PdfPageSource(File pdf) throws IOException {
+        file = new RandomAccessFile(pdf, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            pdfFile = new PDFFile(buffer);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return pdfFile.getNumPages();
+    }
+
+    @Override
+    public synchronized Dimension getPageSize(int pageIndex) {
+        PDFPage page = pdfFile.getPage(pageIndex + 1, false);
+        return new Dimension((int) Math.ceil(page.getWidth()), (int) Math.ceil(page.getHeight()));
+    }
+
+    @Override
+    public synchronized BufferedImage renderPage(int pageIndex, double zoom) throws IOException {
+        PDFPage page = pdfFile.getPage(pageIndex + 1, true);
+        Rectangle2D box = page.getBBox();
+        int width = Math.max(1, (int) Math.round(page.getWidth() * zoom));
+        int height = Math.max(1, (int) Math.round(page.getHeight() * zoom));
+        Image image = page.getImage(width, height, box, null, true, true);
+
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        try {
+            file.close();
+        } catch (IOException ex) {
+        }
+    }
+}
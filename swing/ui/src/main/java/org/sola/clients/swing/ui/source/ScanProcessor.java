@@ -0,0 +1,362 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Image;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfWriter;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.sola.common.logging.LogUtility;
+import org.w3c.dom.NodeList;
+
+/**
+ * Prepares scanned images for the upload. Images are downsampled to the target
+ * resolution and recompressed into the configured format. Several pages, selected
+ * together or contained in one multi-page file, are combined into one PDF file
+ * with JPEG compressed pages. Files, which are not images or don't get smaller,
+ * are uploaded as they are.
+ * <p>Processing is switched on by <code>SOLA_SCAN_FORMAT</code> system property
+ * (<code>jpg</code> or <code>png</code>). JPEG quality is set by
+ * <code>SOLA_SCAN_QUALITY</code> (0.75 by default) and target resolution by
+ * <code>SOLA_SCAN_MAX_DPI</code> (200 by default).</p>
+ */
+public class ScanProcessor {
+
+    public static final String FORMAT_PROPERTY = "SOLA_SCAN_FORMAT";
+    public static final String QUALITY_PROPERTY = "SOLA_SCAN_QUALITY";
+    public static final String MAX_DPI_PROPERTY = "SOLA_SCAN_MAX_DPI";
+    public static final float DEFAULT_QUALITY = 0.75f;
+    public static final int DEFAULT_MAX_DPI = 200;
+    private static final String PDF_FORMAT = "pdf";
+    private static final String STANDARD_METADATA = "javax_imageio_1.0";
+    private static final double MM_PER_INCH = 25.4;
+    private String format;
+    private float quality;
+    private int maxDpi;
+
+    /**
+     * Class constructor.
+     *
+     * @param format Format of the processed images, jpg or png.
+     * @param quality JPEG compression quality from 0 to 1.
+     * @param maxDpi Resolution to downsample images to.
+     */
+    public ScanProcessor(String format, float quality, int maxDpi) {
+        this.format = format.toLowerCase();
+        this.quality = quality;
+        this.maxDpi = maxDpi;
+    }
+
+    /** Returns true if scan processing is switched on. */
+    public static boolean isEnabled() {
+        String format = System.getProperty(FORMAT_PROPERTY);
+        return format != null && format.length() > 0;
+    }
+
+    /** Returns the processor, configured by the system properties. */
+    public static ScanProcessor getInstance() {
+        float quality = DEFAULT_QUALITY;
+        int maxDpi = DEFAULT_MAX_DPI;
+        try {
+            quality = Float.parseFloat(System.getProperty(QUALITY_PROPERTY, Float.toString(DEFAULT_QUALITY)));
+            maxDpi = Integer.parseInt(System.getProperty(MAX_DPI_PROPERTY, Integer.toString(DEFAULT_MAX_DPI)));
+        } catch (NumberFormatException ex) {
+            LogUtility.log("Invalid scan processing settings, using defaults", Level.WARNING);
+        }
+        return new ScanProcessor(System.getProperty(FORMAT_PROPERTY), quality, maxDpi);
+    }
+
+    /**
+     * Processes selected files. One file is recompressed, several files or a
+     * multi-page file are combined into PDF. Returns the file to upload, which is
+     * the original file if it's not an image or processing didn't make it smaller.
+     *
+     * @param files Selected files, in the order of pages.
+     */
+    public File process(File... files) throws IOException {
+        List<Page> pages = new ArrayList<Page>();
+        for (File file : files) {
+            if (!readPages(file, pages)) {
+                if (files.length == 1) {
+                    // Not an image, upload as it is
+                    return file;
+                }
+                throw new IOException(file.getName() + " is not an image and can't be combined");
+            }
+        }
+
+        File result;
+        if (pages.size() > 1) {
+            result = createOutputFile(files[0], PDF_FORMAT);
+            writePdf(pages, result);
+        } else {
+            result = createOutputFile(files[0], format);
+            OutputStream out = new FileOutputStream(result);
+            try {
+                out.write(encode(pages.get(0), format));
+            } finally {
+                out.close();
+            }
+        }
+
+        long originalSize = 0;
+        for (File file : files) {
+            originalSize += file.length();
+        }
+        if (files.length == 1 && result.length() >= originalSize) {
+            result.delete();
+            return files[0];
+        }
+        return result;
+    }
+
+    /**
+     * Reads all images of the file into the list of pages, downsampling them to
+     * the target resolution. Returns false if the file is not a readable image.
+     */
+    private boolean readPages(File file, List<Page> pages) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) {
+            return false;
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, false, false);
+                int count = reader.getNumImages(true);
+                for (int i = 0; i < count; i++) {
+                    BufferedImage image = reader.read(i);
+                    double dpi = getDpi(reader.getImageMetadata(i));
+                    pages.add(downsample(image, dpi));
+                }
+                return count > 0;
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Returns horizontal resolution from the image metadata or 0 if it's unknown. */
+    private double getDpi(IIOMetadata metadata) {
+        if (metadata == null || !metadata.isStandardMetadataFormatSupported()) {
+            return 0;
+        }
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(STANDARD_METADATA);
+        NodeList nodes = root.getElementsByTagName("HorizontalPixelSize");
+        if (nodes.getLength() > 0) {
+            try {
+                double pixelSize = Double.parseDouble(((IIOMetadataNode) nodes.item(0)).getAttribute("value"));
+                if (pixelSize > 0) {
+                    return MM_PER_INCH / pixelSize;
+                }
+            } catch (NumberFormatException ex) {
+            }
+        }
+        return 0;
+    }
+
+    /** Scales the image down if its resolution is higher than the target one. */
+    private Page downsample(BufferedImage image, double dpi) {
+        boolean gray = image.getColorModel().getNumComponents() == 1;
+        int type = gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double resultDpi = dpi;
+        if (dpi > maxDpi) {
+            width = Math.max(1, (int) Math.round(width * maxDpi / dpi));
+            height = Math.max(1, (int) Math.round(height * maxDpi / dpi));
+            resultDpi = maxDpi;
+        } else if (image.getType() == type) {
+            return new Page(image, dpi);
+        }
+
+        // Also drops alpha channel and palette, which JPEG can't store
+        BufferedImage result = new BufferedImage(width, height, type);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return new Page(result, resultDpi);
+    }
+
+    /** Encodes the page into given format, keeping its resolution. */
+    private byte[] encode(Page page, String imageFormat) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(imageFormat);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + imageFormat);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream out = ImageIO.createImageOutputStream(bytes);
+        try {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes().length > 0) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            IIOMetadata metadata = writer.getDefaultImageMetadata(
+                    new ImageTypeSpecifier(page.image), param);
+            setDpi(metadata, page.dpi);
+            writer.write(null, new IIOImage(page.image, null, metadata), param);
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Stores resolution in the image metadata, if the writer supports it. */
+    private void setDpi(IIOMetadata metadata, double dpi) {
+        if (dpi <= 0 || metadata == null || !metadata.isStandardMetadataFormatSupported()
+                || metadata.isReadOnly()) {
+            return;
+        }
+        String pixelSize = Double.toString(MM_PER_INCH / dpi);
+        IIOMetadataNode horizontal = new IIOMetadataNode("HorizontalPixelSize");
+        horizontal.setAttribute("value", pixelSize);
+        IIOMetadataNode vertical = new IIOMetadataNode("VerticalPixelSize");
+        vertical.setAttribute("value", pixelSize);
+        IIOMetadataNode dimension = new IIOMetadataNode("Dimension");
+        dimension.appendChild(horizontal);
+        dimension.appendChild(vertical);
+        IIOMetadataNode root = new IIOMetadataNode(STANDARD_METADATA);
+        root.appendChild(dimension);
+        try {
+            metadata.mergeTree(STANDARD_METADATA, root);
+        } catch (IIOInvalidTreeException ex) {
+            LogUtility.log("Can't set image resolution: " + ex.getMessage(), Level.FINE);
+        }
+    }
+
+    /** Writes pages into PDF file, one JPEG compressed image per page. */
+    private void writePdf(List<Page> pages, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        Document document = null;
+        try {
+            for (Page page : pages) {
+                // Page size in points, 72 per inch
+                double dpi = page.dpi > 0 ? page.dpi : maxDpi;
+                float width = (float) (page.image.getWidth() * 72 / dpi);
+                float height = (float) (page.image.getHeight() * 72 / dpi);
+                Rectangle pageSize = new Rectangle(width, height);
+                if (document == null) {
+                    document = new Document(pageSize, 0, 0, 0, 0);
+                    PdfWriter.getInstance(document, out);
+                    document.open();
+                } else {
+                    document.setPageSize(pageSize);
+                    document.newPage();
+                }
+                Image image = Image.getInstance(encode(page, "jpg"));
+                image.scaleAbsolute(width, height);
+                image.setAbsolutePosition(0, 0);
+                document.add(image);
+            }
+        } catch (DocumentException ex) {
+            throw new IOException(ex.getMessage());
+        } finally {
+            if (document != null) {
+                document.close();
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * Creates output file in the temporary folder, with the name of the original
+     * file, so that document description stays the same.
+     */
+    private File createOutputFile(File original, String extension) throws IOException {
+        File dir = File.createTempFile("sola_scan", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Can't create temporary folder " + dir.getPath());
+        }
+        dir.deleteOnExit();
+        String name = original.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        File file = new File(dir, name + "." + extension);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /** Image of the page with its resolution. */
+    private static class Page {
+
+        private final BufferedImage image;
+        private final double dpi;
+
+        Page(BufferedImage image, double dpi) {
+            this.image = image;
+            this.dpi = dpi;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Iterator;
+import java.util.Random;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import junit.framework.TestCase;
+
+/**
+ * Measures size reduction and processing time of the {@link ScanProcessor} on
+ * generated sample scans: uncompressed grayscale page, oversized color JPEG and a
+ * three page set. The benchmark takes several seconds and runs only if
+ * <code>sola.benchmark</code> system property is set, e.g.
+ * <code>mvn test -Dtest=ScanProcessorBenchmark -Dsola.benchmark=true</code>.
+ */
+public class ScanProcessorBenchmark extends TestCase {
+
+    /** A4 size in inches. */
+    private static final double PAGE_WIDTH = 8.27;
+    private static final double PAGE_HEIGHT = 11.69;
+
+    public ScanProcessorBenchmark(String testName) {
+        super(testName);
+    }
+
+    public void testCompression() throws Exception {
+        if (System.getProperty("sola.benchmark") == null) {
+            return;
+        }
+        File gray = createScan("bmp", 300, true, 1);
+        File color = createScan("jpg", 600, false, 2);
+        File[] pages = {createScan("png", 300, true, 3), createScan("png", 300, true, 4),
+            createScan("png", 300, true, 5)};
+        try {
+            ScanProcessor processor = new ScanProcessor("jpg", ScanProcessor.DEFAULT_QUALITY,
+                    ScanProcessor.DEFAULT_MAX_DPI);
+            run(processor, "300 dpi gray BMP", gray);
+            run(processor, "600 dpi color JPEG", color);
+            run(processor, "3 x 300 dpi PNG", pages);
+        } finally {
+            gray.delete();
+            color.delete();
+            for (File page : pages) {
+                page.delete();
+            }
+        }
+    }
+
+    private void run(ScanProcessor processor, String name, File... files) throws Exception {
+        long originalSize = 0;
+        for (File file : files) {
+            originalSize += file.length();
+        }
+        long start = System.nanoTime();
+        File result = processor.process(files);
+        long time = (System.nanoTime() - start) / 1000000;
+        System.out.println(String.format("%-20s %8d KB -> %6d KB %-4s in %5d ms", name,
+                originalSize / 1024, result.length() / 1024,
+                result.getName().substring(result.getName().lastIndexOf('.') + 1), time));
+        assertTrue(result.length() <= originalSize);
+        if (!result.equals(files[0])) {
+            result.delete();
+        }
+    }
+
+    /** Creates A4 page with text lines and scanner noise at the given resolution. */
+    private File createScan(String format, int dpi, boolean gray, long seed) throws Exception {
+        int width = (int) (PAGE_WIDTH * dpi);
+        int height = (int) (PAGE_HEIGHT * dpi);
+        BufferedImage image = new BufferedImage(width, height,
+                gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(seed);
+        g.setColor(new Color(245, 243, 235));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.DARK_GRAY);
+        g.setFont(new Font(Font.SERIF, Font.PLAIN, dpi / 6));
+        for (int y = dpi; y < height - dpi; y += dpi / 4) {
+            g.drawString("Parcel " + random.nextInt(100000) + " registered to the owner of the land",
+                    dpi, y);
+        }
+        g.dispose();
+        for (int i = 0; i < width * height / 50; i++) {
+            int rgb = image.getRGB(random.nextInt(width), random.nextInt(height));
+            image.setRGB(random.nextInt(width), random.nextInt(height), rgb ^ 0x101010);
+        }
+
+        File file = File.createTempFile("scan", "." + format);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (format.equals("jpg")) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.95f);
+        }
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        if (metadata != null && metadata.isStandardMetadataFormatSupported() && !metadata.isReadOnly()) {
+            String pixelSize = Double.toString(25.4 / dpi);
+            IIOMetadataNode horizontal = new IIOMetadataNode("HorizontalPixelSize");
+            horizontal.setAttribute("value", pixelSize);
+            IIOMetadataNode vertical = new IIOMetadataNode("VerticalPixelSize");
+            vertical.setAttribute("value", pixelSize);
+            IIOMetadataNode dimension = new IIOMetadataNode("Dimension");
+            dimension.appendChild(horizontal);
+            dimension.appendChild(vertical);
+            IIOMetadataNode root = new IIOMetadataNode("javax_imageio_1.0");
+            root.appendChild(dimension);
+            metadata.mergeTree("javax_imageio_1.0", root);
+        }
+        ImageOutputStream out = ImageIO.createImageOutputStream(file);
+        try {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        return file;
+    }
+}
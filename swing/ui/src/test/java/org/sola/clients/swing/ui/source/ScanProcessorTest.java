@@ -0,0 +1,105 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2012 - Food and Agriculture Organization of the United Nations
+ * (FAO). All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,this
+ * list of conditions and the following disclaimer. 2. Redistributions in binary
+ * form must reproduce the above copyright notice,this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3. Neither the name of FAO nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT,STRICT LIABILITY,OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.sola.clients.swing.ui.source;
+
+import com.lowagie.text.pdf.PdfReader;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
+import junit.framework.TestCase;
+
+/**
+ * Tests combining pages into PDF and keeping the original file by the
+ * {@link ScanProcessor}.
+ */
+public class ScanProcessorTest extends TestCase {
+
+    public ScanProcessorTest(String testName) {
+        super(testName);
+    }
+
+    /** Two images are combined into PDF with one page per image. */
+    public void testCombineIntoPdf() throws Exception {
+        File first = createImage(400, 600, Color.LIGHT_GRAY);
+        File second = createImage(600, 400, Color.WHITE);
+        File result = null;
+        try {
+            ScanProcessor processor = new ScanProcessor("jpg", ScanProcessor.DEFAULT_QUALITY, 200);
+            result = processor.process(first, second);
+            assertTrue(result.getName().endsWith(".pdf"));
+
+            PdfReader reader = new PdfReader(result.getPath());
+            try {
+                assertEquals(2, reader.getNumberOfPages());
+                // Resolution is unknown, page size is calculated with 200 dpi
+                assertEquals(144f, reader.getPageSize(1).getWidth(), 0.5f);
+                assertEquals(216f, reader.getPageSize(1).getHeight(), 0.5f);
+                assertEquals(216f, reader.getPageSize(2).getWidth(), 0.5f);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            first.delete();
+            second.delete();
+            if (result != null) {
+                result.delete();
+            }
+        }
+    }
+
+    /** Image, which doesn't get smaller after recompression, is uploaded as it is. */
+    public void testKeepOriginalIfNotSmaller() throws Exception {
+        // Plain PNG is smaller than JPEG headers
+        File original = createImage(32, 32, Color.WHITE);
+        try {
+            ScanProcessor processor = new ScanProcessor("jpg", ScanProcessor.DEFAULT_QUALITY, 200);
+            File result = processor.process(original);
+            assertEquals(original, result);
+            assertTrue(original.exists());
+        } finally {
+            original.delete();
+        }
+    }
+
+    private File createImage(int width, int height, Color color) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        g.drawLine(0, 0, width, height);
+        g.dispose();
+        File file = File.createTempFile("scan", ".png");
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+}